@@ -10,9 +10,15 @@ import gcm.core.epi.identifiers.*;
 import gcm.core.epi.plugin.Plugin;
 import gcm.core.epi.population.AgeGroup;
 import gcm.core.epi.population.AgeGroupPartition;
+import gcm.core.epi.reports.CustomReport;
+import gcm.core.epi.reports.EnsembleSummaryReport;
+import gcm.core.epi.reports.ReplicationConvergenceReport;
 import gcm.core.epi.trigger.*;
+import gcm.core.epi.util.configsplit.ReportShardMerger;
+import gcm.core.epi.util.distributions.CounterBasedRandomGenerator;
 import gcm.core.epi.util.loading.*;
 import gcm.core.epi.util.property.DefinedRegionProperty;
+import gcm.core.epi.util.statistics.ReplicationConvergenceTracker;
 import gcm.experiment.Experiment;
 import gcm.experiment.ExperimentExecutor;
 import gcm.output.simstate.NIOProfileItemHandler;
@@ -26,6 +32,9 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 public class Runner {
 
@@ -167,37 +176,131 @@ public class Runner {
         }
         experimentBuilder.addGlobalPropertyValue(GlobalProperty.TRIGGER_CONTAINER, triggerContainerBuilder.build());
 
+        // Adaptive replication shares a convergence tracker between all simulations of the experiment
+        if (configuration.adaptiveReplications().isPresent()) {
+            if (configuration.shardReportsByThread()) {
+                throw new IllegalArgumentException("Adaptive replications cannot be used with reports sharded by thread");
+            }
+            AdaptiveReplicationSpecification adaptiveReplications = configuration.adaptiveReplications().get();
+            experimentBuilder.addGlobalPropertyValue(GlobalProperty.REPLICATION_CONVERGENCE_TRACKER,
+                    new ReplicationConvergenceTracker(adaptiveReplications.minReplications(),
+                            adaptiveReplications.maxReplications(), adaptiveReplications.relativeTolerance(),
+                            adaptiveReplications.confidenceLevel(), adaptiveReplications.metrics()));
+        }
+
+        // Summaries over replications cannot be merged from report shards
+        if (configuration.shardReportsByThread() && configuration.reports().stream()
+                .anyMatch(reportWrapperItem -> reportWrapperItem.report().equals(CustomReport.ENSEMBLE_SUMMARY_REPORT.name()))) {
+            throw new IllegalArgumentException("ENSEMBLE_SUMMARY_REPORT cannot be used with reports sharded by thread");
+        }
+
         // Build experiment
         Experiment experiment = experimentBuilder.build();
 
         // Run
+        int shardCount = Math.min(configuration.threads(), getReplicationCount(configuration));
+        if (configuration.shardReportsByThread() && shardCount > 1) {
+            runShardedExperiment(experiment, configuration, pluginList, outputPath, shardCount);
+        } else {
+            ExperimentExecutor experimentExecutor = getExperimentExecutor(experiment, configuration, pluginList,
+                    outputPath, Function.identity(), true);
+            experimentExecutor.setSeed(configuration.randomSeed());
+            experimentExecutor.setThreadCount(configuration.threads());
+            // Under adaptive replication, replications of converged scenarios halt immediately, freeing their threads
+            experimentExecutor.setReplicationCount(getReplicationCount(configuration));
+            experimentExecutor.execute();
+            EnsembleSummaryReport.writeRemainingSummaries();
+        }
+
+    }
+
+    /*
+     * Returns the number of replications of each scenario that the experiment executor is asked to run
+     */
+    private static int getReplicationCount(CoreEpiConfiguration configuration) {
+        return configuration.adaptiveReplications()
+                .map(AdaptiveReplicationSpecification::maxReplications)
+                .orElse(configuration.replications());
+    }
+
+    /*
+     * Creates an experiment executor with the reports and auxiliary output specified in the configuration, with
+     * output file names passed through the given mapper
+     */
+    private static ExperimentExecutor getExperimentExecutor(Experiment experiment, CoreEpiConfiguration configuration,
+                                                            List<Plugin> pluginList, Path outputPath,
+                                                            Function<String, String> fileNameMapper,
+                                                            boolean includeExperimentColumnReport) {
         ExperimentExecutor experimentExecutor = new ExperimentExecutor();
         experimentExecutor.setExperiment(experiment);
-        experimentExecutor.setSeed(configuration.randomSeed());
-        experimentExecutor.setThreadCount(configuration.threads());
-        experimentExecutor.setReplicationCount(configuration.replications());
         experimentExecutor.setConsoleOutput(true);
-        CoreEpiBootstrapUtil.loadReports(experimentExecutor, configuration.reports(), pluginList, outputPath);
+        // Reports that summarize over replications need the replication count of the whole experiment
+        List<ReportWrapperItem> reportWrapperItems = configuration.reports().stream()
+                .map(item -> ImmutableReportWrapperItem.copyOf(item).withReplications(getReplicationCount(configuration)))
+                .collect(Collectors.toList());
+        CoreEpiBootstrapUtil.loadReports(experimentExecutor, reportWrapperItems, pluginList, outputPath, fileNameMapper);
+        if (configuration.adaptiveReplications().isPresent()) {
+            experimentExecutor.addCustomReport(outputPath.resolve(fileNameMapper.apply("replication_convergence_report.tsv")),
+                    ReplicationConvergenceReport.class);
+        }
         experimentExecutor.setDisplayExperimentColumnsInReports(configuration.displayExperimentColumns());
-        if (configuration.includeExperimentColumnReport()) {
+        if (configuration.includeExperimentColumnReport() && includeExperimentColumnReport) {
             experimentExecutor.addExperimentColumnReport(outputPath.resolve("experiment_column_report.tsv"));
         }
         if (configuration.runProfilingReport()) {
-            experimentExecutor.addOutputItemHandler(new NIOProfileItemHandler(outputPath.resolve("profiling_report.tsv")));
+            experimentExecutor.addOutputItemHandler(new NIOProfileItemHandler(outputPath.resolve(fileNameMapper.apply("profiling_report.tsv"))));
         }
         if (configuration.useProgressLog()) {
-            experimentExecutor.setExperimentProgressLog(outputPath.resolve("progress_log.tsv"));
+            experimentExecutor.setExperimentProgressLog(outputPath.resolve(fileNameMapper.apply("progress_log.tsv")));
         }
         if (configuration.runMemoryReport()) {
-            experimentExecutor.setMemoryReport(outputPath.resolve("memory_report.tsv"), configuration.memoryReportInterval());
+            experimentExecutor.setMemoryReport(outputPath.resolve(fileNameMapper.apply("memory_report.tsv")), configuration.memoryReportInterval());
         }
         if (configuration.runPlanningQueueReport()) {
-            experimentExecutor.setPlanningQueueReport(outputPath.resolve("planning_queue_report.tsv"), configuration.planningQueueReportThreshold());
+            experimentExecutor.setPlanningQueueReport(outputPath.resolve(fileNameMapper.apply("planning_queue_report.tsv")), configuration.planningQueueReportThreshold());
         }
         // experimentExecutor.setProfileReport(outputPath.resolve("profile
         // report.xls"));
-        experimentExecutor.execute();
+        return experimentExecutor;
+    }
 
+    /*
+     * Runs the experiment as independent single-threaded executors, each responsible for a contiguous block of
+     * replications and writing its own shard of every report, and then merges the report shards so that the
+     * output matches the layout of an unsharded run. Auxiliary output (progress log, profiling, memory and
+     * planning queue reports) is left per shard.
+     */
+    private static void runShardedExperiment(Experiment experiment, CoreEpiConfiguration configuration,
+                                             List<Plugin> pluginList, Path outputPath, int shardCount) throws IOException {
+        ExecutorService executorService = Executors.newFixedThreadPool(shardCount);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            final int shardIndex = shard;
+            ExperimentExecutor experimentExecutor = getExperimentExecutor(experiment, configuration, pluginList,
+                    outputPath, fileName -> ReportShardMerger.getShardFileName(fileName, shardIndex), shard == 0);
+            // Each shard needs its own random stream as replication numbering restarts within each shard, so the
+            // seed of shard k is mixed from randomSeed() and k (consecutive seeds would otherwise share shards) and a
+            // sharded run does not reproduce an unsharded one
+            experimentExecutor.setSeed(CounterBasedRandomGenerator.getStreamSeed(configuration.randomSeed(), shard));
+            experimentExecutor.setThreadCount(1);
+            experimentExecutor.setReplicationCount(ReportShardMerger.getShardReplicationCount(
+                    configuration.replications(), shardCount, shard));
+            futures.add(executorService.submit(experimentExecutor::execute));
+        }
+        executorService.shutdown();
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException("Sharded experiment execution failed", e);
+        }
+
+        // Merge the report shards
+        ReportShardMerger reportShardMerger = new ReportShardMerger(outputPath, configuration.replications(), shardCount);
+        for (ReportWrapperItem reportWrapperItem : configuration.reports()) {
+            reportShardMerger.merge(reportWrapperItem.file());
+        }
     }
 
 }
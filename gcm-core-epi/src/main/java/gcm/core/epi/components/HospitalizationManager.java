@@ -5,22 +5,33 @@ import gcm.core.epi.identifiers.*;
 import gcm.core.epi.population.AgeGroup;
 import gcm.core.epi.population.HospitalData;
 import gcm.core.epi.population.PopulationDescription;
-import gcm.core.epi.util.distributions.GammaHelper;
+import gcm.core.epi.util.distributions.GammaSampler;
 import gcm.scenario.PersonId;
 import gcm.scenario.PersonPropertyId;
 import gcm.scenario.RegionId;
 import gcm.simulation.Environment;
 import gcm.simulation.Plan;
 import gcm.util.geolocator.GeoLocator;
-import org.apache.commons.math3.distribution.GammaDistribution;
-import org.apache.commons.math3.distribution.RealDistribution;
 import org.apache.commons.math3.util.Pair;
 
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 public class HospitalizationManager extends AbstractComponent {
 
+    private static final int[] NO_CANDIDATES = new int[0];
+
+    /*
+     * Hospitals are identified by the index of their region, as beds are held as region resources. Candidate lists
+     * are built the first time someone in a region seeks hospitalization, and list the hospitals within the maximum
+     * radius of the region in order of distance, as in the order returned by the hospital geolocator.
+     */
+    private final Map<RegionId, int[]> regionCandidateHospitals = new HashMap<>();
+    private final Map<RegionId, BitSet> regionCandidateHospitalSets = new HashMap<>();
+    private final Map<RegionId, Integer> hospitalIndices = new HashMap<>();
+    private final List<RegionId> hospitalRegionIds = new ArrayList<>();
+    // The hospitals known to have at least one free bed
+    private final BitSet hospitalsWithFreeBeds = new BitSet();
+
     @Override
     public void init(Environment environment) {
 
@@ -34,9 +45,10 @@ public class HospitalizationManager extends AbstractComponent {
         if (plan.getClass() == HospitalizationPlan.class) {
             HospitalizationPlan hospitalizationPlan = (HospitalizationPlan) plan;
             PersonId personId = hospitalizationPlan.personId;
+            if (!Double.isNaN(hospitalizationPlan.deathTime)) {
+                environment.addPlan(new DeathPlan(personId), hospitalizationPlan.deathTime);
+            }
             RegionId regionId = environment.getPersonRegion(personId);
-            double lat = environment.getRegionPropertyValue(regionId, RegionProperty.LAT);
-            double lon = environment.getRegionPropertyValue(regionId, RegionProperty.LON);
 
             // Is the person already hospitalized?
             //TODO: Update when ICU beds added
@@ -51,30 +63,28 @@ public class HospitalizationManager extends AbstractComponent {
                 double additionalHospitalDuration = getHospitalizationDuration(environment, personId);
                 environment.addPlan(new DischargePlan(personId), oldDischargeTime + additionalHospitalDuration,
                         personId);
+                SimulationStopManager.deferExtinctionStop(environment, oldDischargeTime + additionalHospitalDuration);
 
                 // Don't bother with the rest of the hospitalization logic
                 return;
             }
 
-            GeoLocator<HospitalData> hospitalDataGeoLocator = environment.getGlobalPropertyValue(
-                    GlobalProperty.HOSPITAL_GEOLOCATOR);
-            double hospitalizationMaxRadiusKM = environment.getGlobalPropertyValue(
-                    GlobalProperty.HOSPITALIZATION_MAX_RADIUS_KM);
-
-            List<Pair<HospitalData, Double>> prioritizedHospitals = hospitalDataGeoLocator.getPrioritizedLocations(lat, lon,
-                    hospitalizationMaxRadiusKM);
-
             // TODO - process ICU and ventilator need here
             boolean receivedBed = false;
-            for (Pair<HospitalData, Double> hospitalDataWithDistance : prioritizedHospitals) {
-                RegionId hospitalRegionId = hospitalDataWithDistance.getFirst().regionId();
-                if (environment.getRegionResourceLevel(hospitalRegionId, Resource.HOSPITAL_BED) > 0) {
-                    if (!hospitalRegionId.equals(regionId)) {
-                        environment.setPersonRegion(personId, hospitalRegionId);
+            int[] candidateHospitals = getCandidateHospitals(environment, regionId);
+            // Skip the scan entirely when every candidate hospital is full
+            if (hospitalsWithFreeBeds.intersects(regionCandidateHospitalSets.get(regionId))) {
+                for (int hospitalIndex : candidateHospitals) {
+                    if (hospitalsWithFreeBeds.get(hospitalIndex)) {
+                        RegionId hospitalRegionId = hospitalRegionIds.get(hospitalIndex);
+                        if (!hospitalRegionId.equals(regionId)) {
+                            environment.setPersonRegion(personId, hospitalRegionId);
+                        }
+                        environment.transferResourceToPerson(Resource.HOSPITAL_BED, personId, 1);
+                        updateFreeBeds(environment, hospitalRegionId);
+                        receivedBed = true;
+                        break;
                     }
-                    environment.transferResourceToPerson(Resource.HOSPITAL_BED, personId, 1);
-                    receivedBed = true;
-                    break;
                 }
             }
             if (!receivedBed) {
@@ -85,10 +95,12 @@ public class HospitalizationManager extends AbstractComponent {
 
                 environment.addPlan(new DischargePlan(personId),
                         environment.getTime() + hospitalizationDuration, personId);
+                SimulationStopManager.deferExtinctionStop(environment, environment.getTime() + hospitalizationDuration);
             }
         } else if (plan.getClass() == DischargePlan.class) {
             PersonId personId = ((DischargePlan) plan).personId;
             environment.transferResourceFromPerson(Resource.HOSPITAL_BED, personId, 1);
+            updateFreeBeds(environment, environment.getPersonRegion(personId));
         } else if (plan.getClass() == DeathPlan.class) {
             PersonId personId = ((DeathPlan) plan).personId;
             environment.setPersonPropertyValue(personId, PersonProperty.IS_DEAD, true);
@@ -96,6 +108,7 @@ public class HospitalizationManager extends AbstractComponent {
             if (environment.getPlan(personId).isPresent()) {
                 environment.removePlan(personId);
                 environment.transferResourceFromPerson(Resource.HOSPITAL_BED, personId, 1);
+                updateFreeBeds(environment, environment.getPersonRegion(personId));
             }
 
         } else {
@@ -134,13 +147,9 @@ public class HospitalizationManager extends AbstractComponent {
                     Double hospitalizationDelayMean = hospitalizationDelayMeans.get(ageGroup);
                     Double hospitalizationDelaySD = hospitalizationDelaySDs.get(ageGroup);
 
-                    RealDistribution hospitalDelayDistribution = new GammaDistribution(
+                    double hospitalizationTime = environment.getTime() + GammaSampler.sampleFromMeanAndSD(
                             environment.getRandomGeneratorFromId(RandomId.HOSPITALIZATION_MANAGER),
-                            GammaHelper.getShapeFromMeanAndSD(hospitalizationDelayMean, hospitalizationDelaySD),
-                            GammaHelper.getScaleFromMeanAndSD(hospitalizationDelayMean, hospitalizationDelaySD));
-
-                    double hospitalizationTime = environment.getTime() + hospitalDelayDistribution.sample();
-                    environment.addPlan(new HospitalizationPlan(personId), hospitalizationTime);
+                            hospitalizationDelayMean, hospitalizationDelaySD);
 
                     // Handle possibility of death
                     Map<AgeGroup, Double> caseFatalityRatios = environment.getGlobalPropertyValue(
@@ -150,8 +159,9 @@ public class HospitalizationManager extends AbstractComponent {
                     double hospitalizationFatalityRatio = caseFatalityRatios.get(ageGroup) /
                             caseHospitalizationRatios.get(ageGroup);
 
+                    double deathTime = Double.NaN;
                     if (environment.getRandomGeneratorFromId(RandomId.HOSPITALIZATION_MANAGER).nextDouble() < hospitalizationFatalityRatio) {
-                        // Make a plan for a person to die
+                        // Determine when the person will die
                         Map<AgeGroup, Double> hospitalizationDeathDelayMeans = environment.getGlobalPropertyValue(
                                 GlobalProperty.HOSPITALIZATION_TO_DEATH_DELAY_MEAN);
                         Map<AgeGroup, Double> hospitalizationDeathDelaySDs = environment.getGlobalPropertyValue(
@@ -160,20 +170,78 @@ public class HospitalizationManager extends AbstractComponent {
                         double hospitalizationDeathDelayMean = hospitalizationDeathDelayMeans.get(ageGroup);
                         double hospitalizationDeathDelaySD = hospitalizationDeathDelaySDs.get(ageGroup);
 
-                        RealDistribution hospitalizationDeathDelayDistribution = new GammaDistribution(
+                        double hospitalizationDeathDelay = GammaSampler.sampleFromMeanAndSD(
                                 environment.getRandomGeneratorFromId(RandomId.HOSPITALIZATION_MANAGER),
-                                GammaHelper.getShapeFromMeanAndSD(hospitalizationDeathDelayMean, hospitalizationDeathDelaySD),
-                                GammaHelper.getScaleFromMeanAndSD(hospitalizationDeathDelayMean, hospitalizationDeathDelaySD));
+                                hospitalizationDeathDelayMean, hospitalizationDeathDelaySD);
 
-                        environment.addPlan(new DeathPlan(personId),
-                                hospitalizationTime + hospitalizationDeathDelayDistribution.sample());
+                        deathTime = hospitalizationTime + hospitalizationDeathDelay;
 
                     }
+
+                    // The death plan, if any, is only added once the person seeks hospitalization
+                    environment.addPlan(new HospitalizationPlan(personId, deathTime), hospitalizationTime);
+                    // Outcomes usually follow recovery, so the simulation should not stop on extinction before them
+                    SimulationStopManager.deferExtinctionStop(environment,
+                            Double.isNaN(deathTime) ? hospitalizationTime : deathTime);
                 }
             }
         }
     }
 
+    private int[] getCandidateHospitals(Environment environment, RegionId regionId) {
+        int[] candidateHospitals = regionCandidateHospitals.get(regionId);
+        if (candidateHospitals == null) {
+            GeoLocator<HospitalData> hospitalDataGeoLocator = environment.getGlobalPropertyValue(
+                    GlobalProperty.HOSPITAL_GEOLOCATOR);
+            double hospitalizationMaxRadiusKM = environment.getGlobalPropertyValue(
+                    GlobalProperty.HOSPITALIZATION_MAX_RADIUS_KM);
+            double lat = environment.getRegionPropertyValue(regionId, RegionProperty.LAT);
+            double lon = environment.getRegionPropertyValue(regionId, RegionProperty.LON);
+
+            List<Pair<HospitalData, Double>> prioritizedHospitals = hospitalDataGeoLocator.getPrioritizedLocations(lat, lon,
+                    hospitalizationMaxRadiusKM);
+
+            // Hospitals sharing a region share beds, so only the nearest of them needs to be listed
+            BitSet candidateHospitalSet = new BitSet();
+            candidateHospitals = new int[prioritizedHospitals.size()];
+            int candidateCount = 0;
+            for (Pair<HospitalData, Double> hospitalDataWithDistance : prioritizedHospitals) {
+                int hospitalIndex = getHospitalIndex(environment, hospitalDataWithDistance.getFirst().regionId());
+                if (!candidateHospitalSet.get(hospitalIndex)) {
+                    candidateHospitalSet.set(hospitalIndex);
+                    candidateHospitals[candidateCount] = hospitalIndex;
+                    candidateCount++;
+                }
+            }
+            candidateHospitals = candidateCount == 0 ? NO_CANDIDATES : Arrays.copyOf(candidateHospitals, candidateCount);
+            regionCandidateHospitals.put(regionId, candidateHospitals);
+            regionCandidateHospitalSets.put(regionId, candidateHospitalSet);
+        }
+        return candidateHospitals;
+    }
+
+    private int getHospitalIndex(Environment environment, RegionId hospitalRegionId) {
+        Integer hospitalIndex = hospitalIndices.get(hospitalRegionId);
+        if (hospitalIndex == null) {
+            hospitalIndex = hospitalRegionIds.size();
+            hospitalIndices.put(hospitalRegionId, hospitalIndex);
+            hospitalRegionIds.add(hospitalRegionId);
+            updateFreeBeds(environment, hospitalRegionId);
+        }
+        return hospitalIndex;
+    }
+
+    /*
+     * Records whether the hospital in the given region, if any, has a free bed after a change in its bed count
+     */
+    private void updateFreeBeds(Environment environment, RegionId hospitalRegionId) {
+        Integer hospitalIndex = hospitalIndices.get(hospitalRegionId);
+        if (hospitalIndex != null) {
+            hospitalsWithFreeBeds.set(hospitalIndex,
+                    environment.getRegionResourceLevel(hospitalRegionId, Resource.HOSPITAL_BED) > 0);
+        }
+    }
+
     private double getHospitalizationDuration(Environment environment, PersonId personId) {
         PopulationDescription populationDescription = environment.getGlobalPropertyValue(
                 GlobalProperty.POPULATION_DESCRIPTION);
@@ -187,21 +255,21 @@ public class HospitalizationManager extends AbstractComponent {
         Double hospitalizationDurationMean = hospitalizationDurationMeans.get(ageGroup);
         Double hospitalizationDurationSD = hospitalizationDurationSDs.get(ageGroup);
 
-        RealDistribution hospitalizationDurationDistribution = new GammaDistribution(
+        return GammaSampler.sampleFromMeanAndSD(
                 environment.getRandomGeneratorFromId(RandomId.HOSPITALIZATION_MANAGER),
-                GammaHelper.getShapeFromMeanAndSD(hospitalizationDurationMean, hospitalizationDurationSD),
-                GammaHelper.getScaleFromMeanAndSD(hospitalizationDurationMean, hospitalizationDurationSD));
-
-        return hospitalizationDurationDistribution.sample();
+                hospitalizationDurationMean, hospitalizationDurationSD);
 
     }
 
     private static class HospitalizationPlan implements Plan {
 
         final PersonId personId;
+        // The time at which the person will die, or NaN if they will not
+        final double deathTime;
 
-        HospitalizationPlan(PersonId personId) {
+        HospitalizationPlan(PersonId personId, double deathTime) {
             this.personId = personId;
+            this.deathTime = deathTime;
         }
 
     }
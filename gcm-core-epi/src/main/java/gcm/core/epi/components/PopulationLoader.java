@@ -6,10 +6,14 @@ import com.fasterxml.jackson.dataformat.csv.CsvMapper;
 import com.fasterxml.jackson.dataformat.csv.CsvSchema;
 import gcm.components.AbstractComponent;
 import gcm.core.epi.identifiers.*;
+import gcm.core.epi.plugin.behavior.BehaviorPlugin;
+import gcm.core.epi.plugin.infection.InfectionPlugin;
 import gcm.core.epi.population.*;
 import gcm.core.epi.propertytypes.ImmutableInfectionData;
 import gcm.core.epi.propertytypes.InfectionSpecification;
 import gcm.core.epi.trigger.FipsCode;
+import gcm.core.epi.util.distributions.AliasSampler;
+import gcm.core.epi.util.distributions.BinomialSampler;
 import gcm.core.epi.util.loading.HospitalDataFileRecord;
 import gcm.core.epi.util.loading.RegionWorkFlowFileRecord;
 import gcm.scenario.GroupId;
@@ -20,15 +24,13 @@ import gcm.simulation.Environment;
 import gcm.simulation.Filter;
 import gcm.simulation.Plan;
 import gcm.util.geolocator.GeoLocator;
-import org.apache.commons.math3.distribution.BinomialDistribution;
-import org.apache.commons.math3.distribution.EnumeratedDistribution;
+import org.apache.commons.math3.random.RandomGenerator;
 import org.apache.commons.math3.util.Pair;
 
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
-import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 public class PopulationLoader extends AbstractComponent {
@@ -55,19 +57,8 @@ public class PopulationLoader extends AbstractComponent {
         }
 
         // Add groups to simulation
-        //Map<RegionId, Map<Integer, List<GroupId>>> regionWorkplaceSizeMap = new HashMap<>();
         for (GroupSpecification groupSpecification : populationDescription.groupSpecificationByGroupId()) {
             GroupId groupId = environment.addGroup(groupSpecification.groupType());
-//            if (groupSpecification.groupType() == ContactGroupType.WORK & groupSpecification.regionId().isPresent()) {
-//                RegionId regionId = groupSpecification.regionId().get();
-//                Map<Integer, List<GroupId>> workplacesBySize = regionWorkplaceSizeMap.computeIfAbsent(regionId,
-//                        x -> new HashMap<>());
-//                Integer workplaceSize = groupSpecification.groupMembers().size();
-//                List<GroupId> workplaceList = workplacesBySize.computeIfAbsent(workplaceSize,
-//                        x -> new ArrayList<>());
-//                //environment.setGroupPropertyValue(groupId, WorkplaceProperty.REGION_ID, regionId);
-//                workplaceList.add(groupId);
-//            }
             for (Integer personIdIndex : groupSpecification.groupMembers()) {
                 PersonId personId = personIdList.get(personIdIndex);
                 environment.addPersonToGroup(personId, groupId);
@@ -102,7 +93,7 @@ public class PopulationLoader extends AbstractComponent {
 
 
                 // Build up outflow data for region ids in the simulation to
-                // parameterize enumerated random distributions
+                // parameterize the choice of staff home regions
                 Map<RegionId, List<Pair<RegionId, Double>>> outflowData = new HashMap<>();
 
                 try (MappingIterator<RegionWorkFlowFileRecord> regionWorkerFlowFileRecordMappingIterator = //
@@ -122,24 +113,26 @@ public class PopulationLoader extends AbstractComponent {
 
 
                 // Finally assemble the distributions
-                Map<RegionId, EnumeratedDistribution<RegionId>> outflowDistributions = outflowData.entrySet().stream()
-                        .collect(Collectors.toMap(
-                                Map.Entry::getKey,
-                                entry -> new EnumeratedDistribution<>(environment.getRandomGeneratorFromId(
-                                        RandomId.HOSPITAL_WORKPLACE_ASSIGNMENT), entry.getValue())
-                        ));
+                Map<RegionId, AliasSampler<RegionId>> outflowSamplers = new HashMap<>();
+                Map<RegionId, Map<RegionId, Double>> outflowWeightsByRegion = new HashMap<>();
+                for (Map.Entry<RegionId, List<Pair<RegionId, Double>>> entry : outflowData.entrySet()) {
+                    Map<RegionId, Double> outflowWeights = new LinkedHashMap<>();
+                    for (Pair<RegionId, Double> outflow : entry.getValue()) {
+                        outflowWeights.merge(outflow.getFirst(), outflow.getSecond(), Double::sum);
+                    }
+                    // Hospitals in regions with no positive outflow draw staff from their own region
+                    outflowWeights.values().removeIf(weight -> weight <= 0);
+                    if (!outflowWeights.isEmpty()) {
+                        outflowSamplers.put(entry.getKey(), new AliasSampler<>(outflowWeights));
+                        outflowWeightsByRegion.put(entry.getKey(), outflowWeights);
+                    }
+                }
 
-                // Build indices to choose random workers
-                int totalWorkers = 0;
-//                for (RegionId regionId : regionIds) {
-//                    FilterBuilder filterBuilder = new FilterBuilder();
-//                    filterBuilder.openAnd();
-//                    filterBuilder.addRegion(regionId);
-//                    filterBuilder.addGroupsForPersonAndGroupType(ContactGroupType.WORK, Equality.GREATER_THAN_EQUAL, 1);
-//                    filterBuilder.closeLogical();
-//                    environment.addPopulationIndex(filterBuilder.build(), WorkerRegionIdKey.of(regionId));
-//                    totalWorkers += environment.getIndexedPeople(WorkerRegionIdKey.of(regionId)).size();
-//                }
+                // Build rosters of workers by home region to choose random workers
+                WorkerRosters workerRosters = bedStaffRatio > 0 ?
+                        new WorkerRosters(populationDescription) : null;
+                RandomGenerator hospitalRandomGenerator = environment.getRandomGeneratorFromId(
+                        RandomId.HOSPITAL_WORKPLACE_ASSIGNMENT);
 
                 // Assemble the hospital data
                 List<HospitalData> hospitalDataList = new ArrayList<>();
@@ -152,24 +145,37 @@ public class PopulationLoader extends AbstractComponent {
                                 .regionId(hospitalRegionId)
                                 .beds(hospitalDataFileRecord.beds());
                         // Add staff
-//                        int staff = (int) Math.ceil(hospitalDataFileRecord.beds() * bedStaffRatio);
                         GroupId hospitalStaffGroupId = environment.addGroup(ContactGroupType.WORK);
-//                        EnumeratedDistribution<RegionId> outflowDistribution = outflowDistributions.get(hospitalRegionId);
-//                        int staffAssigned = 0;
-//                        while (staffAssigned < Math.min(staff, totalWorkers)) {
-//                            RegionId staffHomeRegionId = outflowDistribution.sample();
-//                            Optional<PersonId> staffCandidate = environment.getRandomIndexedPersonFromGenerator(
-//                                    WorkerRegionIdKey.of(staffHomeRegionId), RandomId.HOSPITAL_WORKPLACE_ASSIGNMENT);
-//                            if (staffCandidate.isPresent()) {
-//                                PersonId staffId = staffCandidate.get();
-//                                // There must be at least one workplace (and we know there is only one), so take first
-//                                GroupId workplaceId = environment.getGroupsForGroupTypeAndPerson(ContactGroupType.WORK,
-//                                        staffId).get(0);
-//                                environment.removePersonFromGroup(staffId, workplaceId);
-//                                environment.addPersonToGroup(staffId, hospitalStaffGroupId);
-//                                staffAssigned++;
-//                            }
-//                        }
+                        if (workerRosters != null) {
+                            int staff = (int) Math.ceil(hospitalDataFileRecord.beds() * bedStaffRatio);
+                            AliasSampler<RegionId> outflowSampler = outflowSamplers.get(hospitalRegionId);
+                            Set<RegionId> staffHomeRegionIds = outflowSampler != null ?
+                                    new HashSet<>(outflowSampler.getItems()) :
+                                    Collections.singleton(hospitalRegionId);
+                            int staffAvailable = workerRosters.size(staffHomeRegionIds);
+                            int staffAssigned = 0;
+                            while (staffAssigned < staff && staffAvailable > 0) {
+                                RegionId staffHomeRegionId = outflowSampler != null ?
+                                        outflowSampler.sample(hospitalRandomGenerator) : hospitalRegionId;
+                                if (workerRosters.size(staffHomeRegionId) == 0) {
+                                    // Renormalize over the regions that still have workers, of which there is at least one
+                                    Map<RegionId, Double> outflowWeights = outflowWeightsByRegion.get(hospitalRegionId);
+                                    outflowWeights.keySet().removeIf(regionId -> workerRosters.size(regionId) == 0);
+                                    outflowSampler = new AliasSampler<>(outflowWeights);
+                                    outflowSamplers.put(hospitalRegionId, outflowSampler);
+                                    continue;
+                                }
+                                PersonId staffId = personIdList.get(
+                                        workerRosters.removeRandom(staffHomeRegionId, hospitalRandomGenerator));
+                                // There must be at least one workplace (and we know there is only one), so take first
+                                GroupId workplaceId = environment.getGroupsForGroupTypeAndPerson(ContactGroupType.WORK,
+                                        staffId).get(0);
+                                environment.removePersonFromGroup(staffId, workplaceId);
+                                environment.addPersonToGroup(staffId, hospitalStaffGroupId);
+                                staffAssigned++;
+                                staffAvailable--;
+                            }
+                        }
                         hospitalDataBuilder.staffWorkplaceGroup(hospitalStaffGroupId);
 
                         // Add patient group
@@ -178,9 +184,9 @@ public class PopulationLoader extends AbstractComponent {
 
                         // Add bed resources
                         double hospitalBedOccupancy = environment.getGlobalPropertyValue(GlobalProperty.HOSPITAL_BED_OCCUPANCY);
-                        int bedsAvailable = new BinomialDistribution(environment.getRandomGeneratorFromId(
+                        int bedsAvailable = BinomialSampler.sample(environment.getRandomGeneratorFromId(
                                 RandomId.HOSPITAL_WORKPLACE_ASSIGNMENT), hospitalDataFileRecord.beds(),
-                                1 - hospitalBedOccupancy).sample();
+                                1 - hospitalBedOccupancy);
                         environment.addResourceToRegion(Resource.HOSPITAL_BED, hospitalRegionId, bedsAvailable);
 
                         hospitalDataList.add(hospitalDataBuilder.build());
@@ -190,11 +196,6 @@ public class PopulationLoader extends AbstractComponent {
                 // Store hospital data
                 environment.setGlobalPropertyValue(GlobalProperty.HOSPITAL_DATA, hospitalDataList);
 
-                // Remove indices
-//                for (RegionId regionId : regionIds) {
-//                    environment.removePopulationIndex(WorkerRegionIdKey.of(regionId));
-//                }
-
                 // Add GeoLocator for hospitals
                 GeoLocator.Builder<HospitalData> geoLocatorBuilder = GeoLocator.builder();
                 for (HospitalData hospitalData : hospitalDataList) {
@@ -210,6 +211,15 @@ public class PopulationLoader extends AbstractComponent {
             }
         }
 
+        // Generate plugin attributes for the loaded population
+        List<PopulationAttributeGenerator> populationAttributeGenerators = new ArrayList<>();
+        InfectionPlugin infectionPlugin = environment.getGlobalPropertyValue(GlobalProperty.INFECTION_PLUGIN);
+        populationAttributeGenerators.addAll(infectionPlugin.getPopulationAttributeGenerators(environment));
+        Optional<BehaviorPlugin> behaviorPlugin = environment.getGlobalPropertyValue(GlobalProperty.BEHAVIOR_PLUGIN);
+        behaviorPlugin.ifPresent(plugin -> populationAttributeGenerators.addAll(
+                plugin.getPopulationAttributeGenerators(environment)));
+        PopulationAttributeInitializer.initialize(environment, populationAttributeGenerators);
+
         // Initial Infections
         InfectionSpecification initialInfectionSpecification = environment.getGlobalPropertyValue(GlobalProperty.INITIAL_INFECTIONS);
         Map<FipsCode, Double> initialInfections = initialInfectionSpecification.getInfectionsByFipsCode(environment);
@@ -278,28 +288,61 @@ public class PopulationLoader extends AbstractComponent {
         // No data associated with this plan
     }
 
-    private static class WorkerRegionIdKey {
-        private final RegionId regionId;
-
-        private WorkerRegionIdKey(RegionId regionId) {
-            this.regionId = regionId;
+    /*
+     * Workers, as indices into the population description, grouped by home region. Each worker is listed once
+     * under the region they live in, whatever the region of their workplace, and workers are removed as they are
+     * sampled by swapping in the last worker of the region.
+     */
+    private static class WorkerRosters {
+        private final Map<RegionId, int[]> rosters = new HashMap<>();
+        private final Map<RegionId, Integer> sizes = new HashMap<>();
+
+        private WorkerRosters(PopulationDescription populationDescription) {
+            List<PersonData> personDataList = populationDescription.dataByPersonId();
+            BitSet listedWorkers = new BitSet(personDataList.size());
+            for (GroupSpecification groupSpecification : populationDescription.groupSpecificationByGroupId()) {
+                if (groupSpecification.groupType() == ContactGroupType.WORK) {
+                    for (Integer personIdIndex : groupSpecification.groupMembers()) {
+                        if (!listedWorkers.get(personIdIndex)) {
+                            listedWorkers.set(personIdIndex);
+                            RegionId regionId = personDataList.get(personIdIndex).regionId();
+                            int size = sizes.getOrDefault(regionId, 0);
+                            int[] roster = rosters.get(regionId);
+                            if (roster == null) {
+                                roster = new int[16];
+                                rosters.put(regionId, roster);
+                            } else if (size == roster.length) {
+                                roster = Arrays.copyOf(roster, 2 * size);
+                                rosters.put(regionId, roster);
+                            }
+                            roster[size] = personIdIndex;
+                            sizes.put(regionId, size + 1);
+                        }
+                    }
+                }
+            }
         }
 
-        private static WorkerRegionIdKey of(RegionId regionId) {
-            return new WorkerRegionIdKey(regionId);
+        private int size(RegionId regionId) {
+            return sizes.getOrDefault(regionId, 0);
         }
 
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            WorkerRegionIdKey that = (WorkerRegionIdKey) o;
-            return Objects.equals(regionId, that.regionId);
+        private int size(Set<RegionId> regionIds) {
+            int size = 0;
+            for (RegionId regionId : regionIds) {
+                size += size(regionId);
+            }
+            return size;
         }
 
-        @Override
-        public int hashCode() {
-            return Objects.hash(regionId);
+        private int removeRandom(RegionId regionId, RandomGenerator randomGenerator) {
+            int[] roster = rosters.get(regionId);
+            int size = sizes.get(regionId);
+            int index = randomGenerator.nextInt(size);
+            int personIdIndex = roster[index];
+            roster[index] = roster[size - 1];
+            sizes.put(regionId, size - 1);
+            return personIdIndex;
         }
     }
 
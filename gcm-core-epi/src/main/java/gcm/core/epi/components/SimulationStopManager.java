@@ -1,27 +1,99 @@
 package gcm.core.epi.components;
 
 import gcm.components.AbstractComponent;
+import gcm.core.epi.identifiers.Compartment;
 import gcm.core.epi.identifiers.GlobalProperty;
+import gcm.core.epi.util.statistics.ReplicationConvergenceTracker;
+import gcm.scenario.PersonId;
 import gcm.simulation.Environment;
 import gcm.simulation.Plan;
 
+/**
+ * Halts the simulation at the maximum simulation length and, when STOP_ON_EXTINCTION is set, as soon as no one is
+ * infected and nothing is pending that could reintroduce infection or produce reported outcomes. Components that
+ * plan such events, such as seeding, waning immunity, hospitalization, discharge and death, record them through
+ * deferExtinctionStop in LATEST_PENDING_EVENT_TIME, and the time of an extinction halt is recorded in EXTINCTION_TIME
+ * so that reports can account for the remainder of the simulation. Replications of scenarios that have already
+ * converged under adaptive replication using earlier replications are halted before they start.
+ */
 public class SimulationStopManager extends AbstractComponent {
 
+    private boolean extinctionCheckPlanned;
+
     @Override
     public void init(Environment environment) {
+        // Replications of a scenario that has converged using earlier replications halt before the population is loaded
+        ReplicationConvergenceTracker replicationConvergenceTracker = environment.getGlobalPropertyValue(
+                GlobalProperty.REPLICATION_CONVERGENCE_TRACKER);
+        if (replicationConvergenceTracker.isExcluded(environment.getScenarioId(),
+                environment.getReplicationId().getValue())) {
+            environment.setGlobalPropertyValue(GlobalProperty.REPLICATION_SKIPPED, true);
+            environment.halt();
+            return;
+        }
+
         double maxSimulationLength = environment.getGlobalPropertyValue(GlobalProperty.MAX_SIMULATION_LENGTH);
 
         if (maxSimulationLength < Double.POSITIVE_INFINITY) {
             environment.addPlan(new SimulationStopPlan(), maxSimulationLength);
         }
+
+        boolean stopOnExtinction = environment.getGlobalPropertyValue(GlobalProperty.STOP_ON_EXTINCTION);
+        if (stopOnExtinction) {
+            // People only leave the infected compartment by recovering
+            environment.observeCompartmentPersonArrival(true, Compartment.RECOVERED);
+        }
+    }
+
+    @Override
+    public void observeCompartmentPersonArrival(Environment environment, PersonId personId) {
+        if (!extinctionCheckPlanned && environment.getCompartmentPopulationCount(Compartment.INFECTED) == 0) {
+            checkExtinction(environment);
+        }
+    }
+
+    private void checkExtinction(Environment environment) {
+        if (environment.getCompartmentPopulationCount(Compartment.INFECTED) > 0) {
+            return;
+        }
+        double latestPendingEventTime = environment.getGlobalPropertyValue(GlobalProperty.LATEST_PENDING_EVENT_TIME);
+        if (latestPendingEventTime > environment.getTime()) {
+            // Check again once nothing more is pending, unless the epidemic has restarted by then
+            if (latestPendingEventTime < Double.POSITIVE_INFINITY) {
+                extinctionCheckPlanned = true;
+                environment.addPlan(new ExtinctionCheckPlan(), latestPendingEventTime);
+            }
+        } else {
+            environment.setGlobalPropertyValue(GlobalProperty.EXTINCTION_TIME, environment.getTime());
+            environment.halt();
+        }
+    }
+
+    /**
+     * Records that an event that may reintroduce infection or produce reported outcomes is planned for the given
+     * time, so that the simulation is not stopped on extinction before it
+     */
+    public static void deferExtinctionStop(Environment environment, double time) {
+        double latestPendingEventTime = environment.getGlobalPropertyValue(GlobalProperty.LATEST_PENDING_EVENT_TIME);
+        if (time > latestPendingEventTime) {
+            environment.setGlobalPropertyValue(GlobalProperty.LATEST_PENDING_EVENT_TIME, time);
+        }
     }
 
     @Override
     public void executePlan(Environment environment, Plan plan) {
-        environment.halt();
+        if (plan.getClass() == ExtinctionCheckPlan.class) {
+            extinctionCheckPlanned = false;
+            checkExtinction(environment);
+        } else {
+            environment.halt();
+        }
     }
 
     private static final class SimulationStopPlan implements Plan {
     }
 
+    private static final class ExtinctionCheckPlan implements Plan {
+    }
+
 }
@@ -1,16 +1,19 @@
 package gcm.core.epi.components;
 
 import gcm.components.AbstractComponent;
+import gcm.components.Component;
+import gcm.core.epi.components.trigger.TriggerMetricsComponent;
 import gcm.core.epi.identifiers.GlobalProperty;
 import gcm.core.epi.plugin.behavior.BehaviorPlugin;
+import gcm.core.epi.trigger.RegionTriggerStates;
 import gcm.core.epi.trigger.Trigger;
 import gcm.core.epi.trigger.TriggerCallback;
 import gcm.core.epi.trigger.TriggerContainer;
 import gcm.core.epi.trigger.TriggerId;
+import gcm.scenario.PersonId;
 import gcm.simulation.Environment;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class TriggerManager extends AbstractComponent {
 
@@ -18,64 +21,78 @@ public class TriggerManager extends AbstractComponent {
     public void init(Environment environment) {
         TriggerContainer triggerContainer = environment.getGlobalPropertyValue(GlobalProperty.TRIGGER_CONTAINER);
         Map<Trigger, Set<TriggerCallback>> triggerCallbacks = new HashMap<>();
+        // Trigger states are maintained separately for each simulation
+        environment.setGlobalPropertyValue(GlobalProperty.REGION_TRIGGER_STATES, new RegionTriggerStates(environment));
+        // Trigger states cache the region of each person, which changes when people are hospitalized elsewhere
+        environment.observeGlobalPersonRegionChange(true);
         Optional<BehaviorPlugin> behaviorPlugin = environment.getGlobalPropertyValue(GlobalProperty.BEHAVIOR_PLUGIN);
 
         // Get triggers and properties from each behavior plugin
         if (behaviorPlugin.isPresent()) {
+            behaviorPlugin.get().init(environment);
+            BitSet requiredTriggers = new BitSet(triggerContainer.size());
             Map<String, Set<TriggerCallback>> triggerCallbacksForPlugin = behaviorPlugin.get().getTriggerCallbacks(environment);
             for (Map.Entry<String, Set<TriggerCallback>> triggerCallbackEntry : triggerCallbacksForPlugin.entrySet()) {
                 String triggerName = triggerCallbackEntry.getKey();
                 // Empty string means 'never'
                 if (!triggerName.equals("")) {
-                    TriggerId<Trigger> triggerId = triggerContainer.getId(triggerName);
-                    if (triggerId != null) {
-                        Set<TriggerCallback> triggerCallbackSet = getTriggerCallbacksAndInitialize(environment,
-                                triggerCallbacks, triggerId);
-                        triggerCallbackSet.addAll(triggerCallbackEntry.getValue());
+                    int triggerIndex = triggerContainer.getIndex(triggerName);
+                    if (triggerIndex >= 0) {
+                        getTriggerCallbacks(triggerContainer, triggerCallbacks, triggerIndex)
+                                .addAll(triggerCallbackEntry.getValue());
+                        // Include the triggers that start this one
+                        for (int requiredIndex : triggerContainer.getRequiredTriggerIndices(triggerIndex)) {
+                            requiredTriggers.set(requiredIndex);
+                        }
                     } else {
                         throw new RuntimeException("TriggerManager cannot find a trigger defined with the name: '" +
                                 triggerName + "'");
                     }
                 }
             }
-            environment.setGlobalPropertyValue(GlobalProperty.TRIGGER_CALLBACKS, triggerCallbacks);
-        }
 
-        // Handle triggers that start after other triggers
-        Set<Trigger> triggersToAdd = triggerCallbacks.keySet().stream()
-                .filter(x -> x.startingTriggers().size() > 0)
-                .collect(Collectors.toSet());
+            // Handle triggers that start after other triggers, which cannot form cycles in a compiled container
+            for (int triggerIndex = requiredTriggers.nextSetBit(0); triggerIndex >= 0;
+                 triggerIndex = requiredTriggers.nextSetBit(triggerIndex + 1)) {
+                TriggerCallback startCallback = triggerContainer.getStartCallback(triggerIndex);
+                for (int startingIndex : triggerContainer.getStartingTriggerIndices(triggerIndex)) {
+                    getTriggerCallbacks(triggerContainer, triggerCallbacks, startingIndex).add(startCallback);
+                }
+            }
+            environment.setGlobalPropertyValue(GlobalProperty.TRIGGER_CALLBACKS, triggerCallbacks);
 
-        // TODO: Need to deal with self-referential triggers and loop garbage like that
-        while (triggersToAdd.size() > 0) {
-            Trigger trigger = triggersToAdd.iterator().next();
-            for (String id : trigger.startingTriggers()) {
-                TriggerId<Trigger> startingTriggerId = triggerContainer.getId(id);
-                Set<TriggerCallback> startingTriggerCallbacks = getTriggerCallbacksAndInitialize(environment,
-                        triggerCallbacks, startingTriggerId);
-                //noinspection OptionalGetWithoutIsPresent
-                startingTriggerCallbacks.add((env, regionId) -> env.setRegionPropertyValue(regionId, trigger.triggeringRegionProperty().get(), true));
-                triggersToAdd.remove(trigger);
-                Trigger startingTrigger = triggerContainer.get(startingTriggerId);
-                if (startingTrigger.startingTriggers().size() > 0) {
-                    triggersToAdd.add(startingTrigger);
+            // Generate global components for only the triggers in use
+            boolean triggerMetricsComponentAdded = false;
+            for (int triggerIndex = requiredTriggers.nextSetBit(0); triggerIndex >= 0;
+                 triggerIndex = requiredTriggers.nextSetBit(triggerIndex + 1)) {
+                TriggerId<Trigger> triggerId = triggerContainer.getId(triggerIndex);
+                Class<? extends Component> triggerComponent = triggerId.trigger().triggerComponent();
+                if (triggerComponent == TriggerMetricsComponent.class) {
+                    // A single component counts events for all triggers that use it
+                    if (!triggerMetricsComponentAdded) {
+                        environment.addGlobalComponent(TriggerMetricsComponent.TRIGGER_METRICS_COMPONENT_ID,
+                                TriggerMetricsComponent.class);
+                        triggerMetricsComponentAdded = true;
+                    }
+                } else {
+                    environment.addGlobalComponent(triggerId, triggerComponent);
                 }
             }
         }
 
     }
 
-    Set<TriggerCallback> getTriggerCallbacksAndInitialize(Environment environment,
-                                                          Map<Trigger, Set<TriggerCallback>> triggerCallbacks,
-                                                          TriggerId<Trigger> triggerId) {
-        return triggerCallbacks.computeIfAbsent(
-                triggerId.trigger(),
-                trigger -> {
-                    // Generate a new global component for this trigger
-                    environment.addGlobalComponent(triggerId, triggerId.trigger().triggerComponent());
-                    return new HashSet<>();
-                }
-        );
+    @Override
+    public void observePersonRegionChange(Environment environment, PersonId personId) {
+        RegionTriggerStates regionTriggerStates = environment.getGlobalPropertyValue(GlobalProperty.REGION_TRIGGER_STATES);
+        regionTriggerStates.handlePersonRegionChange(personId);
+    }
+
+    private Set<TriggerCallback> getTriggerCallbacks(TriggerContainer triggerContainer,
+                                                     Map<Trigger, Set<TriggerCallback>> triggerCallbacks,
+                                                     int triggerIndex) {
+        TriggerId<Trigger> triggerId = triggerContainer.getId(triggerIndex);
+        return triggerCallbacks.computeIfAbsent(triggerId.trigger(), trigger -> new LinkedHashSet<>());
     }
 
 }
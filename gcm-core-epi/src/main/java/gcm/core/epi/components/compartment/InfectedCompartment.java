@@ -10,8 +10,23 @@ import gcm.scenario.PersonId;
 import gcm.simulation.Environment;
 import gcm.simulation.Plan;
 
+import java.util.Arrays;
+
+/**
+ * Manages the course of disease for infected people. The times of infectiousness onset, symptom onset and recovery
+ * are computed on arrival and kept in primitive arrays, and only the earliest pending event for each person is
+ * planned, with the next one planned as each event executes.
+ */
 public class InfectedCompartment extends DiseaseCompartment {
 
+    private static final int INFECTIOUSNESS_ONSET = 0;
+    private static final int SYMPTOM_ONSET = 1;
+    private static final int RECOVERY = 2;
+    private static final int EVENT_COUNT = 3;
+
+    // Pending event times indexed by person id and event, or NaN when the event is not pending
+    private double[] eventTimes = new double[0];
+
     @Override
     public void init(final Environment environment) {
 
@@ -27,24 +42,53 @@ public class InfectedCompartment extends DiseaseCompartment {
         InfectionPlugin infectionPlugin = environment.getGlobalPropertyValue(GlobalProperty.INFECTION_PLUGIN);
         DiseaseCourseData diseaseCourseData = infectionPlugin.getDiseaseCourseData(environment, personId);
 
+        int offset = personId.getValue() * EVENT_COUNT;
+        if (offset + EVENT_COUNT > eventTimes.length) {
+            int oldLength = eventTimes.length;
+            eventTimes = Arrays.copyOf(eventTimes, Math.max(offset + EVENT_COUNT, 2 * oldLength));
+            Arrays.fill(eventTimes, oldLength, eventTimes.length, Double.NaN);
+        }
+
         // Schedule onset of infectiousness
-        environment.addPlan(new InfectiousnessOnsetPlan(personId),
-                environment.getTime() + diseaseCourseData.infectiousOnsetTime());
+        eventTimes[offset + INFECTIOUSNESS_ONSET] = environment.getTime() + diseaseCourseData.infectiousOnsetTime();
 
         // Determine if person should be symptomatic
         final boolean willBeSymptomatic = environment.getRandomGeneratorFromId(RandomId.INFECTED_COMPARTMENT).nextDouble() <=
                 (double) environment.getGlobalPropertyValue(GlobalProperty.FRACTION_SYMPTOMATIC);
         if (willBeSymptomatic) {
             environment.setPersonPropertyValue(personId, PersonProperty.WILL_BE_SYMPTOMATIC, true);
-            environment.addPlan(new SymptomOnsetPlan(personId),
-                    environment.getTime() + diseaseCourseData.symptomOnsetTime());
+            eventTimes[offset + SYMPTOM_ONSET] = environment.getTime() + diseaseCourseData.symptomOnsetTime();
         }
         // Implicitly by default environment.setPersonPropertyValue(personId, PersonProperty.WILL_BE_SYMPTOMATIC, false);
 
         // Schedule onset of recovery
-        environment.addPlan(new CompartmentChangePlan(personId, Compartment.RECOVERED),
-                environment.getTime() + diseaseCourseData.recoveryTime());
+        eventTimes[offset + RECOVERY] = environment.getTime() + diseaseCourseData.recoveryTime();
+
+        planNextDiseaseEvent(environment, new DiseaseEventPlan(personId));
+
+    }
+
+    /*
+     * Returns the pending event for the person with the earliest time, with ties going to the event that comes first
+     * in the course of disease, or -1 if there are no pending events
+     */
+    private int getNextEvent(int offset) {
+        int nextEvent = -1;
+        for (int event = 0; event < EVENT_COUNT; event++) {
+            double eventTime = eventTimes[offset + event];
+            if (!Double.isNaN(eventTime) && (nextEvent < 0 || eventTime < eventTimes[offset + nextEvent])) {
+                nextEvent = event;
+            }
+        }
+        return nextEvent;
+    }
 
+    private void planNextDiseaseEvent(final Environment environment, DiseaseEventPlan diseaseEventPlan) {
+        int offset = diseaseEventPlan.personId.getValue() * EVENT_COUNT;
+        int nextEvent = getNextEvent(offset);
+        if (nextEvent >= 0) {
+            environment.addPlan(diseaseEventPlan, eventTimes[offset + nextEvent]);
+        }
     }
 
     private void handleSymptomsOnRecovery(final Environment environment, PersonId personId) {
@@ -58,43 +102,41 @@ public class InfectedCompartment extends DiseaseCompartment {
     @Override
     public void executePlan(final Environment environment, Plan plan) {
 
-        if (plan.getClass().equals(InfectiousnessOnsetPlan.class)) {
-            /*
-                Infectiousness onset
-             */
-            PersonId personId = ((InfectiousnessOnsetPlan) plan).personId;
-            environment.setPersonPropertyValue(personId, PersonProperty.IS_INFECTIOUS, true);
-        } else if (plan.getClass().equals(SymptomOnsetPlan.class)) {
-            /*
-                Symptom onset
-             */
-            PersonId personId = ((SymptomOnsetPlan) plan).personId;
-            environment.setPersonPropertyValue(personId, PersonProperty.IS_SYMPTOMATIC, true);
-        } else if (plan.getClass().equals(CompartmentChangePlan.class)) {
-            /*
-                Recovery
-             */
-            PersonId personId = ((CompartmentChangePlan) plan).personId;
-            environment.setPersonPropertyValue(personId, PersonProperty.IS_INFECTIOUS, false);
-            handleSymptomsOnRecovery(environment, personId);
-            // Actually perform compartment change
-            super.executePlan(environment, plan);
+        DiseaseEventPlan diseaseEventPlan = (DiseaseEventPlan) plan;
+        PersonId personId = diseaseEventPlan.personId;
+        int offset = personId.getValue() * EVENT_COUNT;
+        int event = getNextEvent(offset);
+        if (event < 0) {
+            throw new RuntimeException("InfectedCompartment Error: No pending disease event for " + personId);
+        }
+        eventTimes[offset + event] = Double.NaN;
+
+        switch (event) {
+            case INFECTIOUSNESS_ONSET:
+                environment.setPersonPropertyValue(personId, PersonProperty.IS_INFECTIOUS, true);
+                break;
+            case SYMPTOM_ONSET:
+                environment.setPersonPropertyValue(personId, PersonProperty.IS_SYMPTOMATIC, true);
+                break;
+            case RECOVERY:
+                environment.setPersonPropertyValue(personId, PersonProperty.IS_INFECTIOUS, false);
+                handleSymptomsOnRecovery(environment, personId);
+                // Any events still pending are abandoned at recovery
+                Arrays.fill(eventTimes, offset, offset + EVENT_COUNT, Double.NaN);
+                // Actually perform compartment change
+                environment.setPersonCompartment(personId, Compartment.RECOVERED);
+                return;
         }
 
-    }
-
-    private static class InfectiousnessOnsetPlan implements Plan {
-        private final PersonId personId;
+        // The same plan is reused for the next event
+        planNextDiseaseEvent(environment, diseaseEventPlan);
 
-        private InfectiousnessOnsetPlan(PersonId personId) {
-            this.personId = personId;
-        }
     }
 
-    private static class SymptomOnsetPlan implements Plan {
+    private static class DiseaseEventPlan implements Plan {
         private final PersonId personId;
 
-        private SymptomOnsetPlan(PersonId personId) {
+        private DiseaseEventPlan(PersonId personId) {
             this.personId = personId;
         }
     }
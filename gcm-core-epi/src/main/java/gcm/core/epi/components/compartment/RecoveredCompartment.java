@@ -1,15 +1,14 @@
 package gcm.core.epi.components.compartment;
 
+import gcm.core.epi.components.SimulationStopManager;
 import gcm.core.epi.identifiers.Compartment;
 import gcm.core.epi.identifiers.GlobalProperty;
 import gcm.core.epi.identifiers.PersonProperty;
 import gcm.core.epi.identifiers.RandomId;
-import gcm.core.epi.util.distributions.GammaHelper;
+import gcm.core.epi.util.distributions.GammaSampler;
 import gcm.scenario.PersonId;
 import gcm.simulation.Environment;
 import gcm.simulation.Plan;
-import org.apache.commons.math3.distribution.GammaDistribution;
-import org.apache.commons.math3.distribution.RealDistribution;
 
 public class RecoveredCompartment extends DiseaseCompartment {
 
@@ -53,15 +52,16 @@ public class RecoveredCompartment extends DiseaseCompartment {
             if (waningTimeMean == 0.0 | waningTimeSD == 0.0) {
                 waningDelay = waningTimeMean;
             } else {
-                RealDistribution waningImmunityDistribution = new GammaDistribution(
+                waningDelay = GammaSampler.sampleFromMeanAndSD(
                         environment.getRandomGeneratorFromId(RandomId.RECOVERED_COMPARTMENT),
-                        GammaHelper.getShapeFromMeanAndSD(waningTimeMean, waningTimeSD),
-                        GammaHelper.getScaleFromMeanAndSD(waningTimeMean, waningTimeSD));
-
-                waningDelay = waningImmunityDistribution.sample();
+                        waningTimeMean, waningTimeSD);
             }
 
-            environment.addPlan(new WaningImmunityPlan(personId), environment.getTime() + waningDelay);
+            double waningTime = environment.getTime() + waningDelay;
+            environment.addPlan(new WaningImmunityPlan(personId), waningTime);
+
+            // Waning changes compartment populations, so the simulation should not stop on extinction before it
+            SimulationStopManager.deferExtinctionStop(environment, waningTime);
         }
     }
 
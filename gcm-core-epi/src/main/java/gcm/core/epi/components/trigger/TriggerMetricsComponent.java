@@ -0,0 +1,632 @@
+package gcm.core.epi.components.trigger;
+
+import gcm.components.AbstractComponent;
+import gcm.core.epi.identifiers.Compartment;
+import gcm.core.epi.identifiers.GlobalProperty;
+import gcm.core.epi.identifiers.PersonProperty;
+import gcm.core.epi.identifiers.Resource;
+import gcm.core.epi.trigger.*;
+import gcm.scenario.*;
+import gcm.simulation.Environment;
+import gcm.simulation.Plan;
+
+import java.util.*;
+
+/**
+ * A single component that counts the events behind all incidence, rolling incidence and cumulative triggers. Each
+ * metric is observed once and recorded by region index, so the cost of an event does not depend on how many triggers
+ * are defined. Incidence triggers read the events recorded since their last flush and roll them up to their scope,
+ * re-evaluating only the FIPS codes whose counts changed. Cumulative triggers sharing a metric and scope share their counts and
+ * keep their thresholds sorted per FIPS code.
+ */
+public class TriggerMetricsComponent extends AbstractComponent {
+
+    public static final GlobalComponentId TRIGGER_METRICS_COMPONENT_ID = new GlobalComponentId() {
+        @Override
+        public String toString() {
+            return "TRIGGER_METRICS_COMPONENT_ID";
+        }
+    };
+
+    private final Map<RegionId, Integer> regionIndexMap = new HashMap<>();
+    private final List<RegionId> regionIds = new ArrayList<>();
+    private final Map<FipsScope, ScopeIndex> scopeIndices = new EnumMap<>(FipsScope.class);
+    private final Map<TriggerMetric, MetricCounts> metricCounts = new EnumMap<>(TriggerMetric.class);
+
+    @Override
+    public void init(Environment environment) {
+        for (RegionId regionId : environment.getRegionIds()) {
+            regionIndexMap.put(regionId, regionIds.size());
+            regionIds.add(regionId);
+        }
+
+        Map<Trigger, Set<TriggerCallback>> triggersCallbacks = environment.getGlobalPropertyValue(
+                GlobalProperty.TRIGGER_CALLBACKS);
+        // Iterate in a stable order so that callbacks fire deterministically
+        List<Trigger> triggers = new ArrayList<>(triggersCallbacks.keySet());
+        triggers.sort(Comparator.comparing(Trigger::toString));
+        Map<TriggerMetric, Map<FipsScope, List<CumulativeTrigger>>> cumulativeTriggers = new EnumMap<>(TriggerMetric.class);
+        for (Trigger trigger : triggers) {
+            TriggerCallback[] callbacks = triggersCallbacks.get(trigger).toArray(new TriggerCallback[0]);
+            if (trigger instanceof IncidenceTrigger) {
+                IncidenceTrigger incidenceTrigger = (IncidenceTrigger) trigger;
+                MetricCounts counts = getMetricCounts(environment, incidenceTrigger.metric());
+                addFlushedTrigger(environment, counts, incidenceTrigger.comparison(),
+                        new IncidenceTriggerState(environment, incidenceTrigger, counts,
+                                getScopeIndex(environment, incidenceTrigger.scope()), callbacks));
+            } else if (trigger instanceof RollingIncidenceTrigger) {
+                RollingIncidenceTrigger rollingIncidenceTrigger = (RollingIncidenceTrigger) trigger;
+                MetricCounts counts = getMetricCounts(environment, rollingIncidenceTrigger.metric());
+                addFlushedTrigger(environment, counts, rollingIncidenceTrigger.comparison(),
+                        new RollingIncidenceTriggerState(environment, rollingIncidenceTrigger, counts,
+                                getScopeIndex(environment, rollingIncidenceTrigger.scope()), callbacks));
+            } else if (trigger instanceof CumulativeTrigger) {
+                CumulativeTrigger cumulativeTrigger = (CumulativeTrigger) trigger;
+                cumulativeTriggers.computeIfAbsent(cumulativeTrigger.metric(), metric -> new EnumMap<>(FipsScope.class))
+                        .computeIfAbsent(cumulativeTrigger.scope(), scope -> new ArrayList<>())
+                        .add(cumulativeTrigger);
+            }
+        }
+        for (Map.Entry<TriggerMetric, Map<FipsScope, List<CumulativeTrigger>>> metricEntry : cumulativeTriggers.entrySet()) {
+            MetricCounts counts = getMetricCounts(environment, metricEntry.getKey());
+            for (Map.Entry<FipsScope, List<CumulativeTrigger>> scopeEntry : metricEntry.getValue().entrySet()) {
+                counts.cumulativeGroups.add(new CumulativeTriggerGroup(environment,
+                        getScopeIndex(environment, scopeEntry.getKey()), scopeEntry.getValue(), triggersCallbacks));
+            }
+        }
+    }
+
+    private void addFlushedTrigger(Environment environment, MetricCounts counts,
+                                   IncidenceTrigger.Comparison comparison, FlushedTriggerState state) {
+        counts.flushedTriggers.add(state);
+        counts.awaitingEvent.add(state);
+        if (comparison == IncidenceTrigger.Comparison.BELOW) {
+            // Trigger is already active
+            for (int fipsIndex = 0; fipsIndex < state.thresholds.length; fipsIndex++) {
+                state.activate(environment, fipsIndex);
+            }
+        }
+    }
+
+    private ScopeIndex getScopeIndex(Environment environment, FipsScope scope) {
+        return scopeIndices.computeIfAbsent(scope, key -> new ScopeIndex(environment, key, regionIds));
+    }
+
+    private MetricCounts getMetricCounts(Environment environment, TriggerMetric metric) {
+        MetricCounts counts = metricCounts.get(metric);
+        if (counts == null) {
+            counts = new MetricCounts();
+            metricCounts.put(metric, counts);
+            // Register to observe events
+            switch (metric) {
+                case INFECTIONS:
+                    environment.observeCompartmentPersonArrival(true, Compartment.INFECTED);
+                    break;
+                case CASES:
+                    environment.observeGlobalPersonPropertyChange(true, PersonProperty.IS_SYMPTOMATIC);
+                    break;
+                case HOSPITALIZATIONS:
+                    environment.observeGlobalPersonResourceChange(true, Resource.HOSPITAL_BED);
+                    environment.observeGlobalPersonPropertyChange(true, PersonProperty.DID_NOT_RECEIVE_HOSPITAL_BED);
+                    break;
+                case DEATHS:
+                    environment.observeGlobalPersonPropertyChange(true, PersonProperty.IS_DEAD);
+                    break;
+                default:
+                    throw new RuntimeException("Unhandled trigger metric: " + metric);
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public void observeCompartmentPersonArrival(Environment environment, PersonId personId) {
+        CompartmentId compartment = environment.getPersonCompartment(personId);
+        if (compartment == Compartment.INFECTED) {
+            handleEvent(environment, TriggerMetric.INFECTIONS, personId);
+        } else {
+            throw new RuntimeException("Trigger metrics observed unexpected person compartment change");
+        }
+    }
+
+    @Override
+    public void observePersonPropertyChange(Environment environment, PersonId personId, PersonPropertyId personPropertyId) {
+        if (personPropertyId == PersonProperty.IS_SYMPTOMATIC) {
+            boolean isSymptomatic = environment.getPersonPropertyValue(personId, personPropertyId);
+            if (isSymptomatic) {
+                handleEvent(environment, TriggerMetric.CASES, personId);
+            }
+        } else if (personPropertyId == PersonProperty.DID_NOT_RECEIVE_HOSPITAL_BED) {
+            handleEvent(environment, TriggerMetric.HOSPITALIZATIONS, personId);
+        } else if (personPropertyId == PersonProperty.IS_DEAD) {
+            handleEvent(environment, TriggerMetric.DEATHS, personId);
+        } else {
+            throw new RuntimeException("Trigger metrics observed change for unexpected person property: " +
+                    personPropertyId);
+        }
+    }
+
+    @Override
+    public void observePersonResourceChange(Environment environment, PersonId personId, ResourceId resourceId) {
+        if (resourceId == Resource.HOSPITAL_BED) {
+            if (environment.getPersonResourceLevel(personId, resourceId) > 0) {
+                handleEvent(environment, TriggerMetric.HOSPITALIZATIONS, personId);
+            }
+        } else {
+            throw new RuntimeException("Trigger metrics observed unexpected person resource change");
+        }
+    }
+
+    private void handleEvent(Environment environment, TriggerMetric metric, PersonId personId) {
+        MetricCounts counts = metricCounts.get(metric);
+        int regionIndex = regionIndexMap.get(environment.getPersonRegion(personId));
+        if (!counts.flushedTriggers.isEmpty()) {
+            counts.eventLog.add(regionIndex);
+            // Wait to schedule flush plans until needed
+            for (FlushedTriggerState state : counts.awaitingEvent) {
+                environment.addPlan(new FlushPlan(state), state.getNextFlushTime(environment.getTime()));
+            }
+            counts.awaitingEvent.clear();
+        }
+        for (CumulativeTriggerGroup group : counts.cumulativeGroups) {
+            group.increment(environment, regionIndex);
+        }
+    }
+
+    @Override
+    public void executePlan(Environment environment, Plan plan) {
+        // Only called for FlushPlan
+        FlushedTriggerState state = ((FlushPlan) plan).state;
+        MetricCounts counts = state.counts;
+        if (state.flush(environment)) {
+            environment.addPlan(new FlushPlan(state), state.getNextFlushTime(environment.getTime()));
+        } else {
+            counts.awaitingEvent.add(state);
+        }
+        long firstUnreadPosition = Long.MAX_VALUE;
+        for (FlushedTriggerState otherState : counts.flushedTriggers) {
+            firstUnreadPosition = Math.min(firstUnreadPosition, otherState.eventLogPosition);
+        }
+        counts.eventLog.discardBefore(firstUnreadPosition);
+    }
+
+    /*
+     * The FIPS codes of a scope, indexed in sorted order, with the FIPS index of each region
+     */
+    private static final class ScopeIndex {
+        private final List<FipsCode> fipsCodes;
+        private final int[] regionFipsIndices;
+        private final RegionId[][] fipsRegions;
+
+        private ScopeIndex(Environment environment, FipsScope scope, List<RegionId> regionIds) {
+            List<FipsCode> fipsCodes = new ArrayList<>(scope.getFipsCodesForRegions(environment));
+            fipsCodes.sort(Comparator.comparing(FipsCode::code));
+            Map<FipsCode, Integer> fipsIndexMap = new HashMap<>();
+            for (FipsCode fipsCode : fipsCodes) {
+                fipsIndexMap.put(fipsCode, fipsIndexMap.size());
+            }
+            regionFipsIndices = new int[regionIds.size()];
+            List<List<RegionId>> fipsRegionLists = new ArrayList<>();
+            for (int fipsIndex = 0; fipsIndex < fipsCodes.size(); fipsIndex++) {
+                fipsRegionLists.add(new ArrayList<>());
+            }
+            for (int regionIndex = 0; regionIndex < regionIds.size(); regionIndex++) {
+                int fipsIndex = fipsIndexMap.get(scope.getFipsCode(regionIds.get(regionIndex)));
+                regionFipsIndices[regionIndex] = fipsIndex;
+                fipsRegionLists.get(fipsIndex).add(regionIds.get(regionIndex));
+            }
+            fipsRegions = new RegionId[fipsCodes.size()][];
+            for (int fipsIndex = 0; fipsIndex < fipsCodes.size(); fipsIndex++) {
+                fipsRegions[fipsIndex] = fipsRegionLists.get(fipsIndex).toArray(new RegionId[0]);
+            }
+            this.fipsCodes = fipsCodes;
+        }
+
+        private int fipsCount() {
+            return fipsRegions.length;
+        }
+
+        private double[] getValues(Map<FipsCode, Double> valuesByFipsCode) {
+            double[] values = new double[fipsCount()];
+            for (int fipsIndex = 0; fipsIndex < values.length; fipsIndex++) {
+                values[fipsIndex] = valuesByFipsCode.get(fipsCodes.get(fipsIndex));
+            }
+            return values;
+        }
+
+        private void triggerCallbacks(Environment environment, int fipsIndex, TriggerCallback[] callbacks) {
+            for (RegionId regionId : fipsRegions[fipsIndex]) {
+                for (TriggerCallback callback : callbacks) {
+                    callback.trigger(environment, regionId);
+                }
+            }
+        }
+    }
+
+    /*
+     * The events recorded for a single metric and the triggers that read them
+     */
+    private static final class MetricCounts {
+        private final EventLog eventLog = new EventLog();
+        private final List<FlushedTriggerState> flushedTriggers = new ArrayList<>();
+        private final List<FlushedTriggerState> awaitingEvent = new ArrayList<>();
+        private final List<CumulativeTriggerGroup> cumulativeGroups = new ArrayList<>();
+    }
+
+    /*
+     * Region indices of the events of a metric in order of occurrence. Positions are absolute, and entries that
+     * every incidence trigger has read are discarded.
+     */
+    private static final class EventLog {
+        private int[] regionIndices = new int[1024];
+        private int size;
+        private long firstPosition;
+
+        private void add(int regionIndex) {
+            if (size == regionIndices.length) {
+                regionIndices = Arrays.copyOf(regionIndices, 2 * size);
+            }
+            regionIndices[size++] = regionIndex;
+        }
+
+        private long endPosition() {
+            return firstPosition + size;
+        }
+
+        private int get(long position) {
+            return regionIndices[(int) (position - firstPosition)];
+        }
+
+        private void discardBefore(long position) {
+            int discardCount = (int) (position - firstPosition);
+            // Only compact once most of the log has been read
+            if (discardCount > 0 && discardCount >= size / 2) {
+                System.arraycopy(regionIndices, discardCount, regionIndices, 0, size - discardCount);
+                size -= discardCount;
+                firstPosition = position;
+            }
+        }
+    }
+
+    /*
+     * A trigger that reads the event log of its metric when flushed and compares counts per FIPS code with its
+     * thresholds
+     */
+    private abstract static class FlushedTriggerState {
+        protected final MetricCounts counts;
+        protected final ScopeIndex scopeIndex;
+        private final TriggerCallback[] callbacks;
+        protected final double[] thresholds;
+        private final boolean[] triggerActive;
+        private final IncidenceTrigger.Comparison comparison;
+        private final double start;
+        private final double end;
+        private final double interval;
+        protected long eventLogPosition;
+        private boolean allEvaluated;
+
+        private FlushedTriggerState(MetricCounts counts, ScopeIndex scopeIndex, TriggerCallback[] callbacks,
+                                    double[] thresholds, IncidenceTrigger.Comparison comparison,
+                                    double start, double end, double interval) {
+            this.counts = counts;
+            this.scopeIndex = scopeIndex;
+            this.callbacks = callbacks;
+            this.thresholds = thresholds;
+            this.triggerActive = new boolean[thresholds.length];
+            this.comparison = comparison;
+            this.start = start;
+            this.end = end;
+            this.interval = interval;
+            this.eventLogPosition = counts.eventLog.endPosition();
+        }
+
+        private double getNextFlushTime(double time) {
+            double intervalsElapsed = Math.floor(time / interval);
+            return (intervalsElapsed + 1) * interval;
+        }
+
+        private void activate(Environment environment, int fipsIndex) {
+            scopeIndex.triggerCallbacks(environment, fipsIndex, callbacks);
+            triggerActive[fipsIndex] = true;
+        }
+
+        /*
+         * Reads the events since the last flush and evaluates the FIPS codes that may have changed, returning
+         * whether the trigger needs to be flushed at the next interval even if no further events occur
+         */
+        private boolean flush(Environment environment) {
+            EventLog eventLog = counts.eventLog;
+            long endPosition = eventLog.endPosition();
+            boolean flushAgain = update(environment, eventLog, endPosition);
+            eventLogPosition = endPosition;
+
+            double time = environment.getTime();
+            if (time >= start && time < end) {
+                if (allEvaluated) {
+                    evaluateChanged(environment);
+                } else {
+                    for (int fipsIndex = 0; fipsIndex < thresholds.length; fipsIndex++) {
+                        evaluate(environment, fipsIndex);
+                    }
+                    allEvaluated = true;
+                }
+            }
+            clearChanged();
+            return flushAgain;
+        }
+
+        /*
+         * Updates the counts with the events up to the given log position
+         */
+        protected abstract boolean update(Environment environment, EventLog eventLog, long endPosition);
+
+        /*
+         * Evaluates the FIPS codes whose counts may differ from when they were last evaluated
+         */
+        protected abstract void evaluateChanged(Environment environment);
+
+        protected abstract void clearChanged();
+
+        protected abstract int getCount(int fipsIndex);
+
+        protected void evaluate(Environment environment, int fipsIndex) {
+            int count = getCount(fipsIndex);
+            double threshold = thresholds[fipsIndex];
+            switch (comparison) {
+                case ABOVE:
+                    if (count > threshold && !triggerActive[fipsIndex]) {
+                        // Trigger should be activated
+                        activate(environment, fipsIndex);
+                    } else if (count <= threshold && triggerActive[fipsIndex]) {
+                        triggerActive[fipsIndex] = false;
+                    }
+                    break;
+                case BELOW:
+                    if (count < threshold && !triggerActive[fipsIndex]) {
+                        // Trigger should be activated
+                        activate(environment, fipsIndex);
+                    } else if (count >= threshold && triggerActive[fipsIndex]) {
+                        triggerActive[fipsIndex] = false;
+                    }
+                    break;
+                default:
+                    throw new RuntimeException("Unhandled Incidence Trigger Comparison");
+            }
+        }
+    }
+
+    /*
+     * Counts events over fixed intervals, resetting the counts at each flush
+     */
+    private static final class IncidenceTriggerState extends FlushedTriggerState {
+        private final int[] fipsCounts;
+        // FIPS indices with a nonzero count in the current and previous flush
+        private int[] changedFipsIndices;
+        private int changedCount;
+        private int[] previousFipsIndices;
+        private int previousCount;
+
+        private IncidenceTriggerState(Environment environment, IncidenceTrigger trigger, MetricCounts counts,
+                                      ScopeIndex scopeIndex, TriggerCallback[] callbacks) {
+            super(counts, scopeIndex, callbacks, scopeIndex.getValues(trigger.getFipsCodeValues(environment)),
+                    trigger.comparison(), trigger.start(), trigger.end(), trigger.interval());
+            this.fipsCounts = new int[thresholds.length];
+            this.changedFipsIndices = new int[thresholds.length];
+            this.previousFipsIndices = new int[thresholds.length];
+        }
+
+        @Override
+        protected boolean update(Environment environment, EventLog eventLog, long endPosition) {
+            for (long position = eventLogPosition; position < endPosition; position++) {
+                int fipsIndex = scopeIndex.regionFipsIndices[eventLog.get(position)];
+                if (fipsCounts[fipsIndex]++ == 0) {
+                    changedFipsIndices[changedCount++] = fipsIndex;
+                }
+            }
+            // Counts of intervals without events are all zero
+            return false;
+        }
+
+        @Override
+        protected void evaluateChanged(Environment environment) {
+            // Only FIPS codes counted in this or the previous flush can have changed
+            for (int i = 0; i < changedCount; i++) {
+                evaluate(environment, changedFipsIndices[i]);
+            }
+            for (int i = 0; i < previousCount; i++) {
+                if (fipsCounts[previousFipsIndices[i]] == 0) {
+                    evaluate(environment, previousFipsIndices[i]);
+                }
+            }
+        }
+
+        @Override
+        protected void clearChanged() {
+            // Reset counters
+            for (int i = 0; i < changedCount; i++) {
+                fipsCounts[changedFipsIndices[i]] = 0;
+            }
+            int[] swap = previousFipsIndices;
+            previousFipsIndices = changedFipsIndices;
+            previousCount = changedCount;
+            changedFipsIndices = swap;
+            changedCount = 0;
+        }
+
+        @Override
+        protected int getCount(int fipsIndex) {
+            return fipsCounts[fipsIndex];
+        }
+    }
+
+    /*
+     * Counts events over a trailing window of days using a ring buffer of daily counts for each FIPS code. The
+     * window is advanced at each daily flush by expiring the oldest day, touching only the FIPS codes that had
+     * events on the day being expired or the day being added.
+     */
+    private static final class RollingIncidenceTriggerState extends FlushedTriggerState {
+        private final int window;
+        // Daily counts, indexed by FIPS index times the window plus the day slot
+        private final int[] dailyCounts;
+        private final int[] windowCounts;
+        // FIPS indices with a nonzero count for each day slot
+        private final int[][] slotFipsIndices;
+        private final int[] slotFipsCounts;
+        private final int[] changedFipsIndices;
+        private final boolean[] changed;
+        private int changedCount;
+        private int currentSlot;
+        private int lastFlushDay;
+        private long totalWindowCount;
+
+        private RollingIncidenceTriggerState(Environment environment, RollingIncidenceTrigger trigger,
+                                             MetricCounts counts, ScopeIndex scopeIndex, TriggerCallback[] callbacks) {
+            super(counts, scopeIndex, callbacks, scopeIndex.getValues(trigger.getFipsCodeValues(environment)),
+                    trigger.comparison(), trigger.start(), trigger.end(), 1.0);
+            if (trigger.window() < 1) {
+                throw new IllegalArgumentException("Rolling incidence trigger window must be at least one day");
+            }
+            this.window = trigger.window();
+            int fipsCount = thresholds.length;
+            this.dailyCounts = new int[fipsCount * window];
+            this.windowCounts = new int[fipsCount];
+            this.slotFipsIndices = new int[window][fipsCount];
+            this.slotFipsCounts = new int[window];
+            this.changedFipsIndices = new int[fipsCount];
+            this.changed = new boolean[fipsCount];
+            this.lastFlushDay = (int) Math.floor(environment.getTime());
+        }
+
+        private void markChanged(int fipsIndex) {
+            if (!changed[fipsIndex]) {
+                changed[fipsIndex] = true;
+                changedFipsIndices[changedCount++] = fipsIndex;
+            }
+        }
+
+        /*
+         * Moves to the next day slot, removing the counts of the day that leaves the window
+         */
+        private void advanceDay() {
+            currentSlot = (currentSlot + 1) % window;
+            int[] fipsIndices = slotFipsIndices[currentSlot];
+            for (int i = 0; i < slotFipsCounts[currentSlot]; i++) {
+                int fipsIndex = fipsIndices[i];
+                int dailyCountIndex = fipsIndex * window + currentSlot;
+                windowCounts[fipsIndex] -= dailyCounts[dailyCountIndex];
+                totalWindowCount -= dailyCounts[dailyCountIndex];
+                dailyCounts[dailyCountIndex] = 0;
+                markChanged(fipsIndex);
+            }
+            slotFipsCounts[currentSlot] = 0;
+        }
+
+        @Override
+        protected boolean update(Environment environment, EventLog eventLog, long endPosition) {
+            int flushDay = (int) Math.round(environment.getTime());
+            // Days without a flush had no events, and days older than the window leave nothing to expire
+            int emptyDays = Math.min(flushDay - lastFlushDay - 1, window);
+            for (int day = 0; day < emptyDays; day++) {
+                advanceDay();
+            }
+            // The events since the last flush all occurred on the day just ended
+            advanceDay();
+            for (long position = eventLogPosition; position < endPosition; position++) {
+                int fipsIndex = scopeIndex.regionFipsIndices[eventLog.get(position)];
+                if (dailyCounts[fipsIndex * window + currentSlot]++ == 0) {
+                    slotFipsIndices[currentSlot][slotFipsCounts[currentSlot]++] = fipsIndex;
+                }
+                windowCounts[fipsIndex]++;
+                totalWindowCount++;
+                markChanged(fipsIndex);
+            }
+            lastFlushDay = flushDay;
+            // Keep flushing daily until the window is empty
+            return totalWindowCount > 0;
+        }
+
+        @Override
+        protected void evaluateChanged(Environment environment) {
+            for (int i = 0; i < changedCount; i++) {
+                evaluate(environment, changedFipsIndices[i]);
+            }
+        }
+
+        @Override
+        protected void clearChanged() {
+            for (int i = 0; i < changedCount; i++) {
+                changed[changedFipsIndices[i]] = false;
+            }
+            changedCount = 0;
+        }
+
+        @Override
+        protected int getCount(int fipsIndex) {
+            return windowCounts[fipsIndex];
+        }
+    }
+
+    /*
+     * Cumulative triggers sharing a metric and scope, with the thresholds of each FIPS code in increasing order
+     * and the index of the next threshold still to be crossed
+     */
+    private static final class CumulativeTriggerGroup {
+        private final ScopeIndex scopeIndex;
+        private final int[] fipsCounts;
+        private final double[][] thresholds;
+        private final TriggerCallback[][][] callbacks;
+        private final int[] nextThresholdIndices;
+
+        private CumulativeTriggerGroup(Environment environment, ScopeIndex scopeIndex,
+                                       List<CumulativeTrigger> triggers,
+                                       Map<Trigger, Set<TriggerCallback>> triggersCallbacks) {
+            this.scopeIndex = scopeIndex;
+            int fipsCount = scopeIndex.fipsCount();
+            fipsCounts = new int[fipsCount];
+            thresholds = new double[fipsCount][triggers.size()];
+            callbacks = new TriggerCallback[fipsCount][triggers.size()][];
+            nextThresholdIndices = new int[fipsCount];
+            double[][] triggerThresholds = new double[triggers.size()][];
+            for (int triggerIndex = 0; triggerIndex < triggers.size(); triggerIndex++) {
+                triggerThresholds[triggerIndex] = scopeIndex.getValues(
+                        triggers.get(triggerIndex).getFipsCodeValues(environment));
+            }
+            for (int fipsIndex = 0; fipsIndex < fipsCount; fipsIndex++) {
+                final int finalFipsIndex = fipsIndex;
+                Integer[] order = new Integer[triggers.size()];
+                for (int triggerIndex = 0; triggerIndex < order.length; triggerIndex++) {
+                    order[triggerIndex] = triggerIndex;
+                }
+                Arrays.sort(order, Comparator.comparingDouble(triggerIndex -> triggerThresholds[triggerIndex][finalFipsIndex]));
+                for (int i = 0; i < order.length; i++) {
+                    thresholds[fipsIndex][i] = triggerThresholds[order[i]][fipsIndex];
+                    callbacks[fipsIndex][i] = triggersCallbacks.get(triggers.get(order[i])).toArray(new TriggerCallback[0]);
+                }
+            }
+        }
+
+        private void increment(Environment environment, int regionIndex) {
+            int fipsIndex = scopeIndex.regionFipsIndices[regionIndex];
+            double[] fipsThresholds = thresholds[fipsIndex];
+            if (nextThresholdIndices[fipsIndex] == fipsThresholds.length) {
+                return;
+            }
+            int count = ++fipsCounts[fipsIndex];
+            // Check if we have crossed thresholds, each of which triggers only once
+            while (nextThresholdIndices[fipsIndex] < fipsThresholds.length &&
+                    count >= fipsThresholds[nextThresholdIndices[fipsIndex]]) {
+                scopeIndex.triggerCallbacks(environment, fipsIndex, callbacks[fipsIndex][nextThresholdIndices[fipsIndex]]);
+                nextThresholdIndices[fipsIndex]++;
+            }
+        }
+    }
+
+    private static final class FlushPlan implements Plan {
+        private final FlushedTriggerState state;
+
+        private FlushPlan(FlushedTriggerState state) {
+            this.state = state;
+        }
+    }
+
+}
@@ -8,8 +8,10 @@ import gcm.core.epi.population.PopulationDescription;
 import gcm.core.epi.propertytypes.ImmutableInfectionSpecification;
 import gcm.core.epi.propertytypes.InfectionSpecification;
 import gcm.core.epi.propertytypes.TransmissionStructure;
+import gcm.core.epi.trigger.RegionTriggerStates;
 import gcm.core.epi.trigger.TriggerContainer;
 import gcm.core.epi.util.property.DefinedGlobalProperty;
+import gcm.core.epi.util.statistics.ReplicationConvergenceTracker;
 import gcm.scenario.PropertyDefinition;
 import gcm.scenario.RegionId;
 import gcm.scenario.RegionPropertyId;
@@ -120,9 +122,28 @@ public enum GlobalProperty implements DefinedGlobalProperty {
     TRIGGER_CALLBACKS(PropertyDefinition.builder()
             .setType(Map.class).setDefaultValue(new HashMap<String, Set<RegionPropertyId>>()).build(), false),
 
+    REGION_TRIGGER_STATES(PropertyDefinition.builder()
+            .setType(RegionTriggerStates.class).setDefaultValue(new RegionTriggerStates()).build(), false),
+
     MAX_SIMULATION_LENGTH(PropertyDefinition.builder()
             .setType(Double.class).setDefaultValue(Double.POSITIVE_INFINITY).build()),
 
+    STOP_ON_EXTINCTION(PropertyDefinition.builder()
+            .setType(Boolean.class).setDefaultValue(false).setPropertyValueMutability(false).build()),
+
+    LATEST_PENDING_EVENT_TIME(PropertyDefinition.builder()
+            .setType(Double.class).setDefaultValue(0.0).build(), false),
+
+    EXTINCTION_TIME(PropertyDefinition.builder()
+            .setType(Double.class).setDefaultValue(Double.POSITIVE_INFINITY).build(), false),
+
+    REPLICATION_CONVERGENCE_TRACKER(PropertyDefinition.builder()
+            .setType(ReplicationConvergenceTracker.class).setDefaultValue(ReplicationConvergenceTracker.disabled())
+            .setPropertyValueMutability(false).build(), false),
+
+    REPLICATION_SKIPPED(PropertyDefinition.builder()
+            .setType(Boolean.class).setDefaultValue(false).build(), false),
+
     IMMUNITY_WANES_TIME_MEAN(PropertyDefinition.builder()
             .setType(Double.class).setDefaultValue(0.0).setPropertyValueMutability(false).build()),
 
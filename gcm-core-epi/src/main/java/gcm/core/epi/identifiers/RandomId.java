@@ -14,6 +14,8 @@ public enum RandomId implements RandomNumberGeneratorId {
 
     HOSPITAL_WORKPLACE_ASSIGNMENT,
 
-    RECOVERED_COMPARTMENT
+    RECOVERED_COMPARTMENT,
+
+    POPULATION_ATTRIBUTES
 
 }
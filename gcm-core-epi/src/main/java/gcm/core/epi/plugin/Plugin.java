@@ -1,10 +1,12 @@
 package gcm.core.epi.plugin;
 
 import gcm.core.epi.identifiers.ContactGroupType;
+import gcm.core.epi.population.PopulationAttributeGenerator;
 import gcm.core.epi.util.property.*;
 import gcm.scenario.ExperimentBuilder;
 import gcm.scenario.RandomNumberGeneratorId;
 import gcm.scenario.ResourceId;
+import gcm.simulation.Environment;
 
 import java.util.*;
 
@@ -52,6 +54,13 @@ public interface Plugin {
         return new ArrayList<>();
     }
 
+    /*
+        Gets the per-group and per-person property values to generate once the population has been loaded
+     */
+    default List<PopulationAttributeGenerator> getPopulationAttributeGenerators(Environment environment) {
+        return new ArrayList<>();
+    }
+
     /*
         Load all of the identifiers, components, and property definitions that will be used by the module
      */
@@ -15,6 +15,13 @@ import java.util.Set;
 
 public abstract class BehaviorPlugin implements Plugin {
 
+    /*
+        Resolve any per-simulation values derived from properties before the simulation starts
+     */
+    public void init(Environment environment) {
+        // Do nothing by default
+    }
+
     /*
         Handle a person learning they may be infected
      */
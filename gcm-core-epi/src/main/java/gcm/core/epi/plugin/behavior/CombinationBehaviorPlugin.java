@@ -1,8 +1,11 @@
 package gcm.core.epi.plugin.behavior;
 
 import gcm.core.epi.identifiers.ContactGroupType;
+import gcm.core.epi.identifiers.GlobalProperty;
 import gcm.core.epi.population.AgeGroup;
+import gcm.core.epi.population.PopulationAttributeGenerator;
 import gcm.core.epi.population.Util;
+import gcm.core.epi.trigger.RegionTriggerStates;
 import gcm.core.epi.trigger.TriggerCallback;
 import gcm.core.epi.trigger.TriggerUtils;
 import gcm.core.epi.util.property.DefinedGlobalProperty;
@@ -15,71 +18,105 @@ import gcm.simulation.Environment;
 import java.util.*;
 
 /*
-    Combines Isolation & Hygiene, Workplace Telework, and School Closure Plugins with general distancing
+    Combines Isolation & Hygiene, Workplace Telework, and School Closure Plugins with general distancing. The
+    combined plugins are instantiated once as stages, and ENABLED_BEHAVIOR_STAGES selects which of them are applied.
  */
 public class CombinationBehaviorPlugin extends BehaviorPlugin {
 
+    private static final RegionTriggerStates.TriggerPair TRANSMISSION_RATE_REDUCTION_TRIGGER =
+            RegionTriggerStates.getTriggerPair(
+                    CombinationBehaviorRegionProperty.TRANSMISSION_RATE_REDUCTION_TRIGGER_START,
+                    CombinationBehaviorRegionProperty.TRANSMISSION_RATE_REDUCTION_TRIGGER_END);
+    private static final RegionTriggerStates.TriggerPair INFECTION_RATE_REDUCTION_TRIGGER =
+            RegionTriggerStates.getTriggerPair(
+                    CombinationBehaviorRegionProperty.INFECTION_RATE_REDUCTION_TRIGGER_START,
+                    CombinationBehaviorRegionProperty.INFECTION_RATE_REDUCTION_TRIGGER_END);
+
+    /*
+     * The stages applied in turn to substitute contact groups
+     */
+    private static final CombinationBehaviorStage[] SUBSTITUTION_STAGES = new CombinationBehaviorStage[]{
+            CombinationBehaviorStage.SHELTER_IN_PLACE,
+            CombinationBehaviorStage.CONTACT_TRACING,
+            CombinationBehaviorStage.RANDOM_TESTING,
+            CombinationBehaviorStage.ISOLATION_HYGIENE,
+            CombinationBehaviorStage.SCHOOL_CLOSURE,
+            CombinationBehaviorStage.TELEWORK
+    };
+
+    /*
+     * The stages whose infection probabilities are multiplied together
+     */
+    private static final CombinationBehaviorStage[] INFECTION_PROBABILITY_STAGES = new CombinationBehaviorStage[]{
+            CombinationBehaviorStage.CONTACT_TRACING,
+            CombinationBehaviorStage.ISOLATION_HYGIENE,
+            CombinationBehaviorStage.TELEWORK,
+            CombinationBehaviorStage.LOCATION_INFECTION_REDUCTION,
+            CombinationBehaviorStage.RANDOM_TESTING
+    };
+
     private static List<BehaviorPlugin> getPlugins() {
         List<BehaviorPlugin> plugins = new ArrayList<>();
-        plugins.add(new ShelterInPlaceBehaviorPlugin());
-        plugins.add(new ContactTracingBehaviorPlugin());
-        plugins.add(new RandomTestingBehaviorPlugin());
-        plugins.add(new IsolationHygieneBehaviorPlugin());
-        plugins.add(new TeleworkBehaviorPlugin());
-        plugins.add(new SchoolClosureBehaviorPlugin());
-        plugins.add(new LocationInfectionReductionPlugin());
+        for (CombinationBehaviorStage stage : CombinationBehaviorStage.values()) {
+            plugins.add(stage.plugin);
+        }
         return plugins;
     }
 
-    @Override
-    public Optional<ContactGroupType> getSubstitutedContactGroup(Environment environment, PersonId personId, ContactGroupType selectedContactGroupType) {
+    private static Set<CombinationBehaviorStage> getEnabledStages(Environment environment) {
+        return environment.getGlobalPropertyValue(CombinationBehaviorGlobalProperty.ENABLED_BEHAVIOR_STAGES);
+    }
 
-        // First see if shelter in place applies
-        Optional<ContactGroupType> substitutedGroupType = new ShelterInPlaceBehaviorPlugin()
-                .getSubstitutedContactGroup(environment, personId, selectedContactGroupType);
-        // Then see if contact tracing applies
-        substitutedGroupType = substitutedGroupType.flatMap(contactGroupType ->
-                new ContactTracingBehaviorPlugin().getSubstitutedContactGroup(environment, personId, contactGroupType));
-        // Then see if random testing applies
-        substitutedGroupType = substitutedGroupType.flatMap(contactGroupType ->
-                new RandomTestingBehaviorPlugin().getSubstitutedContactGroup(environment, personId, contactGroupType));
-        // Then see if isolation applies
-        substitutedGroupType = substitutedGroupType.flatMap(contactGroupType ->
-                new IsolationHygieneBehaviorPlugin().getSubstitutedContactGroup(environment, personId, contactGroupType));
-        // Then school closure
-        substitutedGroupType = substitutedGroupType.flatMap(contactGroupType ->
-                new SchoolClosureBehaviorPlugin().getSubstitutedContactGroup(environment, personId, contactGroupType));
-        // Then workplace telework
-        substitutedGroupType = substitutedGroupType.flatMap(contactGroupType ->
-                new TeleworkBehaviorPlugin().getSubstitutedContactGroup(environment, personId, contactGroupType));
-
-        return substitutedGroupType;
+    /*
+     * Returns whether the global components of the given stage should run, which is always unless this plugin is
+     * the behavior plugin and the stage is not enabled
+     */
+    static boolean isStageActive(Environment environment, CombinationBehaviorStage stage) {
+        Optional<BehaviorPlugin> behaviorPlugin = environment.getGlobalPropertyValue(GlobalProperty.BEHAVIOR_PLUGIN);
+        return !(behaviorPlugin.isPresent() && behaviorPlugin.get() instanceof CombinationBehaviorPlugin) ||
+                getEnabledStages(environment).contains(stage);
+    }
 
+    @Override
+    public void init(Environment environment) {
+        for (CombinationBehaviorStage stage : getEnabledStages(environment)) {
+            stage.plugin.init(environment);
+        }
+    }
+
+    @Override
+    public Optional<ContactGroupType> getSubstitutedContactGroup(Environment environment, PersonId personId, ContactGroupType selectedContactGroupType) {
+        Set<CombinationBehaviorStage> enabledStages = getEnabledStages(environment);
+        ContactGroupType contactGroupType = selectedContactGroupType;
+        for (CombinationBehaviorStage stage : SUBSTITUTION_STAGES) {
+            if (enabledStages.contains(stage) && stage.isInEffect(environment, personId)) {
+                Optional<ContactGroupType> substitutedGroupType = stage.plugin.getSubstitutedContactGroup(environment,
+                        personId, contactGroupType);
+                if (!substitutedGroupType.isPresent()) {
+                    // Transmission event is dropped
+                    return substitutedGroupType;
+                }
+                contactGroupType = substitutedGroupType.get();
+            }
+        }
+        return Optional.of(contactGroupType);
     }
 
     @Override
     public double getInfectionProbability(Environment environment, ContactGroupType contactSetting, PersonId personId) {
+        Set<CombinationBehaviorStage> enabledStages = getEnabledStages(environment);
+
         // Sub-plugin effects
-        double contactTracingInfectionProbability =
-                new ContactTracingBehaviorPlugin().getInfectionProbability(environment, contactSetting, personId);
-        double isolationHygieneInfectionProbability =
-                new IsolationHygieneBehaviorPlugin().getInfectionProbability(environment, contactSetting, personId);
-        double workplaceTeleworkInfectionProbability =
-                new TeleworkBehaviorPlugin().getInfectionProbability(environment, contactSetting, personId);
-        double generalInfectionProbability =
-                new LocationInfectionReductionPlugin().getInfectionProbability(environment, contactSetting, personId);
-        double randomTestingInfectionProbability =
-                new RandomTestingBehaviorPlugin().getInfectionProbability(environment, contactSetting, personId);
-        double subPluginProbability = contactTracingInfectionProbability * isolationHygieneInfectionProbability *
-                workplaceTeleworkInfectionProbability * generalInfectionProbability *
-                randomTestingInfectionProbability;
+        double subPluginProbability = 1.0;
+        for (CombinationBehaviorStage stage : INFECTION_PROBABILITY_STAGES) {
+            if (enabledStages.contains(stage) && stage.isInEffect(environment, personId)) {
+                subPluginProbability *= stage.plugin.getInfectionProbability(environment, contactSetting, personId);
+            }
+        }
 
         // Transmission rate reduction
-        RegionId regionId = environment.getPersonRegion(personId);
-
-        boolean transmissionRateReductionIsInEffect = TriggerUtils.checkIfTriggerIsInEffect(environment, regionId,
-                CombinationBehaviorRegionProperty.TRANSMISSION_RATE_REDUCTION_TRIGGER_START,
-                CombinationBehaviorRegionProperty.TRANSMISSION_RATE_REDUCTION_TRIGGER_END);
+        boolean transmissionRateReductionIsInEffect = TriggerUtils.checkIfTriggerIsInEffect(environment, personId,
+                TRANSMISSION_RATE_REDUCTION_TRIGGER);
         double transmissionRateReduction = 0.0;
         if (transmissionRateReductionIsInEffect) {
             transmissionRateReduction = environment.getGlobalPropertyValue(
@@ -87,9 +124,8 @@ public class CombinationBehaviorPlugin extends BehaviorPlugin {
         }
 
         // Infection rate reduction
-        boolean infectionRateReductionIsInEffect = TriggerUtils.checkIfTriggerIsInEffect(environment, regionId,
-                CombinationBehaviorRegionProperty.INFECTION_RATE_REDUCTION_TRIGGER_START,
-                CombinationBehaviorRegionProperty.INFECTION_RATE_REDUCTION_TRIGGER_END);
+        boolean infectionRateReductionIsInEffect = TriggerUtils.checkIfTriggerIsInEffect(environment, personId,
+                INFECTION_RATE_REDUCTION_TRIGGER);
 
         double infectionRateReduction = 0.0;
         if (infectionRateReductionIsInEffect) {
@@ -145,11 +181,22 @@ public class CombinationBehaviorPlugin extends BehaviorPlugin {
         return result;
     }
 
+    @Override
+    public List<PopulationAttributeGenerator> getPopulationAttributeGenerators(Environment environment) {
+        List<PopulationAttributeGenerator> result = new ArrayList<>();
+        for (CombinationBehaviorStage stage : getEnabledStages(environment)) {
+            result.addAll(stage.plugin.getPopulationAttributeGenerators(environment));
+        }
+        return result;
+    }
+
     @Override
     public Map<String, Set<TriggerCallback>> getTriggerCallbacks(Environment environment) {
         Map<String, Set<TriggerCallback>> triggerCallbacks = new HashMap<>();
         // Delegate plugin callbacks
-        getPlugins().forEach(plugin -> TriggerUtils.mergeCallbacks(triggerCallbacks, plugin.getTriggerCallbacks(environment)));
+        for (CombinationBehaviorStage stage : getEnabledStages(environment)) {
+            TriggerUtils.mergeCallbacks(triggerCallbacks, stage.plugin.getTriggerCallbacks(environment));
+        }
         // Transmission rate reduction
         String triggerId = environment.getGlobalPropertyValue(CombinationBehaviorGlobalProperty.TRANSMISSION_RATE_REDUCTION_START);
         TriggerUtils.addBooleanCallback(triggerCallbacks, triggerId, CombinationBehaviorRegionProperty.TRANSMISSION_RATE_REDUCTION_TRIGGER_START);
@@ -166,20 +213,23 @@ public class CombinationBehaviorPlugin extends BehaviorPlugin {
 
     @Override
     public void handleSuspectedInfected(Environment environment, PersonId personId) {
-        new IsolationHygieneBehaviorPlugin().handleSuspectedInfected(environment, personId);
+        if (getEnabledStages(environment).contains(CombinationBehaviorStage.ISOLATION_HYGIENE)) {
+            CombinationBehaviorStage.ISOLATION_HYGIENE.plugin.handleSuspectedInfected(environment, personId);
+        }
     }
 
     @Override
     public void handleHomeInfection(Environment environment, PersonId personId) {
-        new IsolationHygieneBehaviorPlugin().handleHomeInfection(environment, personId);
+        if (getEnabledStages(environment).contains(CombinationBehaviorStage.ISOLATION_HYGIENE)) {
+            CombinationBehaviorStage.ISOLATION_HYGIENE.plugin.handleHomeInfection(environment, personId);
+        }
     }
 
     @Override
     public void load(ExperimentBuilder experimentBuilder) {
         super.load(experimentBuilder);
 
-        experimentBuilder.addGlobalComponentId(TeleworkBehaviorPlugin.WORKPLACE_TELEWORK_MANAGER_ID,
-                TeleworkBehaviorPlugin.TeleworkManager.class);
+        // The managers are always added, and do nothing when their stage is not enabled
         experimentBuilder.addGlobalComponentId(IsolationHygieneBehaviorPlugin.INFECTION_AWARENESS_MANAGER_ID,
                 IsolationHygieneBehaviorPlugin.InfectionAwarenessManager.class);
         experimentBuilder.addGlobalComponentId(ContactTracingBehaviorPlugin.CONTACT_TRACING_MANAGER_ID,
@@ -206,7 +256,11 @@ public class CombinationBehaviorPlugin extends BehaviorPlugin {
                 .setType(String.class).setDefaultValue("").setPropertyValueMutability(false).build()),
 
         INFECTION_RATE_REDUCTION_END(PropertyDefinition.builder()
-                .setType(String.class).setDefaultValue("").setPropertyValueMutability(false).build());
+                .setType(String.class).setDefaultValue("").setPropertyValueMutability(false).build()),
+
+        ENABLED_BEHAVIOR_STAGES(PropertyDefinition.builder()
+                .setType(Set.class).setDefaultValue(Collections.unmodifiableSet(EnumSet.allOf(CombinationBehaviorStage.class)))
+                .setPropertyValueMutability(false).build());
 
         private final PropertyDefinition propertyDefinition;
 
@@ -226,6 +280,63 @@ public class CombinationBehaviorPlugin extends BehaviorPlugin {
 
     }
 
+    /*
+     * The behaviors that can be combined, each with a single shared instance of its plugin. Stages that only act
+     * while a trigger is in effect list the start and end region properties of their triggers in pairs, and are
+     * skipped in regions where none of these triggers are in effect.
+     */
+    public enum CombinationBehaviorStage {
+
+        SHELTER_IN_PLACE(new ShelterInPlaceBehaviorPlugin(),
+                ShelterInPlaceBehaviorPlugin.ShelterInPlaceRegionProperty.SHELTER_IN_PLACE_TRIGGER_START,
+                ShelterInPlaceBehaviorPlugin.ShelterInPlaceRegionProperty.SHELTER_IN_PLACE_TRIGGER_END),
+
+        CONTACT_TRACING(new ContactTracingBehaviorPlugin()),
+
+        RANDOM_TESTING(new RandomTestingBehaviorPlugin()),
+
+        ISOLATION_HYGIENE(new IsolationHygieneBehaviorPlugin()),
+
+        SCHOOL_CLOSURE(new SchoolClosureBehaviorPlugin(),
+                SchoolClosureBehaviorPlugin.SchoolClosureRegionProperty.SUMMER_TRIGGER_START,
+                SchoolClosureBehaviorPlugin.SchoolClosureRegionProperty.SUMMER_TRIGGER_END,
+                SchoolClosureBehaviorPlugin.SchoolClosureRegionProperty.SCHOOL_CLOSURE_TRIGGER_START,
+                SchoolClosureBehaviorPlugin.SchoolClosureRegionProperty.SCHOOL_CLOSURE_TRIGGER_END),
+
+        TELEWORK(new TeleworkBehaviorPlugin(),
+                TeleworkBehaviorPlugin.TeleworkRegionProperty.TELEWORK_TRIGGER_START,
+                TeleworkBehaviorPlugin.TeleworkRegionProperty.TELEWORK_TRIGGER_END),
+
+        LOCATION_INFECTION_REDUCTION(new LocationInfectionReductionPlugin(),
+                LocationInfectionReductionPlugin.LocationInfectionReductionRegionProperty.LOCATION_INFECTION_REDUCTION_TRIGGER_START,
+                LocationInfectionReductionPlugin.LocationInfectionReductionRegionProperty.LOCATION_INFECTION_REDUCTION_TRIGGER_END);
+
+        private final BehaviorPlugin plugin;
+        private final RegionTriggerStates.TriggerPair[] triggerPairs;
+
+        CombinationBehaviorStage(BehaviorPlugin plugin, RegionPropertyId... triggerProperties) {
+            this.plugin = plugin;
+            this.triggerPairs = new RegionTriggerStates.TriggerPair[triggerProperties.length / 2];
+            for (int i = 0; i < triggerPairs.length; i++) {
+                triggerPairs[i] = RegionTriggerStates.getTriggerPair(triggerProperties[2 * i],
+                        triggerProperties[2 * i + 1]);
+            }
+        }
+
+        private boolean isInEffect(Environment environment, PersonId personId) {
+            if (triggerPairs.length == 0) {
+                return true;
+            }
+            for (RegionTriggerStates.TriggerPair triggerPair : triggerPairs) {
+                if (TriggerUtils.checkIfTriggerIsInEffect(environment, personId, triggerPair)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+    }
+
     public enum CombinationBehaviorRegionProperty implements DefinedRegionProperty {
 
         TRANSMISSION_RATE_REDUCTION_TRIGGER_START(PropertyDefinition.builder()
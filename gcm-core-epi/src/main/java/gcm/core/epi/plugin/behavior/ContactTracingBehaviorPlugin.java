@@ -6,17 +6,25 @@ import gcm.core.epi.identifiers.GlobalProperty;
 import gcm.core.epi.identifiers.PersonProperty;
 import gcm.core.epi.propertytypes.InfectionData;
 import gcm.core.epi.trigger.*;
+import gcm.core.epi.util.collections.IntArrayMultimap;
+import gcm.core.epi.util.distributions.BinomialSampler;
 import gcm.core.epi.util.property.DefinedGlobalProperty;
 import gcm.core.epi.util.property.DefinedPersonProperty;
 import gcm.core.epi.util.property.DefinedRegionProperty;
+import gcm.core.epi.util.timers.PersonTimerCalendar;
 import gcm.scenario.*;
 import gcm.simulation.Environment;
 import gcm.simulation.Plan;
+import org.apache.commons.math3.random.RandomGenerator;
 
 import java.util.*;
 
 public class ContactTracingBehaviorPlugin extends BehaviorPlugin {
 
+    private static final RegionTriggerStates.TriggerPair CONTACT_TRACING_TRIGGER = RegionTriggerStates.getTriggerPair(
+            ContactTracingRegionProperty.CONTACT_TRACING_TRIGGER_START,
+            ContactTracingRegionProperty.CONTACT_TRACING_TRIGGER_END);
+
     static final GlobalComponentId CONTACT_TRACING_MANAGER_ID = new GlobalComponentId() {
         @Override
         public String toString() {
@@ -198,11 +206,25 @@ public class ContactTracingBehaviorPlugin extends BehaviorPlugin {
 
     public static class ContactTracingManager extends AbstractComponent {
 
+        private static final int TRACE_AND_ISOLATE_TIMER = 0;
+        private static final int END_ISOLATION_TIMER = 1;
+
         private final Map<FipsCode, Double> maximumInfectionsToTrace = new HashMap<>();
+        // Global infection sources mapped to the people they infected
+        private final IntArrayMultimap globalInfectees = new IntArrayMultimap();
+        // Roster of the group being traced, reused to sample contacts without replacement
+        private final List<PersonId> groupRoster = new ArrayList<>();
+        // Lists of people selected for tracing, reused once their timers are added
+        private final Deque<List<PersonId>> pooledPersonLists = new ArrayDeque<>();
+        private final PersonTimerCalendar isolationTimers = new PersonTimerCalendar(this::expireTimer);
         private FipsScope scope;
 
         @Override
         public void init(Environment environment) {
+            if (!CombinationBehaviorPlugin.isStageActive(environment,
+                    CombinationBehaviorPlugin.CombinationBehaviorStage.CONTACT_TRACING)) {
+                return;
+            }
             // Get maximum number of infections that can be traced
             FipsCodeValues maximumInfectionsToTraceFromProperty = environment.getGlobalPropertyValue(
                     ContactTracingGlobalProperty.MAXIMUM_INFECTIONS_TO_TRACE);
@@ -235,9 +257,8 @@ public class ContactTracingBehaviorPlugin extends BehaviorPlugin {
                 if (isSymptomatic) {
                     // Determine if we are currently tracing contacts
                     RegionId regionId = environment.getPersonRegion(personId);
-                    boolean triggerIsInEffect = TriggerUtils.checkIfTriggerIsInEffect(environment, regionId,
-                            ContactTracingRegionProperty.CONTACT_TRACING_TRIGGER_START,
-                            ContactTracingRegionProperty.CONTACT_TRACING_TRIGGER_END);
+                    boolean triggerIsInEffect = TriggerUtils.checkIfTriggerIsInEffect(environment, personId,
+                            CONTACT_TRACING_TRIGGER);
                     if (triggerIsInEffect) {
                         FipsCode fipsCode = scope.getFipsCode(regionId);
                         Map<FipsCode, Counter> currentInfectionsBeingTracedMap = environment.getGlobalPropertyValue(
@@ -265,7 +286,6 @@ public class ContactTracingBehaviorPlugin extends BehaviorPlugin {
                                 // Add global
                                 contactGroupTypes.add(ContactGroupType.GLOBAL);
                                 for (ContactGroupType contactGroupType : contactGroupTypes) {
-                                    List<PersonId> peopleToTraceAndIsolate = new ArrayList<>();
                                     List<PersonId> peopleInGroup;
                                     // Handle home/work/school directly from groups
                                     if (contactGroupType != ContactGroupType.GLOBAL) {
@@ -274,24 +294,25 @@ public class ContactTracingBehaviorPlugin extends BehaviorPlugin {
                                         peopleInGroup = environment.getPeopleForGroup(groupId);
                                     } else {
                                         // Get global infections
-                                        peopleInGroup = environment.getPeopleWithPropertyValue(
-                                                ContactTracingPersonProperty.GLOBAL_INFECTION_SOURCE_PERSON_ID, personId.getValue());
-                                    }
-                                    double fractionToTraceAndIsolate = fractionToTraceAndIsolateByGroup.getOrDefault(contactGroupType, 1.0);
-                                    for (PersonId personInGroup : peopleInGroup) {
-                                        if (!personInGroup.equals(personId) &&
-                                                environment.getRandomGeneratorFromId(
-                                                        ContactTracingRandomId.ID).nextDouble() < fractionToTraceAndIsolate) {
-                                            peopleToTraceAndIsolate.add(personInGroup);
+                                        int[] infectees = globalInfectees.get(personId.getValue());
+                                        peopleInGroup = new ArrayList<>(infectees.length);
+                                        for (int infectee : infectees) {
+                                            peopleInGroup.add(new PersonId(infectee));
                                         }
                                     }
+                                    double fractionToTraceAndIsolate = fractionToTraceAndIsolateByGroup.getOrDefault(contactGroupType, 1.0);
+                                    List<PersonId> peopleToTraceAndIsolate = selectPeopleToTraceAndIsolate(environment,
+                                            personId, peopleInGroup, fractionToTraceAndIsolate);
                                     double tracingDelay = contactTracingDelayByGroup.getOrDefault(contactGroupType, 0.0);
-                                    if (tracingDelay > 0) {
-                                        environment.addPlan(new ContactTracingIsolationPlan(peopleToTraceAndIsolate),
-                                                environment.getTime() + tracingDelay);
-                                    } else {
-                                        traceAndIsolate(environment, peopleToTraceAndIsolate);
+                                    for (PersonId personToTraceAndIsolate : peopleToTraceAndIsolate) {
+                                        if (tracingDelay > 0) {
+                                            isolationTimers.addTimer(environment, TRACE_AND_ISOLATE_TIMER,
+                                                    personToTraceAndIsolate, environment.getTime() + tracingDelay);
+                                        } else {
+                                            traceAndIsolate(environment, personToTraceAndIsolate);
+                                        }
                                     }
+                                    releasePersonList(peopleToTraceAndIsolate);
                                 }
                                 // Plan to return the resource of contact tracing
                                 double contactTracingTime = environment.getGlobalPropertyValue(ContactTracingGlobalProperty.CONTACT_TRACING_TIME);
@@ -305,28 +326,69 @@ public class ContactTracingBehaviorPlugin extends BehaviorPlugin {
             }
         }
 
-        private void traceAndIsolate(Environment environment, List<PersonId> peopleToTraceAndIsolate) {
-            // Set person property to indicate people are staying home
-            for (PersonId personId : peopleToTraceAndIsolate) {
-                environment.setPersonPropertyValue(personId, ContactTracingPersonProperty.IS_STAYING_HOME, true);
+        /*
+            Draws the number of contacts traced in the group from a binomial distribution and then samples that many
+            members of the group other than the case without replacement
+         */
+        private List<PersonId> selectPeopleToTraceAndIsolate(Environment environment, PersonId personId,
+                                                             List<PersonId> peopleInGroup, double fractionToTraceAndIsolate) {
+            List<PersonId> peopleToTraceAndIsolate = borrowPersonList();
+            groupRoster.clear();
+            for (PersonId personInGroup : peopleInGroup) {
+                if (!personInGroup.equals(personId)) {
+                    groupRoster.add(personInGroup);
+                }
             }
+            int rosterSize = groupRoster.size();
+            if (rosterSize == 0 || fractionToTraceAndIsolate <= 0) {
+                return peopleToTraceAndIsolate;
+            }
+            RandomGenerator randomGenerator = environment.getRandomGeneratorFromId(ContactTracingRandomId.ID);
+            int numberToTraceAndIsolate = fractionToTraceAndIsolate >= 1 ? rosterSize :
+                    BinomialSampler.sample(randomGenerator, rosterSize, fractionToTraceAndIsolate);
+            // Partial Fisher-Yates shuffle of the roster
+            for (int i = 0; i < numberToTraceAndIsolate; i++) {
+                Collections.swap(groupRoster, i, i + randomGenerator.nextInt(rosterSize - i));
+                peopleToTraceAndIsolate.add(groupRoster.get(i));
+            }
+            groupRoster.clear();
+            return peopleToTraceAndIsolate;
+        }
+
+        private List<PersonId> borrowPersonList() {
+            List<PersonId> personList = pooledPersonLists.poll();
+            return personList != null ? personList : new ArrayList<>();
+        }
+
+        private void releasePersonList(List<PersonId> personList) {
+            personList.clear();
+            pooledPersonLists.push(personList);
+        }
+
+        private void traceAndIsolate(Environment environment, PersonId personId) {
+            // Set person property to indicate the person is staying home
+            environment.setPersonPropertyValue(personId, ContactTracingPersonProperty.IS_STAYING_HOME, true);
 
             // Plan to end isolation
             double stayAtHomeDuration = environment.getGlobalPropertyValue(ContactTracingGlobalProperty.TRACED_CONTACT_STAY_HOME_DURATION);
-            environment.addPlan(new EndIsolationPlan(peopleToTraceAndIsolate), environment.getTime() + stayAtHomeDuration);
+            isolationTimers.addTimer(environment, END_ISOLATION_TIMER, personId, environment.getTime() + stayAtHomeDuration);
+        }
+
+        private void expireTimer(Environment environment, int timerType, PersonId personId) {
+            if (timerType == TRACE_AND_ISOLATE_TIMER) {
+                traceAndIsolate(environment, personId);
+            } else if (timerType == END_ISOLATION_TIMER) {
+                environment.setPersonPropertyValue(personId, ContactTracingPersonProperty.IS_STAYING_HOME, false);
+            } else {
+                throw new RuntimeException("ContactTracingManager attempting to expire an unknown timer type");
+            }
         }
 
         @Override
         public void executePlan(Environment environment, Plan plan) {
-            if (plan.getClass().equals(ContactTracingIsolationPlan.class)) {
-                // Trace and isolate the people in the plan
-                traceAndIsolate(environment, ((ContactTracingIsolationPlan) plan).peopleToTraceAndIsolate);
-            } else if (plan.getClass().equals(EndIsolationPlan.class)) {
-                List<PersonId> peopleToEndIsolation = ((EndIsolationPlan) plan).peopleToEndIsolation;
-                for (PersonId personId : peopleToEndIsolation) {
-                    environment.setPersonPropertyValue(personId,
-                            ContactTracingPersonProperty.IS_STAYING_HOME, false);
-                }
+            if (PersonTimerCalendar.isTimerPlan(plan)) {
+                // Trace and isolate or end isolation for the people whose timers expire now
+                isolationTimers.executePlan(environment, plan);
             } else if (plan.getClass().equals(ContractTracingCompletePlan.class)) {
                 // Decrement counter
                 FipsCode fipsCode = scope.getFipsCode(((ContractTracingCompletePlan) plan).regionId);
@@ -356,6 +418,7 @@ public class ContactTracingBehaviorPlugin extends BehaviorPlugin {
                         environment.setPersonPropertyValue(targetPersonId.get(),
                                 ContactTracingPersonProperty.GLOBAL_INFECTION_SOURCE_PERSON_ID,
                                 sourcePersonId.getValue());
+                        globalInfectees.put(sourcePersonId.getValue(), targetPersonId.get().getValue());
                     }
                 }
             } else {
@@ -364,26 +427,6 @@ public class ContactTracingBehaviorPlugin extends BehaviorPlugin {
         }
 
 
-        private static class ContactTracingIsolationPlan implements Plan {
-
-            private final List<PersonId> peopleToTraceAndIsolate;
-
-            private ContactTracingIsolationPlan(List<PersonId> peopleToTraceAndIsolate) {
-                this.peopleToTraceAndIsolate = peopleToTraceAndIsolate;
-            }
-
-        }
-
-        private static class EndIsolationPlan implements Plan {
-
-            private final List<PersonId> peopleToEndIsolation;
-
-            private EndIsolationPlan(List<PersonId> peopleToEndIsolation) {
-                this.peopleToEndIsolation = peopleToEndIsolation;
-            }
-
-        }
-
         private static class ContractTracingCompletePlan implements Plan {
 
             private final RegionId regionId;
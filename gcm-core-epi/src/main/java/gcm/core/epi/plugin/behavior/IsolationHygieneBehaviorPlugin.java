@@ -9,6 +9,7 @@ import gcm.core.epi.trigger.TriggerUtils;
 import gcm.core.epi.util.property.DefinedGlobalProperty;
 import gcm.core.epi.util.property.DefinedPersonProperty;
 import gcm.core.epi.util.property.DefinedRegionProperty;
+import gcm.core.epi.util.timers.PersonTimerCalendar;
 import gcm.scenario.*;
 import gcm.simulation.Environment;
 import gcm.simulation.Plan;
@@ -216,8 +217,17 @@ public class IsolationHygieneBehaviorPlugin extends BehaviorPlugin {
 
     public static class InfectionAwarenessManager extends AbstractComponent {
 
+        private static final int SUSPECTED_INFECTION_TIMER = 0;
+        private static final int HOME_INFECTION_TIMER = 1;
+
+        private final PersonTimerCalendar awarenessTimers = new PersonTimerCalendar(this::expireTimer);
+
         @Override
         public void init(Environment environment) {
+            if (!CombinationBehaviorPlugin.isStageActive(environment,
+                    CombinationBehaviorPlugin.CombinationBehaviorStage.ISOLATION_HYGIENE)) {
+                return;
+            }
             environment.observeGlobalRegionPropertyChange(true, IsolationHygieneRegionProperty.ISOLATION_HYGIENE_TRIGGER_START);
             environment.observeGlobalRegionPropertyChange(true, IsolationHygieneRegionProperty.ISOLATION_HYGIENE_TRIGGER_END);
         }
@@ -257,9 +267,10 @@ public class IsolationHygieneBehaviorPlugin extends BehaviorPlugin {
                     makePeopleInHomeAware(environment, personId);
                 } else {
                     double currentTime = environment.getTime();
-                    Plan test = new SuspectedInfectionPlan(personId);
-                    environment.addPlan(new SuspectedInfectionPlan(personId), currentTime + delayToStartIsolationAndHygiene);
-                    environment.addPlan(new HomeInfectionPlan(personId), currentTime + delayToStartIsolationAndHygiene);
+                    awarenessTimers.addTimer(environment, SUSPECTED_INFECTION_TIMER, personId,
+                            currentTime + delayToStartIsolationAndHygiene);
+                    awarenessTimers.addTimer(environment, HOME_INFECTION_TIMER, personId,
+                            currentTime + delayToStartIsolationAndHygiene);
                 }
             }
         }
@@ -278,33 +289,25 @@ public class IsolationHygieneBehaviorPlugin extends BehaviorPlugin {
 
         @Override
         public void executePlan(Environment environment, Plan plan) {
-            Optional<BehaviorPlugin> behaviorPluginContainer = environment.getGlobalPropertyValue(GlobalProperty.BEHAVIOR_PLUGIN);
-            //noinspection OptionalGetWithoutIsPresent - We know that the behavior module should have been loaded
-            BehaviorPlugin behaviorPlugin = behaviorPluginContainer.get();
-
-            if (plan.getClass().equals(SuspectedInfectionPlan.class)) {
-                behaviorPlugin.handleSuspectedInfected(environment, ((SuspectedInfectionPlan) plan).personId);
-            } else if (plan.getClass().equals(HomeInfectionPlan.class)) {
-                makePeopleInHomeAware(environment, ((HomeInfectionPlan) plan).personId);
+            if (PersonTimerCalendar.isTimerPlan(plan)) {
+                awarenessTimers.executePlan(environment, plan);
             } else {
                 throw new RuntimeException("IsolationHygieneBehaviorPlug attempting to execute an unknown plan type");
             }
         }
-    }
-
-    private static class HomeInfectionPlan implements Plan {
-        private final PersonId personId;
 
-        private HomeInfectionPlan(final PersonId personId) {
-            this.personId = personId;
-        }
-    }
-
-    private static class SuspectedInfectionPlan implements Plan {
-        private final PersonId personId;
+        private void expireTimer(Environment environment, int timerType, PersonId personId) {
+            Optional<BehaviorPlugin> behaviorPluginContainer = environment.getGlobalPropertyValue(GlobalProperty.BEHAVIOR_PLUGIN);
+            //noinspection OptionalGetWithoutIsPresent - We know that the behavior module should have been loaded
+            BehaviorPlugin behaviorPlugin = behaviorPluginContainer.get();
 
-        private SuspectedInfectionPlan(final PersonId personId) {
-            this.personId = personId;
+            if (timerType == SUSPECTED_INFECTION_TIMER) {
+                behaviorPlugin.handleSuspectedInfected(environment, personId);
+            } else if (timerType == HOME_INFECTION_TIMER) {
+                makePeopleInHomeAware(environment, personId);
+            } else {
+                throw new RuntimeException("IsolationHygieneBehaviorPlug attempting to expire an unknown timer type");
+            }
         }
     }
 
@@ -2,10 +2,11 @@ package gcm.core.epi.plugin.behavior;
 
 import gcm.core.epi.identifiers.ContactGroupType;
 import gcm.core.epi.identifiers.GlobalProperty;
+import gcm.core.epi.identifiers.PersonProperty;
 import gcm.core.epi.population.AgeGroup;
 import gcm.core.epi.population.AgeGroupPartition;
 import gcm.core.epi.population.PopulationDescription;
-import gcm.core.epi.population.Util;
+import gcm.core.epi.trigger.RegionTriggerStates;
 import gcm.core.epi.trigger.TriggerCallback;
 import gcm.core.epi.trigger.TriggerUtils;
 import gcm.core.epi.util.loading.CoreEpiBootstrapUtil;
@@ -19,6 +20,12 @@ import java.io.IOException;
 import java.util.*;
 
 public class LocationInfectionReductionPlugin extends BehaviorPlugin {
+
+    private static final RegionTriggerStates.TriggerPair LOCATION_INFECTION_REDUCTION_TRIGGER =
+            RegionTriggerStates.getTriggerPair(
+                    LocationInfectionReductionRegionProperty.LOCATION_INFECTION_REDUCTION_TRIGGER_START,
+                    LocationInfectionReductionRegionProperty.LOCATION_INFECTION_REDUCTION_TRIGGER_END);
+
     @Override
     public Set<DefinedGlobalProperty> getGlobalProperties() {
         Set<DefinedGlobalProperty> globalProperties = new HashSet<>();
@@ -37,35 +44,67 @@ public class LocationInfectionReductionPlugin extends BehaviorPlugin {
     @Override
     public double getInfectionProbability(Environment environment, ContactGroupType contactSetting, PersonId personId) {
         // Check if we even need to think about whether to reduce infection probability
-        RegionId regionId = environment.getPersonRegion(personId);
-        boolean triggerIsInEffect = TriggerUtils.checkIfTriggerIsInEffect(environment, regionId,
-                LocationInfectionReductionRegionProperty.LOCATION_INFECTION_REDUCTION_TRIGGER_START,
-                LocationInfectionReductionRegionProperty.LOCATION_INFECTION_REDUCTION_TRIGGER_END);
+        RegionTriggerStates regionTriggerStates = environment.getGlobalPropertyValue(GlobalProperty.REGION_TRIGGER_STATES);
+        int regionIndex = regionTriggerStates.getRegionIndex(environment, personId);
+        boolean triggerIsInEffect = regionTriggerStates.isInEffect(environment, LOCATION_INFECTION_REDUCTION_TRIGGER,
+                regionIndex);
 
         double infectionReduction = 0.0;
         if (triggerIsInEffect) {
             // We are in the timeframe when infections should be reduced
-            AgeGroup ageGroup = Util.getAgeGroupForPerson(environment, personId);
-            // See if region property value has been set
-            Map<AgeGroup, Map<ContactGroupType, Double>> infectionReductionByAgeAndLocationMap =
-                    environment.getRegionPropertyValue(regionId,
-                            LocationInfectionReductionGlobalAndRegionProperty.LOCATION_INFECTION_REDUCTION);
-            //noinspection OptionalGetWithoutIsPresent
-            if (infectionReductionByAgeAndLocationMap.equals(environment.getRegionPropertyDefinition(
-                    LocationInfectionReductionGlobalAndRegionProperty.LOCATION_INFECTION_REDUCTION)
-                    .getDefaultValue().get())) {
-                // If still is the default region property, use the value from global definition
-                infectionReductionByAgeAndLocationMap = environment.getGlobalPropertyValue(
-                        LocationInfectionReductionGlobalAndRegionProperty.LOCATION_INFECTION_REDUCTION);
-            }
-            Map<ContactGroupType, Double> infectionReductionByLocationMap = infectionReductionByAgeAndLocationMap
-                    .getOrDefault(ageGroup, new HashMap<>());
-            infectionReduction = infectionReductionByLocationMap.getOrDefault(contactSetting, 0.0);
+            LocationInfectionReductionTables infectionReductionTables = environment.getGlobalPropertyValue(
+                    LocationInfectionReductionGlobalProperty.LOCATION_INFECTION_REDUCTION_TABLES);
+            infectionReduction = infectionReductionTables.getInfectionReduction(environment, personId, regionIndex,
+                    contactSetting);
         }
 
         return 1.0 - infectionReduction;
     }
 
+    @SuppressWarnings("unchecked")
+    @Override
+    public void init(Environment environment) {
+        PopulationDescription populationDescription = environment.getGlobalPropertyValue(GlobalProperty.POPULATION_DESCRIPTION);
+        AgeGroupPartition ageGroupPartition = populationDescription.ageGroupPartition();
+        DefinedGlobalAndRegionProperty property = LocationInfectionReductionGlobalAndRegionProperty.LOCATION_INFECTION_REDUCTION;
+        //noinspection OptionalGetWithoutIsPresent
+        Map<AgeGroup, Map<ContactGroupType, Double>> defaultRegionValue = (Map<AgeGroup, Map<ContactGroupType, Double>>)
+                environment.getRegionPropertyDefinition(property).getDefaultValue().get();
+        Map<AgeGroup, Map<ContactGroupType, Double>> globalValue = environment.getGlobalPropertyValue(property);
+        // Regions are indexed as in the trigger states
+        RegionTriggerStates regionTriggerStates = environment.getGlobalPropertyValue(GlobalProperty.REGION_TRIGGER_STATES);
+        LocationInfectionReductionTables infectionReductionTables = new LocationInfectionReductionTables(
+                ageGroupPartition, defaultRegionValue, globalValue, regionTriggerStates,
+                environment.getRegionIds().size());
+
+        // Resolve the initial value for each region
+        for (RegionId regionId : environment.getRegionIds()) {
+            Map<AgeGroup, Map<ContactGroupType, Double>> regionValue = environment.getRegionPropertyValue(regionId, property);
+            infectionReductionTables.addRegion(regionId, regionValue);
+        }
+
+        // Then resolve each trigger property override
+        List<TriggeredPropertyOverride> triggeredPropertyOverrides = environment.getGlobalPropertyValue(
+                LocationInfectionReductionGlobalProperty.LOCATION_INFECTION_REDUCTION_TRIGGER_OVERRIDES);
+        for (TriggeredPropertyOverride override : triggeredPropertyOverrides) {
+            // This should only be called for LOCATION_INFECTION_REDUCTION
+            String parameterId = override.property();
+            if (!parameterId.equals(property.toString())) {
+                throw new RuntimeException("Unrecognized property for triggered parameter override: " + parameterId);
+            }
+            try {
+                Map<AgeGroup, Map<ContactGroupType, Double>> overrideValue = (Map<AgeGroup, Map<ContactGroupType, Double>>)
+                        CoreEpiBootstrapUtil.getPropertyValueFromJson(override.value(), property, ageGroupPartition);
+                infectionReductionTables.addOverride(overrideValue);
+            } catch (IOException e) {
+                throw new RuntimeException("Property override value cannot be parsed from: " + override.value());
+            }
+        }
+
+        environment.setGlobalPropertyValue(LocationInfectionReductionGlobalProperty.LOCATION_INFECTION_REDUCTION_TABLES,
+                infectionReductionTables);
+    }
+
     @Override
     public Set<DefinedRegionProperty> getRegionProperties() {
         HashSet<DefinedRegionProperty> regionProperties = new HashSet<>();
@@ -82,26 +121,23 @@ public class LocationInfectionReductionPlugin extends BehaviorPlugin {
         TriggerUtils.addBooleanCallback(triggerCallbacks, triggerId, LocationInfectionReductionRegionProperty.LOCATION_INFECTION_REDUCTION_TRIGGER_START);
         triggerId = environment.getGlobalPropertyValue(LocationInfectionReductionGlobalProperty.LOCATION_INFECTION_REDUCTION_END);
         TriggerUtils.addBooleanCallback(triggerCallbacks, triggerId, LocationInfectionReductionRegionProperty.LOCATION_INFECTION_REDUCTION_TRIGGER_END);
-        // Then add trigger property overrides
+        // Then add trigger property overrides, which were resolved when the plugin was initialized
         List<TriggeredPropertyOverride> triggeredPropertyOverrides = environment.getGlobalPropertyValue(
                 LocationInfectionReductionGlobalProperty.LOCATION_INFECTION_REDUCTION_TRIGGER_OVERRIDES);
-        for (TriggeredPropertyOverride override : triggeredPropertyOverrides) {
-            triggerId = override.trigger();
-            // This should only be called for LOCATION_INFECTION_REDUCTION
-            String parameterId = override.property();
-            if (!parameterId.equals(LocationInfectionReductionGlobalAndRegionProperty.LOCATION_INFECTION_REDUCTION.toString())) {
-                throw new RuntimeException("Unrecognized property for triggered parameter override: " + parameterId);
-            }
+        LocationInfectionReductionTables infectionReductionTables = environment.getGlobalPropertyValue(
+                LocationInfectionReductionGlobalProperty.LOCATION_INFECTION_REDUCTION_TABLES);
+        for (int overrideIndex = 0; overrideIndex < triggeredPropertyOverrides.size(); overrideIndex++) {
+            triggerId = triggeredPropertyOverrides.get(overrideIndex).trigger();
             DefinedGlobalAndRegionProperty property = LocationInfectionReductionGlobalAndRegionProperty.LOCATION_INFECTION_REDUCTION;
-            try {
-                PopulationDescription populationDescription = environment.getGlobalPropertyValue(GlobalProperty.POPULATION_DESCRIPTION);
-                AgeGroupPartition ageGroupPartition = populationDescription.ageGroupPartition();
-                Object overrideValue = CoreEpiBootstrapUtil.getPropertyValueFromJson(override.value(), property, ageGroupPartition);
-                TriggerUtils.addCallback(triggerCallbacks, triggerId,
-                        (env, regionId) -> env.setRegionPropertyValue(regionId, property, overrideValue));
-            } catch (IOException e) {
-                throw new RuntimeException("Property override value cannot be parsed from: " + override.value());
-            }
+            Object overrideValue = infectionReductionTables.getOverrideValue(overrideIndex);
+            int tableOverrideIndex = overrideIndex;
+            TriggerUtils.addCallback(triggerCallbacks, triggerId,
+                    (env, regionId) -> {
+                        env.setRegionPropertyValue(regionId, property, overrideValue);
+                        LocationInfectionReductionTables tables = env.getGlobalPropertyValue(
+                                LocationInfectionReductionGlobalProperty.LOCATION_INFECTION_REDUCTION_TABLES);
+                        tables.applyOverride(regionId, tableOverrideIndex);
+                    });
         }
         return triggerCallbacks;
     }
@@ -115,6 +151,116 @@ public class LocationInfectionReductionPlugin extends BehaviorPlugin {
         ID
     }
 
+    /*
+        Infection reductions resolved into a table indexed by age group index and contact group type for each value
+        that the region property can take, along with the table in effect for each region, indexed by the region
+        indices of the trigger states. The age group index of each person is cached on first use.
+     */
+    public static final class LocationInfectionReductionTables {
+
+        private static final int CONTACT_GROUP_TYPE_COUNT = ContactGroupType.values().length;
+
+        private final AgeGroupPartition ageGroupPartition;
+        private final Map<AgeGroup, Map<ContactGroupType, Double>> defaultRegionValue;
+        private final Map<AgeGroup, Map<ContactGroupType, Double>> globalValue;
+        private final RegionTriggerStates regionTriggerStates;
+        private final Map<Map<AgeGroup, Map<ContactGroupType, Double>>, Integer> tableIndices = new HashMap<>();
+        private final List<double[][]> tables = new ArrayList<>();
+        // The table in effect for each region
+        private final double[][][] activeTables;
+        private final List<Object> overrideValues = new ArrayList<>();
+        private int[] overrideTableIndices = new int[0];
+        // Age group index plus one for each person, with zero when not yet known
+        private int[] personAgeGroupIndices = new int[0];
+
+        /*
+            Tables that have not been initialized for a simulation and that contain no regions
+         */
+        private LocationInfectionReductionTables() {
+            this.ageGroupPartition = null;
+            this.defaultRegionValue = new HashMap<>();
+            this.globalValue = new HashMap<>();
+            this.regionTriggerStates = null;
+            this.activeTables = new double[0][][];
+        }
+
+        private LocationInfectionReductionTables(AgeGroupPartition ageGroupPartition,
+                                                 Map<AgeGroup, Map<ContactGroupType, Double>> defaultRegionValue,
+                                                 Map<AgeGroup, Map<ContactGroupType, Double>> globalValue,
+                                                 RegionTriggerStates regionTriggerStates, int regionCount) {
+            this.ageGroupPartition = ageGroupPartition;
+            this.defaultRegionValue = defaultRegionValue;
+            this.globalValue = globalValue;
+            this.regionTriggerStates = regionTriggerStates;
+            this.activeTables = new double[regionCount][][];
+        }
+
+        /*
+            Returns the index of the table for the given region property value, where a region property still at its
+            default value uses the global property value instead
+         */
+        private int getTableIndex(Map<AgeGroup, Map<ContactGroupType, Double>> regionValue) {
+            Map<AgeGroup, Map<ContactGroupType, Double>> value = regionValue.equals(defaultRegionValue) ?
+                    globalValue : regionValue;
+            return tableIndices.computeIfAbsent(value, key -> {
+                double[][] table = new double[ageGroupPartition.getAgeGroupCount()][CONTACT_GROUP_TYPE_COUNT];
+                for (int ageGroupIndex = 0; ageGroupIndex < table.length; ageGroupIndex++) {
+                    Map<ContactGroupType, Double> infectionReductionByLocationMap =
+                            key.get(ageGroupPartition.getAgeGroupFromIndex(ageGroupIndex));
+                    if (infectionReductionByLocationMap != null) {
+                        for (Map.Entry<ContactGroupType, Double> entry : infectionReductionByLocationMap.entrySet()) {
+                            table[ageGroupIndex][entry.getKey().ordinal()] = entry.getValue();
+                        }
+                    }
+                }
+                tables.add(table);
+                return tables.size() - 1;
+            });
+        }
+
+        private void addRegion(RegionId regionId, Map<AgeGroup, Map<ContactGroupType, Double>> regionValue) {
+            activeTables[regionTriggerStates.getRegionIndex(regionId)] = tables.get(getTableIndex(regionValue));
+        }
+
+        private void addOverride(Map<AgeGroup, Map<ContactGroupType, Double>> overrideValue) {
+            int overrideIndex = overrideValues.size();
+            overrideValues.add(overrideValue);
+            overrideTableIndices = Arrays.copyOf(overrideTableIndices, overrideIndex + 1);
+            overrideTableIndices[overrideIndex] = getTableIndex(overrideValue);
+        }
+
+        private Object getOverrideValue(int overrideIndex) {
+            return overrideValues.get(overrideIndex);
+        }
+
+        private void applyOverride(RegionId regionId, int overrideIndex) {
+            activeTables[regionTriggerStates.getRegionIndex(regionId)] = tables.get(overrideTableIndices[overrideIndex]);
+        }
+
+        private double getInfectionReduction(Environment environment, PersonId personId, int regionIndex,
+                                             ContactGroupType contactGroupType) {
+            if (regionIndex >= activeTables.length) {
+                throw new RuntimeException("Location infection reduction tables have not been initialized");
+            }
+            return activeTables[regionIndex][getAgeGroupIndex(environment, personId)][contactGroupType.ordinal()];
+        }
+
+        private int getAgeGroupIndex(Environment environment, PersonId personId) {
+            int personIndex = personId.getValue();
+            if (personIndex < personAgeGroupIndices.length && personAgeGroupIndices[personIndex] > 0) {
+                return personAgeGroupIndices[personIndex] - 1;
+            }
+            if (personIndex >= personAgeGroupIndices.length) {
+                personAgeGroupIndices = Arrays.copyOf(personAgeGroupIndices,
+                        Math.max(personIndex + 1, 2 * personAgeGroupIndices.length));
+            }
+            int ageGroupIndex = environment.getPersonPropertyValue(personId, PersonProperty.AGE_GROUP_INDEX);
+            personAgeGroupIndices[personIndex] = ageGroupIndex + 1;
+            return ageGroupIndex;
+        }
+
+    }
+
     public enum LocationInfectionReductionGlobalProperty implements DefinedGlobalProperty {
 
         LOCATION_INFECTION_REDUCTION_START(PropertyDefinition.builder()
@@ -124,7 +270,11 @@ public class LocationInfectionReductionPlugin extends BehaviorPlugin {
                 .setType(String.class).setDefaultValue("").setPropertyValueMutability(false).build()),
 
         LOCATION_INFECTION_REDUCTION_TRIGGER_OVERRIDES(PropertyDefinition.builder()
-                .setType(List.class).setDefaultValue(new ArrayList<>()).setPropertyValueMutability(false).build());
+                .setType(List.class).setDefaultValue(new ArrayList<>()).setPropertyValueMutability(false).build()),
+
+        LOCATION_INFECTION_REDUCTION_TABLES(PropertyDefinition.builder()
+                .setType(LocationInfectionReductionTables.class)
+                .setDefaultValue(new LocationInfectionReductionTables()).build(), false);
 
         private final PropertyDefinition propertyDefinition;
         private final boolean isExternal;
@@ -134,6 +284,11 @@ public class LocationInfectionReductionPlugin extends BehaviorPlugin {
             this.isExternal = true;
         }
 
+        LocationInfectionReductionGlobalProperty(PropertyDefinition propertyDefinition, boolean isExternal) {
+            this.propertyDefinition = propertyDefinition;
+            this.isExternal = isExternal;
+        }
+
         @Override
         public PropertyDefinition getPropertyDefinition() {
             return propertyDefinition;
@@ -3,16 +3,16 @@ package gcm.core.epi.plugin.behavior;
 import gcm.components.AbstractComponent;
 import gcm.core.epi.identifiers.Compartment;
 import gcm.core.epi.identifiers.ContactGroupType;
+import gcm.core.epi.util.collections.RegionalPersonRoster;
+import gcm.core.epi.util.distributions.BinomialSampler;
 import gcm.core.epi.util.property.DefinedGlobalProperty;
 import gcm.core.epi.util.property.DefinedPersonProperty;
+import gcm.core.epi.util.timers.PersonTimerCalendar;
 import gcm.scenario.*;
 import gcm.simulation.Environment;
-import gcm.simulation.Filter;
 import gcm.simulation.Plan;
-import org.apache.commons.math3.distribution.BinomialDistribution;
 
 import java.util.*;
-import java.util.stream.IntStream;
 
 public class RandomTestingBehaviorPlugin extends BehaviorPlugin {
 
@@ -160,21 +160,62 @@ public class RandomTestingBehaviorPlugin extends BehaviorPlugin {
 
     public static class RandomTestingManager extends AbstractComponent {
 
-        private static final Object INFECTED_INDEX_KEY = new Object();
+        private static final int START_ISOLATING_TIMER = 0;
+        private static final int STOP_ISOLATING_TIMER = 1;
+
+        private final PersonTimerCalendar isolationTimers = new PersonTimerCalendar(this::expireTimer);
+        private final Map<RegionId, Integer> regionIndices = new HashMap<>();
+        private RegionalPersonRoster infectedRoster;
 
         @Override
         public void init(Environment environment) {
+            if (!CombinationBehaviorPlugin.isStageActive(environment,
+                    CombinationBehaviorPlugin.CombinationBehaviorStage.RANDOM_TESTING)) {
+                return;
+            }
             double startTestingTime = environment.getGlobalPropertyValue(RandomTestingGlobalProperty.TESTING_START_DAY);
             environment.addPlan(new RandomTestingPlan(), startTestingTime);
-            // Add index
-            environment.addPopulationIndex(Filter.compartment(Compartment.INFECTED), INFECTED_INDEX_KEY);
+            // Maintain the infected people in each region
+            for (RegionId regionId : environment.getRegionIds()) {
+                regionIndices.put(regionId, regionIndices.size());
+            }
+            infectedRoster = new RegionalPersonRoster(regionIndices.size());
+            for (PersonId personId : environment.getPeopleInCompartment(Compartment.INFECTED)) {
+                infectedRoster.add(personId.getValue(), regionIndices.get(environment.getPersonRegion(personId)));
+            }
+            environment.observeCompartmentPersonArrival(true, Compartment.INFECTED);
+            environment.observeCompartmentPersonArrival(true, Compartment.RECOVERED);
+            environment.observeGlobalPersonRegionChange(true);
+        }
+
+        @Override
+        public void observeCompartmentPersonArrival(Environment environment, PersonId personId) {
+            CompartmentId compartment = environment.getPersonCompartment(personId);
+            if (compartment == Compartment.INFECTED) {
+                infectedRoster.add(personId.getValue(), regionIndices.get(environment.getPersonRegion(personId)));
+            } else if (compartment == Compartment.RECOVERED) {
+                if (infectedRoster.contains(personId.getValue())) {
+                    infectedRoster.remove(personId.getValue());
+                }
+            } else {
+                throw new RuntimeException("RandomTestingManager observed unexpected person compartment change");
+            }
+        }
+
+        @Override
+        public void observePersonRegionChange(Environment environment, PersonId personId) {
+            // Keep infected people in the partition for their current region
+            if (infectedRoster.contains(personId.getValue())) {
+                infectedRoster.remove(personId.getValue());
+                infectedRoster.add(personId.getValue(), regionIndices.get(environment.getPersonRegion(personId)));
+            }
         }
 
         @Override
         public void executePlan(Environment environment, Plan plan) {
             if (plan.getClass() == RandomTestingPlan.class) {
                 double infectionTargetingRatio = environment.getGlobalPropertyValue(RandomTestingGlobalProperty.INFECTION_TARGETING_RATIO);
-                int numberInfected = environment.getIndexSize(INFECTED_INDEX_KEY);
+                int numberInfected = infectedRoster.size();
                 int numberNotInfected = environment.getPopulationCount() - numberInfected;
                 double probabilityTestInfected = numberInfected * infectionTargetingRatio /
                         (numberInfected * infectionTargetingRatio + numberNotInfected);
@@ -183,26 +224,25 @@ public class RandomTestingBehaviorPlugin extends BehaviorPlugin {
                 int numberToTest = (int) Math.round(environment.getPopulationCount() * fractionOfPopulationTested);
                 double testSensitivity = environment.getGlobalPropertyValue(RandomTestingGlobalProperty.TEST_SENSITIVITY);
                 // Sample how many infected people will be tested and test positive
-                int numberInfectedTestPositive = new BinomialDistribution(environment.getRandomGeneratorFromId(RandomTestingRandomId.ID),
-                        numberToTest, probabilityTestInfected * testSensitivity).sample();
+                int numberInfectedTestPositive = BinomialSampler.sample(environment.getRandomGeneratorFromId(RandomTestingRandomId.ID),
+                        numberToTest, probabilityTestInfected * testSensitivity);
                 double testIsolationDelay = environment.getGlobalPropertyValue(RandomTestingGlobalProperty.TEST_ISOLATION_DELAY);
 
-                // Randomly select infected people to isolate.
-                IntStream.range(0, numberInfectedTestPositive).forEach(
-                        x -> {
-                            Optional<PersonId> personToIsolate = environment.getRandomIndexedPersonFromGenerator(INFECTED_INDEX_KEY,
-                                    RandomTestingRandomId.ID);
-                            if (personToIsolate.isPresent()) {
-                                boolean hasTestedPositive = environment.getPersonPropertyValue(personToIsolate.get(),
-                                        RandomTestingPersonProperty.HAS_RECENTLY_TESTED_POSITIVE);
-                                if (!hasTestedPositive) {
-                                    // Plan to isolate this person
-                                    environment.addPlan(new StartIsolatingPlan(personToIsolate.get()),
-                                            environment.getTime() + testIsolationDelay);
-                                }
-                            }
-                        }
-                );
+                // Randomly select distinct infected people to isolate
+                int[] peopleTestedPositive = infectedRoster.sample(numberInfectedTestPositive,
+                        environment.getRandomGeneratorFromId(RandomTestingRandomId.ID));
+                for (int personIdValue : peopleTestedPositive) {
+                    PersonId personToIsolate = new PersonId(personIdValue);
+                    boolean hasTestedPositive = environment.getPersonPropertyValue(personToIsolate,
+                            RandomTestingPersonProperty.HAS_RECENTLY_TESTED_POSITIVE);
+                    if (!hasTestedPositive) {
+                        // Plan to isolate this person
+                        environment.setPersonPropertyValue(personToIsolate,
+                                RandomTestingPersonProperty.HAS_RECENTLY_TESTED_POSITIVE, true);
+                        isolationTimers.addTimer(environment, START_ISOLATING_TIMER, personToIsolate,
+                                environment.getTime() + testIsolationDelay);
+                    }
+                }
                 // Plan next testing
                 double time = environment.getTime();
                 double endTestingTime = environment.getGlobalPropertyValue(RandomTestingGlobalProperty.TESTING_END_DAY);
@@ -211,38 +251,28 @@ public class RandomTestingBehaviorPlugin extends BehaviorPlugin {
                         environment.getCompartmentPopulationCount(Compartment.INFECTED) > 0) {
                     environment.addPlan(plan, time + 1);
                 }
-            } else if (plan.getClass() == StartIsolatingPlan.class) {
-                // Start Isolating
-                PersonId personToIsolate = ((StartIsolatingPlan) plan).personId;
-                environment.setPersonPropertyValue(personToIsolate, RandomTestingPersonProperty.IS_STAYING_HOME, true);
-                double isolationDuration = environment.getGlobalPropertyValue(RandomTestingGlobalProperty.TEST_ISOLATION_DURATION);
-                environment.addPlan(new StopIsolatingPlan(personToIsolate), environment.getTime() + isolationDuration);
-            } else if (plan.getClass() == StopIsolatingPlan.class) {
-                // Stop Isolating
-                PersonId personIsolated = ((StopIsolatingPlan) plan).personId;
-                environment.setPersonPropertyValue(personIsolated, RandomTestingPersonProperty.IS_STAYING_HOME, false);
-                environment.setPersonPropertyValue(personIsolated, RandomTestingPersonProperty.HAS_RECENTLY_TESTED_POSITIVE, false);
+            } else if (PersonTimerCalendar.isTimerPlan(plan)) {
+                isolationTimers.executePlan(environment, plan);
             }
 
         }
 
-        private static class RandomTestingPlan implements Plan {
-        }
-
-        private static class StartIsolatingPlan implements Plan {
-            private final PersonId personId;
-
-            private StartIsolatingPlan(PersonId personId) {
-                this.personId = personId;
+        private void expireTimer(Environment environment, int timerType, PersonId personId) {
+            if (timerType == START_ISOLATING_TIMER) {
+                // Start Isolating
+                environment.setPersonPropertyValue(personId, RandomTestingPersonProperty.IS_STAYING_HOME, true);
+                double isolationDuration = environment.getGlobalPropertyValue(RandomTestingGlobalProperty.TEST_ISOLATION_DURATION);
+                isolationTimers.addTimer(environment, STOP_ISOLATING_TIMER, personId, environment.getTime() + isolationDuration);
+            } else if (timerType == STOP_ISOLATING_TIMER) {
+                // Stop Isolating
+                environment.setPersonPropertyValue(personId, RandomTestingPersonProperty.IS_STAYING_HOME, false);
+                environment.setPersonPropertyValue(personId, RandomTestingPersonProperty.HAS_RECENTLY_TESTED_POSITIVE, false);
+            } else {
+                throw new RuntimeException("RandomTestingManager attempting to expire an unknown timer type");
             }
         }
 
-        private static class StopIsolatingPlan implements Plan {
-            private final PersonId personId;
-
-            private StopIsolatingPlan(PersonId personId) {
-                this.personId = personId;
-            }
+        private static class RandomTestingPlan implements Plan {
         }
 
     }
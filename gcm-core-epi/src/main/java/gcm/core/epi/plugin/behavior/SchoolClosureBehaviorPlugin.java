@@ -1,66 +1,48 @@
 package gcm.core.epi.plugin.behavior;
 
 import gcm.core.epi.identifiers.ContactGroupType;
+import gcm.core.epi.trigger.RegionTriggerStates;
 import gcm.core.epi.trigger.TriggerCallback;
 import gcm.core.epi.trigger.TriggerUtils;
+import gcm.core.epi.util.distributions.AliasSampler;
 import gcm.core.epi.util.property.DefinedGlobalProperty;
 import gcm.core.epi.util.property.DefinedRegionProperty;
 import gcm.scenario.*;
 import gcm.simulation.Environment;
-import org.apache.commons.math3.distribution.EnumeratedDistribution;
-import org.apache.commons.math3.util.Pair;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class SchoolClosureBehaviorPlugin extends BehaviorPlugin {
 
+    private static final RegionTriggerStates.TriggerPair SUMMER_TRIGGER = RegionTriggerStates.getTriggerPair(
+            SchoolClosureRegionProperty.SUMMER_TRIGGER_START, SchoolClosureRegionProperty.SUMMER_TRIGGER_END);
+    private static final RegionTriggerStates.TriggerPair SCHOOL_CLOSURE_TRIGGER = RegionTriggerStates.getTriggerPair(
+            SchoolClosureRegionProperty.SCHOOL_CLOSURE_TRIGGER_START,
+            SchoolClosureRegionProperty.SCHOOL_CLOSURE_TRIGGER_END);
+
     @Override
     public Optional<ContactGroupType> getSubstitutedContactGroup(Environment environment, PersonId personId, ContactGroupType selectedContactGroupType) {
 
         if (selectedContactGroupType == ContactGroupType.SCHOOL) {
-            RegionId regionId = environment.getPersonRegion(personId);
-
             // Summer closure
-            boolean summerInEffect = TriggerUtils.checkIfTriggerIsInEffect(environment, regionId,
-                    SchoolClosureRegionProperty.SUMMER_TRIGGER_START,
-                    SchoolClosureRegionProperty.SUMMER_TRIGGER_END);
+            boolean summerInEffect = TriggerUtils.checkIfTriggerIsInEffect(environment, personId, SUMMER_TRIGGER);
 
             // Emergency school closure
-            boolean schoolClosureInEffect = TriggerUtils.checkIfTriggerIsInEffect(environment, regionId,
-                    SchoolClosureRegionProperty.SCHOOL_CLOSURE_TRIGGER_START,
-                    SchoolClosureRegionProperty.SCHOOL_CLOSURE_TRIGGER_END);
+            boolean schoolClosureInEffect = TriggerUtils.checkIfTriggerIsInEffect(environment, personId,
+                    SCHOOL_CLOSURE_TRIGGER);
 
             if (summerInEffect) {
                 // Summer
-                Map<ContactGroupType, Double> schoolClosedContactSubstitutionWeights = environment.getGlobalPropertyValue(
-                        SchoolClosureGlobalProperty.SUMMER_CONTACT_SUBSTITUTION_WEIGHTS);
-                List<Pair<ContactGroupType, Double>> schoolClosedContactSubstitutionWeightsList = schoolClosedContactSubstitutionWeights
-                        .entrySet()
-                        .stream()
-                        .map(entry -> new Pair<>(entry.getKey(), entry.getValue()))
-                        .collect(Collectors.toList());
-
-                EnumeratedDistribution<ContactGroupType> contactGroupDistribution =
-                        new EnumeratedDistribution<>(environment.getRandomGeneratorFromId(TimedSchoolClosureRandomId.ID),
-                                schoolClosedContactSubstitutionWeightsList);
-
-                return Optional.of(contactGroupDistribution.sample());
+                AliasSampler<ContactGroupType> contactGroupSampler = environment.getGlobalPropertyValue(
+                        SchoolClosureGlobalProperty.SUMMER_CONTACT_SUBSTITUTION_SAMPLER);
+                return Optional.of(contactGroupSampler.sample(
+                        environment.getRandomGeneratorFromId(TimedSchoolClosureRandomId.ID)));
             } else if (schoolClosureInEffect) {
                 // School closure outside of summer
-                Map<ContactGroupType, Double> schoolClosedContactSubstitutionWeights = environment.getGlobalPropertyValue(
-                        SchoolClosureGlobalProperty.SCHOOL_CLOSED_CONTACT_SUBSTITUTION_WEIGHTS);
-                List<Pair<ContactGroupType, Double>> schoolClosedContactSubstitutionWeightsList = schoolClosedContactSubstitutionWeights
-                        .entrySet()
-                        .stream()
-                        .map(entry -> new Pair<>(entry.getKey(), entry.getValue()))
-                        .collect(Collectors.toList());
-
-                EnumeratedDistribution<ContactGroupType> contactGroupDistribution =
-                        new EnumeratedDistribution<>(environment.getRandomGeneratorFromId(TimedSchoolClosureRandomId.ID),
-                                schoolClosedContactSubstitutionWeightsList);
-
-                return Optional.of(contactGroupDistribution.sample());
+                AliasSampler<ContactGroupType> contactGroupSampler = environment.getGlobalPropertyValue(
+                        SchoolClosureGlobalProperty.SCHOOL_CLOSED_CONTACT_SUBSTITUTION_SAMPLER);
+                return Optional.of(contactGroupSampler.sample(
+                        environment.getRandomGeneratorFromId(TimedSchoolClosureRandomId.ID)));
             } else {
                 // Leave it alone
                 return Optional.of(selectedContactGroupType);
@@ -71,6 +53,19 @@ public class SchoolClosureBehaviorPlugin extends BehaviorPlugin {
         return Optional.of(selectedContactGroupType);
     }
 
+    @Override
+    public void init(Environment environment) {
+        // Resolve the substitution weights into samplers once per simulation
+        Map<ContactGroupType, Double> summerContactSubstitutionWeights = environment.getGlobalPropertyValue(
+                SchoolClosureGlobalProperty.SUMMER_CONTACT_SUBSTITUTION_WEIGHTS);
+        environment.setGlobalPropertyValue(SchoolClosureGlobalProperty.SUMMER_CONTACT_SUBSTITUTION_SAMPLER,
+                new AliasSampler<>(summerContactSubstitutionWeights));
+        Map<ContactGroupType, Double> schoolClosedContactSubstitutionWeights = environment.getGlobalPropertyValue(
+                SchoolClosureGlobalProperty.SCHOOL_CLOSED_CONTACT_SUBSTITUTION_WEIGHTS);
+        environment.setGlobalPropertyValue(SchoolClosureGlobalProperty.SCHOOL_CLOSED_CONTACT_SUBSTITUTION_SAMPLER,
+                new AliasSampler<>(schoolClosedContactSubstitutionWeights));
+    }
+
     @Override
     public List<RandomNumberGeneratorId> getRandomIds() {
         List<RandomNumberGeneratorId> randomIds = new ArrayList<>();
@@ -128,12 +123,27 @@ public class SchoolClosureBehaviorPlugin extends BehaviorPlugin {
 
         SUMMER_CONTACT_SUBSTITUTION_WEIGHTS(PropertyDefinition.builder()
                 .setType(Map.class).setDefaultValue(getSummerSubstitutionWeights())
-                .setPropertyValueMutability(false).build());
+                .setPropertyValueMutability(false).build()),
+
+        SCHOOL_CLOSED_CONTACT_SUBSTITUTION_SAMPLER(PropertyDefinition.builder()
+                .setType(AliasSampler.class).setDefaultValue(new AliasSampler<>(getSchoolClosedSubstitutionWeights()))
+                .build(), false),
+
+        SUMMER_CONTACT_SUBSTITUTION_SAMPLER(PropertyDefinition.builder()
+                .setType(AliasSampler.class).setDefaultValue(new AliasSampler<>(getSummerSubstitutionWeights()))
+                .build(), false);
 
         private final PropertyDefinition propertyDefinition;
+        private final boolean isExternal;
 
         SchoolClosureGlobalProperty(PropertyDefinition propertyDefinition) {
             this.propertyDefinition = propertyDefinition;
+            this.isExternal = true;
+        }
+
+        SchoolClosureGlobalProperty(PropertyDefinition propertyDefinition, boolean isExternal) {
+            this.propertyDefinition = propertyDefinition;
+            this.isExternal = isExternal;
         }
 
         private static Map<ContactGroupType, Double> getSchoolClosedSubstitutionWeights() {
@@ -159,7 +169,7 @@ public class SchoolClosureBehaviorPlugin extends BehaviorPlugin {
 
         @Override
         public boolean isExternalProperty() {
-            return true;
+            return isExternal;
         }
 
     }
@@ -1,6 +1,7 @@
 package gcm.core.epi.plugin.behavior;
 
 import gcm.core.epi.identifiers.ContactGroupType;
+import gcm.core.epi.trigger.RegionTriggerStates;
 import gcm.core.epi.trigger.TriggerCallback;
 import gcm.core.epi.trigger.TriggerUtils;
 import gcm.core.epi.util.property.DefinedGlobalProperty;
@@ -12,6 +13,10 @@ import java.util.*;
 
 public class ShelterInPlaceBehaviorPlugin extends BehaviorPlugin {
 
+    private static final RegionTriggerStates.TriggerPair SHELTER_IN_PLACE_TRIGGER = RegionTriggerStates.getTriggerPair(
+            ShelterInPlaceRegionProperty.SHELTER_IN_PLACE_TRIGGER_START,
+            ShelterInPlaceRegionProperty.SHELTER_IN_PLACE_TRIGGER_END);
+
     @Override
     public Set<DefinedGlobalProperty> getGlobalProperties() {
         return new HashSet<>(EnumSet.allOf(ShelterInPlaceGlobalProperty.class));
@@ -41,10 +46,8 @@ public class ShelterInPlaceBehaviorPlugin extends BehaviorPlugin {
 
     @Override
     public Optional<ContactGroupType> getSubstitutedContactGroup(Environment environment, PersonId personId, ContactGroupType selectedContactGroupType) {
-        RegionId regionId = environment.getPersonRegion(personId);
-        boolean triggerIsInEffect = TriggerUtils.checkIfTriggerIsInEffect(environment, regionId,
-                ShelterInPlaceRegionProperty.SHELTER_IN_PLACE_TRIGGER_START,
-                ShelterInPlaceRegionProperty.SHELTER_IN_PLACE_TRIGGER_END);
+        boolean triggerIsInEffect = TriggerUtils.checkIfTriggerIsInEffect(environment, personId,
+                SHELTER_IN_PLACE_TRIGGER);
         if (selectedContactGroupType != ContactGroupType.HOME && triggerIsInEffect) {
             double communityContactReduction = environment.getGlobalPropertyValue(ShelterInPlaceGlobalProperty.COMMUNITY_CONTACT_REDUCTION);
             if (environment.getRandomGeneratorFromId(ShelterInPlaceRandomId.ID).nextDouble() < communityContactReduction) {
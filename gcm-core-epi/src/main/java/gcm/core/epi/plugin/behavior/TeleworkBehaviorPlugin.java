@@ -1,36 +1,28 @@
 package gcm.core.epi.plugin.behavior;
 
-import gcm.components.AbstractComponent;
 import gcm.core.epi.identifiers.ContactGroupType;
+import gcm.core.epi.population.PopulationAttributeGenerator;
+import gcm.core.epi.trigger.RegionTriggerStates;
 import gcm.core.epi.trigger.TriggerCallback;
 import gcm.core.epi.trigger.TriggerUtils;
+import gcm.core.epi.util.distributions.AliasSampler;
 import gcm.core.epi.util.property.DefinedGlobalProperty;
 import gcm.core.epi.util.property.DefinedGroupProperty;
 import gcm.core.epi.util.property.DefinedPersonProperty;
 import gcm.core.epi.util.property.DefinedRegionProperty;
 import gcm.scenario.*;
 import gcm.simulation.Environment;
-import org.apache.commons.math3.distribution.EnumeratedDistribution;
 import org.apache.commons.math3.random.RandomGenerator;
-import org.apache.commons.math3.util.Pair;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class TeleworkBehaviorPlugin extends BehaviorPlugin {
 
-    static final GlobalComponentId WORKPLACE_TELEWORK_MANAGER_ID = new GlobalComponentId() {
-        @Override
-        public String toString() {
-            return "WORKPLACE_TELEWORK_MANAGER_ID";
-        }
-    };
+    private static final RegionTriggerStates.TriggerPair TELEWORK_TRIGGER = RegionTriggerStates.getTriggerPair(
+            TeleworkRegionProperty.TELEWORK_TRIGGER_START, TeleworkRegionProperty.TELEWORK_TRIGGER_END);
 
     private static boolean isPersonTeleworkAble(Environment environment, PersonId personId) {
-        RegionId regionId = environment.getPersonRegion(personId);
-        boolean teleworkIsInEffect = TriggerUtils.checkIfTriggerIsInEffect(environment, regionId,
-                TeleworkRegionProperty.TELEWORK_TRIGGER_START,
-                TeleworkRegionProperty.TELEWORK_TRIGGER_END);
+        boolean teleworkIsInEffect = TriggerUtils.checkIfTriggerIsInEffect(environment, personId, TELEWORK_TRIGGER);
         if (teleworkIsInEffect) {
             float personTeleworkPropensity = environment.getPersonPropertyValue(personId,
                     TeleworkPersonProperty.TELEWORK_PROPENSITY);
@@ -59,17 +51,10 @@ public class TeleworkBehaviorPlugin extends BehaviorPlugin {
                 if (environment.getRandomGeneratorFromId(TeleworkRandomId.ID).nextDouble() <
                         teleworkTimeFraction) {
                     // Substitute workplace contacts
-                    Map<ContactGroupType, Double> teleworkContactSubstitutionWeights = environment.getGlobalPropertyValue(
-                            TeleworkGlobalProperty.WORKPLACE_TELEWORK_CONTACT_SUBSTITUTION_WEIGHTS);
-                    List<Pair<ContactGroupType, Double>> teleworkContactSubstitutionWeightsList = teleworkContactSubstitutionWeights
-                            .entrySet()
-                            .stream()
-                            .map(entry -> new Pair<>(entry.getKey(), entry.getValue()))
-                            .collect(Collectors.toList());
-                    EnumeratedDistribution<ContactGroupType> contactGroupDistribution =
-                            new EnumeratedDistribution<>(environment.getRandomGeneratorFromId(TeleworkRandomId.ID),
-                                    teleworkContactSubstitutionWeightsList);
-                    return Optional.of(contactGroupDistribution.sample());
+                    AliasSampler<ContactGroupType> contactGroupSampler = environment.getGlobalPropertyValue(
+                            TeleworkGlobalProperty.WORKPLACE_TELEWORK_CONTACT_SUBSTITUTION_SAMPLER);
+                    return Optional.of(contactGroupSampler.sample(
+                            environment.getRandomGeneratorFromId(TeleworkRandomId.ID)));
                 }
             }
         }
@@ -77,6 +62,15 @@ public class TeleworkBehaviorPlugin extends BehaviorPlugin {
         return Optional.of(selectedContactGroupType);
     }
 
+    @Override
+    public void init(Environment environment) {
+        // Resolve the substitution weights into a sampler once per simulation
+        Map<ContactGroupType, Double> teleworkContactSubstitutionWeights = environment.getGlobalPropertyValue(
+                TeleworkGlobalProperty.WORKPLACE_TELEWORK_CONTACT_SUBSTITUTION_WEIGHTS);
+        environment.setGlobalPropertyValue(TeleworkGlobalProperty.WORKPLACE_TELEWORK_CONTACT_SUBSTITUTION_SAMPLER,
+                new AliasSampler<>(teleworkContactSubstitutionWeights));
+    }
+
     @Override
     public List<RandomNumberGeneratorId> getRandomIds() {
         List<RandomNumberGeneratorId> randomIds = new ArrayList<>();
@@ -130,10 +124,20 @@ public class TeleworkBehaviorPlugin extends BehaviorPlugin {
         return 1.0;
     }
 
+    @Override
+    public List<PopulationAttributeGenerator> getPopulationAttributeGenerators(Environment environment) {
+        // Determine which workplaces and workers will support telework
+        List<PopulationAttributeGenerator> generators = new ArrayList<>();
+        generators.add(PopulationAttributeGenerator.forGroups("WORKPLACE_TELEWORK_PROPENSITY",
+                ContactGroupType.WORK, TeleworkWorkProperty.TELEWORK_PROPENSITY, RandomGenerator::nextFloat));
+        generators.add(PopulationAttributeGenerator.forGroupMembers("WORKER_TELEWORK_PROPENSITY",
+                ContactGroupType.WORK, TeleworkPersonProperty.TELEWORK_PROPENSITY, RandomGenerator::nextFloat));
+        return generators;
+    }
+
     @Override
     public void load(ExperimentBuilder experimentBuilder) {
         super.load(experimentBuilder);
-        experimentBuilder.addGlobalComponentId(WORKPLACE_TELEWORK_MANAGER_ID, TeleworkManager.class);
     }
 
     private enum TeleworkRandomId implements RandomNumberGeneratorId {
@@ -195,12 +199,23 @@ public class TeleworkBehaviorPlugin extends BehaviorPlugin {
                 .setType(String.class).setDefaultValue("").setPropertyValueMutability(false).build()),
 
         TELEWORK_END(PropertyDefinition.builder()
-                .setType(String.class).setDefaultValue("").setPropertyValueMutability(false).build());
+                .setType(String.class).setDefaultValue("").setPropertyValueMutability(false).build()),
+
+        WORKPLACE_TELEWORK_CONTACT_SUBSTITUTION_SAMPLER(PropertyDefinition.builder()
+                .setType(AliasSampler.class).setDefaultValue(new AliasSampler<>(getDefaultContactSubstitutionWeights()))
+                .build(), false);
 
         private final PropertyDefinition propertyDefinition;
+        private final boolean isExternal;
 
         TeleworkGlobalProperty(PropertyDefinition propertyDefinition) {
             this.propertyDefinition = propertyDefinition;
+            this.isExternal = true;
+        }
+
+        TeleworkGlobalProperty(PropertyDefinition propertyDefinition, boolean isExternal) {
+            this.propertyDefinition = propertyDefinition;
+            this.isExternal = isExternal;
         }
 
         private static Map<ContactGroupType, Double> getDefaultContactSubstitutionWeights() {
@@ -217,7 +232,7 @@ public class TeleworkBehaviorPlugin extends BehaviorPlugin {
 
         @Override
         public boolean isExternalProperty() {
-            return true;
+            return isExternal;
         }
 
     }
@@ -244,28 +259,4 @@ public class TeleworkBehaviorPlugin extends BehaviorPlugin {
         }
 
     }
-
-    public static class TeleworkManager extends AbstractComponent {
-
-        @Override
-        public void init(Environment environment) {
-            // Determine at workplace creation if the workplace will support telework
-            environment.observeGroupConstructionByType(true, ContactGroupType.WORK);
-        }
-
-        @Override
-        public void observeGroupConstruction(Environment environment, GroupId groupId) {
-            // Only called for workplaces upon construction
-            RandomGenerator teleworkRandomGenerator = environment.getRandomGeneratorFromId(TeleworkRandomId.ID);
-            // Assign propensity for workplace
-            environment.setGroupPropertyValue(groupId, TeleworkWorkProperty.TELEWORK_PROPENSITY,
-                    teleworkRandomGenerator.nextFloat());
-            // Assign propensities for workers
-            List<PersonId> workerIds = environment.getPeopleForGroup(groupId);
-            for (PersonId workerId : workerIds) {
-                environment.setPersonPropertyValue(workerId, TeleworkPersonProperty.TELEWORK_PROPENSITY,
-                        teleworkRandomGenerator.nextFloat());
-            }
-        }
-    }
 }
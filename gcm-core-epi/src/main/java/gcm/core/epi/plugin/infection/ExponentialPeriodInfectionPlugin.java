@@ -1,11 +1,11 @@
 package gcm.core.epi.plugin.infection;
 
 import gcm.core.epi.plugin.infection.ImmutableDiseaseCourseData;
+import gcm.core.epi.util.distributions.ExponentialSampler;
 import gcm.core.epi.util.property.DefinedGlobalProperty;
 import gcm.scenario.PersonId;
 import gcm.scenario.PropertyDefinition;
 import gcm.simulation.Environment;
-import org.apache.commons.math3.distribution.ExponentialDistribution;
 
 import java.util.EnumSet;
 import java.util.HashSet;
@@ -16,20 +16,20 @@ public class ExponentialPeriodInfectionPlugin implements InfectionPlugin {
     @Override
     public double getNextTransmissionTime(Environment environment, PersonId personId, double transmissionRatio) {
         double infectiousPeriod = environment.getGlobalPropertyValue(GlobalProperty.INFECTIOUS_PERIOD);
-        return new ExponentialDistribution(environment.getRandomGenerator(),
-                infectiousPeriod / transmissionRatio).sample();
+        return ExponentialSampler.sample(environment.getRandomGenerator(),
+                infectiousPeriod / transmissionRatio);
     }
 
     @Override
     public DiseaseCourseData getDiseaseCourseData(Environment environment, PersonId personId) {
         double latentPeriod = environment.getGlobalPropertyValue(GlobalProperty.LATENT_PERIOD);
         double infectiousPeriod = environment.getGlobalPropertyValue(GlobalProperty.INFECTIOUS_PERIOD);
-        final double infectiousOnsetTime = new ExponentialDistribution(environment.getRandomGenerator(),
-                latentPeriod).sample();
+        final double infectiousOnsetTime = ExponentialSampler.sample(environment.getRandomGenerator(),
+                latentPeriod);
         return ImmutableDiseaseCourseData.builder()
                 .infectiousOnsetTime(infectiousOnsetTime)
                 .recoveryTime(infectiousOnsetTime +
-                        new ExponentialDistribution(environment.getRandomGenerator(), infectiousPeriod).sample())
+                        ExponentialSampler.sample(environment.getRandomGenerator(), infectiousPeriod))
                 .symptomOnsetTime(infectiousOnsetTime)
                 .build();
     }
@@ -1,15 +1,14 @@
 package gcm.core.epi.plugin.infection;
 
 import gcm.core.epi.plugin.infection.ImmutableDiseaseCourseData;
+import gcm.core.epi.util.distributions.ExponentialSampler;
 import gcm.core.epi.util.distributions.GammaHelper;
+import gcm.core.epi.util.distributions.GammaSampler;
 import gcm.core.epi.util.property.DefinedGlobalProperty;
 import gcm.core.epi.util.property.DefinedPersonProperty;
 import gcm.scenario.PersonId;
 import gcm.scenario.PropertyDefinition;
 import gcm.simulation.Environment;
-import org.apache.commons.math3.distribution.ExponentialDistribution;
-import org.apache.commons.math3.distribution.GammaDistribution;
-import org.apache.commons.math3.distribution.RealDistribution;
 
 import java.util.EnumSet;
 import java.util.HashSet;
@@ -29,8 +28,8 @@ public class GammaPeriodInfectionPlugin implements InfectionPlugin {
         double symptomaticInfectiousPeriod = environment.getGlobalPropertyValue(GlobalProperty.SYMPTOMATIC_INFECTIOUS_PERIOD);
         double infectiousPeriod = fractionLatentPeriodInfectious * latentPeriod + symptomaticInfectiousPeriod;
         float relativeInfectiousness = environment.getPersonPropertyValue(personId, PersonProperty.RELATIVE_INFECTIOUSNESS);
-        return new ExponentialDistribution(environment.getRandomGenerator(),
-                infectiousPeriod / transmissionRatio / relativeInfectiousness).sample();
+        return ExponentialSampler.sample(environment.getRandomGenerator(),
+                infectiousPeriod / transmissionRatio / relativeInfectiousness);
     }
 
     @Override
@@ -41,30 +40,24 @@ public class GammaPeriodInfectionPlugin implements InfectionPlugin {
         double symptomaticInfectiousPeriodCOV = environment.getGlobalPropertyValue(GlobalProperty.SYMPTOMATIC_INFECTIOUS_PERIOD_COV);
         double fractionLatentPeriodInfectious = environment.getGlobalPropertyValue(GlobalProperty.FRACTION_LATENT_PERIOD_INFECTIOUS);
         // Subdivide gamma-distributed latent period into pre-infectious and pre-symptomatic infectious periods
-        RealDistribution preInfectiousPeriodDistribution = new GammaDistribution(environment.getRandomGenerator(),
+        double preInfectiousPeriod = GammaSampler.sample(environment.getRandomGenerator(),
                 GammaHelper.getShapeFromCOV(latentPeriodCOV) * (1 - fractionLatentPeriodInfectious),
                 GammaHelper.getScaleFromMeanAndCOV(latentPeriod, latentPeriodCOV));
-        double preInfectiousPeriod = preInfectiousPeriodDistribution.sample();
 
-        RealDistribution preSymptomaticInfectiousPeriodDistribution = new GammaDistribution(environment.getRandomGenerator(),
+        double preSymptomaticInfectiousPeriod = GammaSampler.sample(environment.getRandomGenerator(),
                 GammaHelper.getShapeFromCOV(latentPeriodCOV) * fractionLatentPeriodInfectious,
                 GammaHelper.getScaleFromMeanAndCOV(latentPeriod, latentPeriodCOV));
-        double preSymptomaticInfectiousPeriod = preSymptomaticInfectiousPeriodDistribution.sample();
 
-        RealDistribution symptomaticInfectiousPeriodDistribution = new GammaDistribution(environment.getRandomGenerator(),
-                GammaHelper.getShapeFromCOV(symptomaticInfectiousPeriodCOV),
-                GammaHelper.getScaleFromMeanAndCOV(symptomaticInfectiousPeriod, symptomaticInfectiousPeriodCOV));
-        double recoveryPeriod = symptomaticInfectiousPeriodDistribution.sample();
+        double recoveryPeriod = GammaSampler.sampleFromMeanAndCOV(environment.getRandomGenerator(),
+                symptomaticInfectiousPeriod, symptomaticInfectiousPeriodCOV);
 
         // Handle infectiousness overdispersion
         double infectiousnessOverdispersion = environment.getGlobalPropertyValue(GlobalProperty.TRANSMISSION_OVERDISPERSION);
         if (infectiousnessOverdispersion > 0) {
             // Choose this to have mean 1 and cov == overdispersion
-            RealDistribution infectiousnessDistribution = new GammaDistribution(environment.getRandomGenerator(),
-                    GammaHelper.getShapeFromCOV(infectiousnessOverdispersion),
-                    GammaHelper.getScaleFromMeanAndCOV(1, infectiousnessOverdispersion));
             environment.setPersonPropertyValue(personId, PersonProperty.RELATIVE_INFECTIOUSNESS,
-                    (float) infectiousnessDistribution.sample());
+                    (float) GammaSampler.sampleFromMeanAndCOV(environment.getRandomGenerator(), 1,
+                            infectiousnessOverdispersion));
         }
 
         return ImmutableDiseaseCourseData.builder()
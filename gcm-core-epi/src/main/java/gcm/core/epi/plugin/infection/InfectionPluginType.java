@@ -4,7 +4,9 @@ public enum InfectionPluginType {
 
     EXPONENTIAL(ExponentialPeriodInfectionPlugin.class),
 
-    GAMMA(GammaPeriodInfectionPlugin.class);
+    GAMMA(GammaPeriodInfectionPlugin.class),
+
+    INFECTIOUSNESS_LIBRARY(InfectiousnessLibraryInfectionPlugin.class);
 
     private final Class<? extends InfectionPlugin> pluginClass;
 
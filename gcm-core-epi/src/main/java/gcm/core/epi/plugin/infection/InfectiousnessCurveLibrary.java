@@ -0,0 +1,182 @@
+package gcm.core.epi.plugin.infection;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import gcm.core.epi.util.loading.InfectiousnessLibraryFileRecord;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * A library of infectiousness curves, each giving infectiousness as a function of time since infection. A curve is
+ * read from the rows of an infectiousness library file sharing an id, with the value at each time holding until the
+ * next time of the curve, and infectiousness ending at its last time. Curves are normalized to integrate to one and
+ * stored as cumulative infectiousness in flat primitive arrays so that the time at which a given cumulative
+ * infectiousness is reached can be found by binary search.
+ */
+public class InfectiousnessCurveLibrary {
+
+    private final int[] curveIds;
+    // Curve i occupies positions offsets[i] through offsets[i + 1] - 1 of times and cumulativeValues
+    private final int[] offsets;
+    private final double[] times;
+    private final double[] cumulativeValues;
+
+    private InfectiousnessCurveLibrary(int[] curveIds, int[] offsets, double[] times, double[] cumulativeValues) {
+        this.curveIds = curveIds;
+        this.offsets = offsets;
+        this.times = times;
+        this.cumulativeValues = cumulativeValues;
+    }
+
+    public static InfectiousnessCurveLibrary load(Path libraryPath) {
+        ObjectMapper csvMapper = new CsvMapper();
+        CsvSchema schema = CsvSchema.emptySchema().withHeader();
+        List<InfectiousnessLibraryFileRecord> records;
+        try (MappingIterator<InfectiousnessLibraryFileRecord> recordMappingIterator = csvMapper
+                .readerFor(InfectiousnessLibraryFileRecord.class)
+                .with(schema)
+                .readValues(libraryPath.toFile())) {
+            records = recordMappingIterator.readAll();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read infectiousness library file: " + libraryPath, e);
+        }
+        return fromRecords(records);
+    }
+
+    public static InfectiousnessCurveLibrary fromRecords(List<InfectiousnessLibraryFileRecord> records) {
+        // Group records by curve id in order of first appearance
+        Map<Integer, List<InfectiousnessLibraryFileRecord>> recordsByCurveId = new LinkedHashMap<>();
+        for (InfectiousnessLibraryFileRecord record : records) {
+            recordsByCurveId.computeIfAbsent(record.id(), id -> new ArrayList<>()).add(record);
+        }
+        if (recordsByCurveId.isEmpty()) {
+            throw new IllegalArgumentException("Infectiousness library contains no curves");
+        }
+
+        int[] curveIds = new int[recordsByCurveId.size()];
+        int[] offsets = new int[curveIds.length + 1];
+        double[] times = new double[records.size()];
+        double[] cumulativeValues = new double[records.size()];
+        int curveIndex = 0;
+        int position = 0;
+        for (Map.Entry<Integer, List<InfectiousnessLibraryFileRecord>> entry : recordsByCurveId.entrySet()) {
+            List<InfectiousnessLibraryFileRecord> curveRecords = entry.getValue();
+            curveRecords.sort(Comparator.comparingDouble(InfectiousnessLibraryFileRecord::time));
+            if (curveRecords.size() < 2) {
+                throw new IllegalArgumentException("Infectiousness curve " + entry.getKey() +
+                        " must have at least two times");
+            }
+            curveIds[curveIndex] = entry.getKey();
+            offsets[curveIndex] = position;
+            double cumulativeValue = 0;
+            for (int i = 0; i < curveRecords.size(); i++) {
+                InfectiousnessLibraryFileRecord record = curveRecords.get(i);
+                if (record.time() < 0 || record.value() < 0) {
+                    throw new IllegalArgumentException("Infectiousness curve " + entry.getKey() +
+                            " has a negative time or value");
+                }
+                if (i > 0) {
+                    InfectiousnessLibraryFileRecord previousRecord = curveRecords.get(i - 1);
+                    if (record.time() == previousRecord.time()) {
+                        throw new IllegalArgumentException("Infectiousness curve " + entry.getKey() +
+                                " has a repeated time: " + record.time());
+                    }
+                    cumulativeValue += previousRecord.value() * (record.time() - previousRecord.time());
+                }
+                times[position + i] = record.time();
+                cumulativeValues[position + i] = cumulativeValue;
+            }
+            if (!(cumulativeValue > 0)) {
+                throw new IllegalArgumentException("Infectiousness curve " + entry.getKey() +
+                        " has no infectiousness");
+            }
+            for (int i = 0; i < curveRecords.size(); i++) {
+                cumulativeValues[position + i] /= cumulativeValue;
+            }
+            position += curveRecords.size();
+            curveIndex++;
+        }
+        offsets[curveIndex] = position;
+
+        return new InfectiousnessCurveLibrary(curveIds, offsets, times, cumulativeValues);
+    }
+
+    public int getCurveCount() {
+        return curveIds.length;
+    }
+
+    public int getCurveId(int curveIndex) {
+        return curveIds[curveIndex];
+    }
+
+    /*
+     * The first time of the curve, from which the person may be infectious
+     */
+    public double getStartTime(int curveIndex) {
+        return times[offsets[curveIndex]];
+    }
+
+    /*
+     * The last time of the curve, after which the person is no longer infectious
+     */
+    public double getEndTime(int curveIndex) {
+        return times[offsets[curveIndex + 1] - 1];
+    }
+
+    /*
+     * The fraction of total infectiousness of the curve that has occurred by the given time since infection
+     */
+    public double getCumulativeInfectiousness(int curveIndex, double time) {
+        int start = offsets[curveIndex];
+        int end = offsets[curveIndex + 1];
+        if (time <= times[start]) {
+            return 0;
+        }
+        if (time >= times[end - 1]) {
+            return 1;
+        }
+        int position = Arrays.binarySearch(times, start, end, time);
+        if (position >= 0) {
+            return cumulativeValues[position];
+        }
+        // Interpolate within the segment containing the time
+        int segment = -position - 2;
+        return cumulativeValues[segment] + (time - times[segment]) *
+                (cumulativeValues[segment + 1] - cumulativeValues[segment]) /
+                (times[segment + 1] - times[segment]);
+    }
+
+    /*
+     * The earliest time since infection at which the given fraction of total infectiousness of the curve has
+     * occurred, for fractions between zero and one
+     */
+    public double getTimeForCumulativeInfectiousness(int curveIndex, double cumulativeInfectiousness) {
+        int start = offsets[curveIndex];
+        int end = offsets[curveIndex + 1];
+        int position = Arrays.binarySearch(cumulativeValues, start, end, cumulativeInfectiousness);
+        if (position < 0) {
+            position = -position - 1;
+        } else {
+            // Step back over segments with no infectiousness to the earliest time
+            while (position > start && cumulativeValues[position - 1] == cumulativeInfectiousness) {
+                position--;
+            }
+            return times[position];
+        }
+        if (position <= start) {
+            return times[start];
+        }
+        if (position >= end) {
+            return times[end - 1];
+        }
+        int segment = position - 1;
+        return times[segment] + (cumulativeInfectiousness - cumulativeValues[segment]) *
+                (times[segment + 1] - times[segment]) /
+                (cumulativeValues[segment + 1] - cumulativeValues[segment]);
+    }
+
+}
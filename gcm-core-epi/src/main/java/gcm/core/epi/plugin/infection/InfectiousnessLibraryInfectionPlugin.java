@@ -0,0 +1,148 @@
+package gcm.core.epi.plugin.infection;
+
+import gcm.core.epi.util.distributions.ExponentialSampler;
+import gcm.core.epi.util.distributions.GammaSampler;
+import gcm.core.epi.util.property.DefinedGlobalProperty;
+import gcm.core.epi.util.property.DefinedPersonProperty;
+import gcm.scenario.PersonId;
+import gcm.scenario.PropertyDefinition;
+import gcm.simulation.Environment;
+
+import java.nio.file.Paths;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An infection plugin in which infectiousness varies over the course of infection according to curves drawn from an
+ * infectiousness library file. Each infected person is assigned a curve uniformly at random, is infectious from its
+ * first time to its last, and makes contacts at a rate proportional to the curve value, scaled so that the expected
+ * number of contacts over the whole curve is the transmission ratio. Next contact times are found by inverting the
+ * cumulative infectiousness of the curve.
+ */
+public class InfectiousnessLibraryInfectionPlugin implements InfectionPlugin {
+
+    // Libraries are loaded once per experiment and shared by all simulations, keyed by file name
+    private final Map<String, InfectiousnessCurveLibrary> libraries = new ConcurrentHashMap<>();
+
+    private InfectiousnessCurveLibrary getLibrary(Environment environment) {
+        String libraryFile = environment.getGlobalPropertyValue(GlobalProperty.INFECTIOUSNESS_LIBRARY_FILE);
+        InfectiousnessCurveLibrary library = libraries.get(libraryFile);
+        if (library == null) {
+            library = libraries.computeIfAbsent(libraryFile, file -> InfectiousnessCurveLibrary.load(
+                    Paths.get(System.getProperty("user.dir")).resolve(file)));
+        }
+        return library;
+    }
+
+    @Override
+    public Set<DefinedGlobalProperty> getGlobalProperties() {
+        return new HashSet<>(EnumSet.allOf(GlobalProperty.class));
+    }
+
+    @Override
+    public Set<DefinedPersonProperty> getPersonProperties() {
+        return new HashSet<>(EnumSet.allOf(PersonProperty.class));
+    }
+
+    @Override
+    public double getNextTransmissionTime(Environment environment, PersonId personId, double transmissionRatio) {
+        InfectiousnessCurveLibrary library = getLibrary(environment);
+        int curveIndex = environment.getPersonPropertyValue(personId, PersonProperty.INFECTIOUSNESS_CURVE_INDEX);
+        double infectionTime = environment.getPersonPropertyValue(personId, PersonProperty.INFECTION_TIME);
+        double timeSinceInfection = environment.getTime() - infectionTime;
+
+        // Contacts follow a Poisson process whose cumulative hazard is the transmission ratio times the cumulative
+        // infectiousness of the curve, so the next contact is where the hazard has grown by a unit exponential
+        double currentCumulativeInfectiousness = library.getCumulativeInfectiousness(curveIndex, timeSinceInfection);
+        double nextCumulativeInfectiousness = currentCumulativeInfectiousness +
+                ExponentialSampler.sample(environment.getRandomGenerator(), 1.0) / transmissionRatio;
+
+        if (nextCumulativeInfectiousness < 1) {
+            return library.getTimeForCumulativeInfectiousness(curveIndex, nextCumulativeInfectiousness) -
+                    timeSinceInfection;
+        } else {
+            // No contact before the end of the curve, when the person recovers and the contact will be removed
+            double endTime = library.getEndTime(curveIndex);
+            return Math.max(endTime - timeSinceInfection, 0) +
+                    (nextCumulativeInfectiousness - 1) * (endTime - library.getStartTime(curveIndex));
+        }
+    }
+
+    @Override
+    public DiseaseCourseData getDiseaseCourseData(Environment environment, PersonId personId) {
+        InfectiousnessCurveLibrary library = getLibrary(environment);
+        int curveIndex = environment.getRandomGenerator().nextInt(library.getCurveCount());
+        environment.setPersonPropertyValue(personId, PersonProperty.INFECTIOUSNESS_CURVE_INDEX, curveIndex);
+        environment.setPersonPropertyValue(personId, PersonProperty.INFECTION_TIME, environment.getTime());
+
+        double infectiousOnsetTime = library.getStartTime(curveIndex);
+        double recoveryTime = library.getEndTime(curveIndex);
+        double incubationPeriod = environment.getGlobalPropertyValue(GlobalProperty.INCUBATION_PERIOD);
+        double incubationPeriodCOV = environment.getGlobalPropertyValue(GlobalProperty.INCUBATION_PERIOD_COV);
+        double symptomOnsetTime = incubationPeriodCOV > 0 ?
+                GammaSampler.sampleFromMeanAndCOV(environment.getRandomGenerator(), incubationPeriod,
+                        incubationPeriodCOV) :
+                incubationPeriod;
+
+        return ImmutableDiseaseCourseData.builder()
+                .infectiousOnsetTime(infectiousOnsetTime)
+                // Symptoms that would start after recovery instead start at recovery, planned ahead of it
+                .symptomOnsetTime(Math.min(symptomOnsetTime, recoveryTime))
+                .recoveryTime(recoveryTime)
+                .build();
+    }
+
+    private enum GlobalProperty implements DefinedGlobalProperty {
+
+        INFECTIOUSNESS_LIBRARY_FILE(PropertyDefinition.builder()
+                .setType(String.class).setDefaultValue("").setPropertyValueMutability(false).build()),
+
+        INCUBATION_PERIOD(PropertyDefinition.builder()
+                .setType(Double.class).setDefaultValue(1.0).setPropertyValueMutability(false).build()),
+
+        INCUBATION_PERIOD_COV(PropertyDefinition.builder()
+                .setType(Double.class).setDefaultValue(1.0).setPropertyValueMutability(false).build());
+
+        private final PropertyDefinition propertyDefinition;
+
+        GlobalProperty(PropertyDefinition propertyDefinition) {
+            this.propertyDefinition = propertyDefinition;
+        }
+
+        @Override
+        public PropertyDefinition getPropertyDefinition() {
+            return propertyDefinition;
+        }
+
+        @Override
+        public boolean isExternalProperty() {
+            return true;
+        }
+
+    }
+
+    private enum PersonProperty implements DefinedPersonProperty {
+
+        INFECTIOUSNESS_CURVE_INDEX(PropertyDefinition.builder()
+                .setType(Integer.class).setDefaultValue(0).build()),
+
+        INFECTION_TIME(PropertyDefinition.builder()
+                .setType(Double.class).setDefaultValue(0.0).build());
+
+        private final PropertyDefinition propertyDefinition;
+
+        PersonProperty(PropertyDefinition propertyDefinition) {
+            this.propertyDefinition = propertyDefinition;
+        }
+
+        @Override
+        public PropertyDefinition getPropertyDefinition() {
+            return propertyDefinition;
+        }
+
+    }
+
+}
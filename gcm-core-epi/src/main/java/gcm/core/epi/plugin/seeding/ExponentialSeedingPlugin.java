@@ -1,6 +1,7 @@
 package gcm.core.epi.plugin.seeding;
 
 import gcm.components.AbstractComponent;
+import gcm.core.epi.components.SimulationStopManager;
 import gcm.core.epi.identifiers.Compartment;
 import gcm.core.epi.identifiers.ContactGroupType;
 import gcm.core.epi.identifiers.GlobalProperty;
@@ -11,12 +12,15 @@ import gcm.core.epi.propertytypes.ImmutableInfectionSpecification;
 import gcm.core.epi.propertytypes.InfectionSpecification;
 import gcm.core.epi.trigger.FipsCode;
 import gcm.core.epi.trigger.FipsScope;
+import gcm.core.epi.util.collections.RegionalPersonRoster;
+import gcm.core.epi.util.distributions.ExponentialSampler;
+import gcm.core.epi.util.distributions.PoissonSampler;
 import gcm.core.epi.util.property.DefinedGlobalProperty;
 import gcm.scenario.*;
 import gcm.simulation.Environment;
 import gcm.simulation.Filter;
 import gcm.simulation.Plan;
-import org.apache.commons.math3.distribution.ExponentialDistribution;
+import org.apache.commons.math3.random.RandomGenerator;
 
 import java.util.*;
 
@@ -61,7 +65,14 @@ public class ExponentialSeedingPlugin implements Plugin {
                 .setPropertyValueMutability(false).build()),
 
         SEEDING_GROWTH_DOUBLING_TIME(PropertyDefinition.builder()
-                .setType(Double.class).setDefaultValue(Double.POSITIVE_INFINITY).setPropertyValueMutability(false).build());
+                .setType(Double.class).setDefaultValue(Double.POSITIVE_INFINITY).setPropertyValueMutability(false).build()),
+
+        /*
+         * Seed once a day, drawing the number of infections for each FIPS code from the seeding rate integrated over
+         * the day, rather than planning each seeded infection individually
+         */
+        DAILY_BATCHED_SEEDING(PropertyDefinition.builder()
+                .setType(Boolean.class).setDefaultValue(false).setPropertyValueMutability(false).build());
 
         private final PropertyDefinition propertyDefinition;
 
@@ -87,11 +98,15 @@ public class ExponentialSeedingPlugin implements Plugin {
 
     public static class SeedingManager extends AbstractComponent {
 
+        // Used only for daily batched seeding, with people in the roster partitioned by the index of their FIPS code
+        private RegionalPersonRoster susceptibleRoster;
+        private double[] initialSeedingRates;
+
         private void planNextSeeding(Environment environment, FipsCode fipsCode, double currentSeedingRate) {
             double seedingEndDay = environment.getGlobalPropertyValue(ExponentialSeedingGlobalProperty.SEEDING_END_DAY);
             double seedingGrowthDoublingTime = environment.getGlobalPropertyValue(ExponentialSeedingGlobalProperty.SEEDING_GROWTH_DOUBLING_TIME);
-            double nextSeedingDelayTime = new ExponentialDistribution(environment.getRandomGeneratorFromId(ExponentialSeedingRandomId.ID),
-                    1 / currentSeedingRate).sample();
+            double nextSeedingDelayTime = ExponentialSampler.sample(environment.getRandomGeneratorFromId(ExponentialSeedingRandomId.ID),
+                    1 / currentSeedingRate);
             double nextSeedingTime = environment.getTime() + nextSeedingDelayTime;
             if (nextSeedingTime < seedingEndDay) {
                 double nextSeedingRate = currentSeedingRate * Math.pow(2.0, nextSeedingDelayTime / seedingGrowthDoublingTime);
@@ -104,6 +119,12 @@ public class ExponentialSeedingPlugin implements Plugin {
             if (plan.getClass() == StartSeedingPlan.class) {
                 InfectionSpecification seedingRateSpecification = environment.getGlobalPropertyValue(ExponentialSeedingGlobalProperty.INITIAL_SEEDING_RATE_PER_DAY);
 
+                boolean dailyBatchedSeeding = environment.getGlobalPropertyValue(ExponentialSeedingGlobalProperty.DAILY_BATCHED_SEEDING);
+                if (dailyBatchedSeeding) {
+                    startDailyBatchedSeeding(environment, seedingRateSpecification);
+                    return;
+                }
+
                 // Create indexes if needed
                 if (seedingRateSpecification.scope() != FipsScope.TRACT) {
                     Map<FipsCode, Filter> fipsCodeFilters = getFipsCodeFilters(environment, seedingRateSpecification);
@@ -124,7 +145,10 @@ public class ExponentialSeedingPlugin implements Plugin {
 
                 // Remove filters if they had been needed
                 InfectionSpecification seedingRateSpecification = environment.getGlobalPropertyValue(ExponentialSeedingGlobalProperty.INITIAL_SEEDING_RATE_PER_DAY);
-                if (seedingRateSpecification.scope() != FipsScope.TRACT) {
+                boolean dailyBatchedSeeding = environment.getGlobalPropertyValue(ExponentialSeedingGlobalProperty.DAILY_BATCHED_SEEDING);
+                if (dailyBatchedSeeding) {
+                    susceptibleRoster = null;
+                } else if (seedingRateSpecification.scope() != FipsScope.TRACT) {
                     Map<FipsCode, Filter> fipsCodeFilters = getFipsCodeFilters(environment, seedingRateSpecification);
                     fipsCodeFilters.keySet()
                             .forEach(environment::removePopulationIndex);
@@ -138,17 +162,102 @@ public class ExponentialSeedingPlugin implements Plugin {
                 if (personId.isPresent()) {
                     Compartment compartment = environment.getPersonCompartment(personId.get());
                     if (compartment.equals(Compartment.SUSCEPTIBLE)) {
-                        environment.setPersonCompartment(personId.get(), Compartment.INFECTED);
-                        environment.setGlobalPropertyValue(GlobalProperty.MOST_RECENT_INFECTION_DATA,
-                                Optional.of(ImmutableInfectionData.builder()
-                                        .targetPersonId(personId)
-                                        .transmissionSetting(ContactGroupType.GLOBAL)
-                                        .transmissionOccurred(true)
-                                        .build()));
+                        seedInfection(environment, personId.get());
                     }
                 }
                 // Plan next seeding event
                 planNextSeeding(environment, seedingPlan.fipsCode, seedingPlan.seedingRatePerDay);
+            } else if (plan.getClass() == DailySeedingPlan.class) {
+                executeDailySeeding(environment);
+            }
+        }
+
+        private void seedInfection(Environment environment, PersonId personId) {
+            environment.setPersonCompartment(personId, Compartment.INFECTED);
+            environment.setGlobalPropertyValue(GlobalProperty.MOST_RECENT_INFECTION_DATA,
+                    Optional.of(ImmutableInfectionData.builder()
+                            .targetPersonId(personId)
+                            .transmissionSetting(ContactGroupType.GLOBAL)
+                            .transmissionOccurred(true)
+                            .build()));
+        }
+
+        private void startDailyBatchedSeeding(Environment environment, InfectionSpecification seedingRateSpecification) {
+            // Index the FIPS codes that will be seeded
+            Map<FipsCode, Double> seedingRatesPerDay = seedingRateSpecification.getInfectionsByFipsCode(environment);
+            Map<FipsCode, Integer> fipsCodeIndices = new HashMap<>();
+            List<Double> seedingRates = new ArrayList<>();
+            seedingRatesPerDay.forEach((fipsCode, seedingRate) -> {
+                if (seedingRate > 0) {
+                    fipsCodeIndices.put(fipsCode, seedingRates.size());
+                    seedingRates.add(seedingRate);
+                }
+            });
+            initialSeedingRates = seedingRates.stream().mapToDouble(Double::doubleValue).toArray();
+
+            // Build the roster of susceptible people in one pass, looking up the FIPS code of each region only once
+            FipsScope scope = seedingRateSpecification.scope();
+            Map<RegionId, Integer> regionFipsCodeIndices = new HashMap<>();
+            for (RegionId regionId : environment.getRegionIds()) {
+                Integer fipsCodeIndex = fipsCodeIndices.get(scope.getFipsCode(regionId));
+                if (fipsCodeIndex != null) {
+                    regionFipsCodeIndices.put(regionId, fipsCodeIndex);
+                }
+            }
+            susceptibleRoster = new RegionalPersonRoster(initialSeedingRates.length);
+            for (PersonId personId : environment.getPeopleInCompartment(Compartment.SUSCEPTIBLE)) {
+                Integer fipsCodeIndex = regionFipsCodeIndices.get(environment.getPersonRegion(personId));
+                if (fipsCodeIndex != null) {
+                    susceptibleRoster.add(personId.getValue(), fipsCodeIndex);
+                }
+            }
+
+            executeDailySeeding(environment);
+
+            // Schedule stop seeding plan
+            double seedingEndDay = environment.getGlobalPropertyValue(ExponentialSeedingGlobalProperty.SEEDING_END_DAY);
+            environment.addPlan(new StopSeedingPlan(), seedingEndDay);
+        }
+
+        private void executeDailySeeding(Environment environment) {
+            double seedingStartDay = environment.getGlobalPropertyValue(ExponentialSeedingGlobalProperty.SEEDING_START_DAY);
+            double seedingEndDay = environment.getGlobalPropertyValue(ExponentialSeedingGlobalProperty.SEEDING_END_DAY);
+            double seedingGrowthDoublingTime = environment.getGlobalPropertyValue(ExponentialSeedingGlobalProperty.SEEDING_GROWTH_DOUBLING_TIME);
+            double batchStartDay = environment.getTime();
+            double batchEndDay = Math.min(batchStartDay + 1, seedingEndDay);
+            if (batchEndDay <= batchStartDay) {
+                return;
+            }
+
+            // Integral of the exponentially growing seeding rate over the day, per unit initial rate
+            double rateIntegral;
+            if (Double.isInfinite(seedingGrowthDoublingTime)) {
+                rateIntegral = batchEndDay - batchStartDay;
+            } else {
+                rateIntegral = seedingGrowthDoublingTime / Math.log(2.0) *
+                        (Math.pow(2.0, (batchEndDay - seedingStartDay) / seedingGrowthDoublingTime) -
+                                Math.pow(2.0, (batchStartDay - seedingStartDay) / seedingGrowthDoublingTime));
+            }
+
+            RandomGenerator randomGenerator = environment.getRandomGeneratorFromId(ExponentialSeedingRandomId.ID);
+            for (int fipsCodeIndex = 0; fipsCodeIndex < initialSeedingRates.length; fipsCodeIndex++) {
+                int seedingCount = PoissonSampler.sample(randomGenerator,
+                        initialSeedingRates[fipsCodeIndex] * rateIntegral);
+                // People who are no longer susceptible are dropped from the roster as they are found
+                while (seedingCount > 0 && susceptibleRoster.size(fipsCodeIndex) > 0) {
+                    for (int personIdValue : susceptibleRoster.sample(fipsCodeIndex, seedingCount, randomGenerator)) {
+                        susceptibleRoster.remove(personIdValue);
+                        PersonId personId = new PersonId(personIdValue);
+                        if (environment.getPersonCompartment(personId) == Compartment.SUSCEPTIBLE) {
+                            seedInfection(environment, personId);
+                            seedingCount--;
+                        }
+                    }
+                }
+            }
+
+            if (batchEndDay < seedingEndDay) {
+                environment.addPlan(new DailySeedingPlan(), batchEndDay);
             }
         }
 
@@ -176,6 +285,10 @@ public class ExponentialSeedingPlugin implements Plugin {
             // Start seeding plan
             double seedingStartTime = environment.getGlobalPropertyValue(ExponentialSeedingGlobalProperty.SEEDING_START_DAY);
             environment.addPlan(new StartSeedingPlan(), seedingStartTime);
+
+            // Seeding may reintroduce infection until it ends
+            double seedingEndDay = environment.getGlobalPropertyValue(ExponentialSeedingGlobalProperty.SEEDING_END_DAY);
+            SimulationStopManager.deferExtinctionStop(environment, seedingEndDay);
         }
 
         private static class StartSeedingPlan implements Plan {
@@ -184,6 +297,9 @@ public class ExponentialSeedingPlugin implements Plugin {
         private static class StopSeedingPlan implements Plan {
         }
 
+        private static class DailySeedingPlan implements Plan {
+        }
+
         private static class SeedingPlan implements Plan {
             private final FipsCode fipsCode;
             private final double seedingRatePerDay;
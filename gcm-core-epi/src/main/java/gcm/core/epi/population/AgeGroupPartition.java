@@ -39,6 +39,10 @@ public abstract class AgeGroupPartition {
         return ageGroupList().get(index);
     }
 
+    public int getAgeGroupCount() {
+        return ageGroupList().size();
+    }
+
     public AgeGroup getAgeGroupFromAge(Integer age) {
         // TODO: This is slow, so consider converting to a method that sorts the age groups
         return ageGroupList().
@@ -0,0 +1,78 @@
+package gcm.core.epi.population;
+
+import gcm.core.epi.identifiers.ContactGroupType;
+import gcm.scenario.GroupPropertyId;
+import gcm.scenario.PersonPropertyId;
+import org.apache.commons.math3.random.RandomGenerator;
+
+/**
+ * Declares a property value to generate for every group of a type, or for every member of those groups, once the
+ * population has been loaded. Each value is generated from a random generator keyed by the replication, the name of
+ * the generator, and the person or group id, so that values can be generated in parallel without depending on the
+ * number of threads or the order of evaluation.
+ */
+public final class PopulationAttributeGenerator {
+
+    private final String name;
+    private final ContactGroupType groupType;
+    private final GroupPropertyId groupPropertyId;
+    private final PersonPropertyId personPropertyId;
+    private final ValueGenerator valueGenerator;
+
+    private PopulationAttributeGenerator(String name, ContactGroupType groupType, GroupPropertyId groupPropertyId,
+                                         PersonPropertyId personPropertyId, ValueGenerator valueGenerator) {
+        this.name = name;
+        this.groupType = groupType;
+        this.groupPropertyId = groupPropertyId;
+        this.personPropertyId = personPropertyId;
+        this.valueGenerator = valueGenerator;
+    }
+
+    public static PopulationAttributeGenerator forGroups(String name, ContactGroupType groupType,
+                                                         GroupPropertyId groupPropertyId, ValueGenerator valueGenerator) {
+        return new PopulationAttributeGenerator(name, groupType, groupPropertyId, null, valueGenerator);
+    }
+
+    public static PopulationAttributeGenerator forGroupMembers(String name, ContactGroupType groupType,
+                                                               PersonPropertyId personPropertyId, ValueGenerator valueGenerator) {
+        return new PopulationAttributeGenerator(name, groupType, null, personPropertyId, valueGenerator);
+    }
+
+    /*
+     * The name that, together with the replication, keys the random values of this generator
+     */
+    public String name() {
+        return name;
+    }
+
+    public ContactGroupType groupType() {
+        return groupType;
+    }
+
+    public boolean isGroupAttribute() {
+        return groupPropertyId != null;
+    }
+
+    public GroupPropertyId groupPropertyId() {
+        return groupPropertyId;
+    }
+
+    public PersonPropertyId personPropertyId() {
+        return personPropertyId;
+    }
+
+    public Object generate(RandomGenerator randomGenerator) {
+        return valueGenerator.generate(randomGenerator);
+    }
+
+    /*
+     * Generates a single value, and may be called concurrently from several threads with different random generators
+     */
+    @FunctionalInterface
+    public interface ValueGenerator {
+
+        Object generate(RandomGenerator randomGenerator);
+
+    }
+
+}
@@ -0,0 +1,75 @@
+package gcm.core.epi.population;
+
+import gcm.core.epi.identifiers.RandomId;
+import gcm.core.epi.util.distributions.CounterBasedRandomGenerator;
+import gcm.scenario.GroupId;
+import gcm.scenario.PersonId;
+import gcm.simulation.Environment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Evaluates population attribute generators once the population has been loaded. Values are generated in parallel
+ * over chunks of people or groups using counter-based random streams, and are then set in the simulation in order
+ * on the simulation thread.
+ */
+public class PopulationAttributeInitializer {
+
+    private static final int CHUNK_SIZE = 1 << 14;
+
+    private PopulationAttributeInitializer() {
+
+    }
+
+    public static void initialize(Environment environment, List<PopulationAttributeGenerator> generators) {
+        if (generators.isEmpty()) {
+            return;
+        }
+        // A single draw keys all attribute streams for this replication
+        long seed = environment.getRandomGeneratorFromId(RandomId.POPULATION_ATTRIBUTES).nextLong();
+        for (PopulationAttributeGenerator generator : generators) {
+            List<GroupId> groupIds = environment.getGroupsForGroupType(generator.groupType());
+            if (generator.isGroupAttribute()) {
+                int[] keys = new int[groupIds.size()];
+                for (int i = 0; i < keys.length; i++) {
+                    keys[i] = groupIds.get(i).getValue();
+                }
+                Object[] values = generateValues(seed, generator, keys);
+                for (int i = 0; i < keys.length; i++) {
+                    environment.setGroupPropertyValue(groupIds.get(i), generator.groupPropertyId(), values[i]);
+                }
+            } else {
+                List<PersonId> memberIds = new ArrayList<>();
+                for (GroupId groupId : groupIds) {
+                    memberIds.addAll(environment.getPeopleForGroup(groupId));
+                }
+                int[] keys = new int[memberIds.size()];
+                for (int i = 0; i < keys.length; i++) {
+                    keys[i] = memberIds.get(i).getValue();
+                }
+                Object[] values = generateValues(seed, generator, keys);
+                for (int i = 0; i < keys.length; i++) {
+                    environment.setPersonPropertyValue(memberIds.get(i), generator.personPropertyId(), values[i]);
+                }
+            }
+        }
+    }
+
+    private static Object[] generateValues(long seed, PopulationAttributeGenerator generator, int[] keys) {
+        Object[] values = new Object[keys.length];
+        long stream = generator.name().hashCode();
+        int chunkCount = (keys.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        IntStream.range(0, chunkCount).parallel().forEach(chunk -> {
+            CounterBasedRandomGenerator randomGenerator = new CounterBasedRandomGenerator(seed, stream);
+            int end = Math.min(keys.length, (chunk + 1) * CHUNK_SIZE);
+            for (int i = chunk * CHUNK_SIZE; i < end; i++) {
+                randomGenerator.setCounter(keys[i]);
+                values[i] = generator.generate(randomGenerator);
+            }
+        });
+        return values;
+    }
+
+}
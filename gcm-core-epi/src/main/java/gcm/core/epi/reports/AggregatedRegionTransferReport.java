@@ -79,7 +79,7 @@ public final class AggregatedRegionTransferReport extends RegionAggregationPerio
                         reportItemBuilder.setScenarioId(observableEnvironment.getScenarioId());
                         reportItemBuilder.setReplicationId(observableEnvironment.getReplicationId());
 
-                        buildTimeFields(reportItemBuilder);
+                        buildPeriodFields(reportItemBuilder);
                         reportItemBuilder.addValue(compartmentId.toString());
                         reportItemBuilder.addValue(sourceRegionId);
                         reportItemBuilder.addValue(destinationRegionId);
@@ -24,6 +24,8 @@ import java.util.Set;
  * <p>
  * Fields
  * <p>
+ * Scope -- the region aggregation level, only present when several levels are reported
+ * <p>
  * Region -- the region identifier via the region aggregation level
  * <p>
  * Compartment -- the compartment identifier
@@ -51,7 +53,7 @@ public final class CompartmentRegionalPopulationReport extends RegionAggregation
         if (reportHeader == null) {
             ReportHeaderBuilder reportHeaderBuilder = new ReportHeaderBuilder();
             addTimeFieldHeaders(reportHeaderBuilder);
-            reportHeaderBuilder.add("Region");
+            addRegionFieldHeaders(reportHeaderBuilder);
             reportHeaderBuilder.add("Compartment");
             reportHeaderBuilder.add("PersonCount");
             reportHeader = reportHeaderBuilder.build();
@@ -72,30 +74,48 @@ public final class CompartmentRegionalPopulationReport extends RegionAggregation
     @Override
     protected void flush(ObservableEnvironment observableEnvironment) {
         final ReportItemBuilder reportItemBuilder = new ReportItemBuilder();
-        /*
-         * Report the population count for all region/compartment pairs that are
-         * not empty
-         */
-        for (final String regionId : regionMap.keySet()) {
-            final Map<CompartmentId, Counter> compartmentMap = regionMap.get(regionId);
-            for (final CompartmentId compartmentId : compartmentMap.keySet()) {
-                final Counter counter = compartmentMap.get(compartmentId);
-                final int personCount = counter.count;
-                if (personCount > 0) {
-                    reportItemBuilder.setReportHeader(getReportHeader());
-                    reportItemBuilder.setReportType(getClass());
-                    reportItemBuilder.setScenarioId(observableEnvironment.getScenarioId());
-                    reportItemBuilder.setReplicationId(observableEnvironment.getReplicationId());
-                    buildTimeFields(reportItemBuilder);
-                    reportItemBuilder.addValue(regionId);
-                    reportItemBuilder.addValue(compartmentId.toString());
-                    reportItemBuilder.addValue(personCount);
-                    observableEnvironment.releaseOutputItem(reportItemBuilder.build());
+        for (int scopeIndex = 0; scopeIndex < getFipsScopes().size(); scopeIndex++) {
+            /*
+             * Roll up the population counts from the finest scope to this scope
+             */
+            final Map<String, Map<CompartmentId, Counter>> scopeRegionMap = new LinkedHashMap<>();
+            for (final String regionId : regionMap.keySet()) {
+                final Map<CompartmentId, Counter> scopeCompartmentMap = scopeRegionMap.computeIfAbsent(
+                        getFipsString(scopeIndex, regionId), key -> new LinkedHashMap<>());
+                for (final Map.Entry<CompartmentId, Counter> entry : regionMap.get(regionId).entrySet()) {
+                    scopeCompartmentMap.computeIfAbsent(entry.getKey(), key -> new Counter()).count += entry.getValue().count;
+                }
+            }
+            /*
+             * Report the population count for all region/compartment pairs that are
+             * not empty
+             */
+            for (final String regionId : scopeRegionMap.keySet()) {
+                final Map<CompartmentId, Counter> compartmentMap = scopeRegionMap.get(regionId);
+                for (final CompartmentId compartmentId : compartmentMap.keySet()) {
+                    final Counter counter = compartmentMap.get(compartmentId);
+                    final int personCount = counter.count;
+                    if (personCount > 0) {
+                        reportItemBuilder.setReportHeader(getReportHeader());
+                        reportItemBuilder.setReportType(getClass());
+                        reportItemBuilder.setScenarioId(observableEnvironment.getScenarioId());
+                        reportItemBuilder.setReplicationId(observableEnvironment.getReplicationId());
+                        buildPeriodFields(reportItemBuilder);
+                        buildRegionFields(reportItemBuilder, scopeIndex, regionId);
+                        reportItemBuilder.addValue(compartmentId.toString());
+                        reportItemBuilder.addValue(personCount);
+                        observableEnvironment.releaseOutputItem(reportItemBuilder.build());
+                    }
                 }
             }
         }
     }
 
+    @Override
+    protected boolean supportsMultipleFipsScopes() {
+        return true;
+    }
+
     @Override
     public Set<StateChange> getListenedStateChanges() {
         final Set<StateChange> result = new LinkedHashSet<>();
@@ -73,7 +73,7 @@ public final class CompartmentRegionalTransferReport extends RegionAggregationPe
                         reportItemBuilder.setScenarioId(observableEnvironment.getScenarioId());
                         reportItemBuilder.setReplicationId(observableEnvironment.getReplicationId());
 
-                        buildTimeFields(reportItemBuilder);
+                        buildPeriodFields(reportItemBuilder);
                         reportItemBuilder.addValue(regionId);
                         reportItemBuilder.addValue(sourceCompartmentId.toString());
                         reportItemBuilder.addValue(destinationCompartmentId.toString());
@@ -1,6 +1,7 @@
 package gcm.core.epi.reports;
 
 import gcm.core.epi.plugin.Plugin;
+import gcm.core.epi.trigger.FipsScope;
 import gcm.core.epi.util.loading.CoreEpiBootstrapUtil;
 import gcm.core.epi.util.loading.LoadableReport;
 import gcm.core.epi.util.loading.ReportLoader;
@@ -9,7 +10,9 @@ import gcm.experiment.ExperimentExecutor;
 import gcm.scenario.PersonPropertyId;
 
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 public enum CustomReport implements LoadableReport {
 
@@ -24,7 +27,7 @@ public enum CustomReport implements LoadableReport {
     }),
 
     INCIDENCE_REPORT((experimentExecutor, path, reportWrapperItem, pluginList) -> {
-        experimentExecutor.addCustomReport(path, IncidenceReport.class, reportWrapperItem.period(), reportWrapperItem.regionAggregationLevel());
+        experimentExecutor.addCustomReport(path, IncidenceReport.class, getMultipleScopeReportData(reportWrapperItem));
     }),
 
     INCIDENCE_REPORT_BY_AGE((experimentExecutor, path, reportWrapperItem, pluginList) -> {
@@ -40,7 +43,7 @@ public enum CustomReport implements LoadableReport {
     }),
 
     COMPARTMENT_REGIONAL_POPULATION_REPORT((experimentExecutor, path, reportWrapperItem, pluginList) -> {
-        experimentExecutor.addCustomReport(path, CompartmentRegionalPopulationReport.class, reportWrapperItem.period(), reportWrapperItem.regionAggregationLevel());
+        experimentExecutor.addCustomReport(path, CompartmentRegionalPopulationReport.class, getMultipleScopeReportData(reportWrapperItem));
     }),
 
     COMPARTMENT_REGIONAL_TRANSFER_REPORT((experimentExecutor, path, reportWrapperItem, pluginList) -> {
@@ -57,6 +60,18 @@ public enum CustomReport implements LoadableReport {
 
     AGGREGATED_REGION_TRANSFER_REPORT((experimentExecutor, path, reportWrapperItem, pluginList) -> {
         experimentExecutor.addCustomReport(path, AggregatedRegionTransferReport.class, reportWrapperItem.period(), reportWrapperItem.regionAggregationLevel());
+    }),
+
+    ENSEMBLE_SUMMARY_REPORT((experimentExecutor, path, reportWrapperItem, pluginList) -> {
+        // Summaries are held in memory for every region, so tracts are too fine
+        if (reportWrapperItem.regionAggregationLevel() == FipsScope.TRACT) {
+            throw new IllegalArgumentException("ENSEMBLE_SUMMARY_REPORT requires a regionAggregationLevel coarser than TRACT");
+        }
+        Set<EnsembleSummaryReport.Metric> metrics = CoreEpiBootstrapUtil.getSetOfEnumsFromStringSet(
+                reportWrapperItem.items(), EnsembleSummaryReport.Metric.class);
+        experimentExecutor.addCustomReport(path, EnsembleSummaryReport.class, reportWrapperItem.period(), reportWrapperItem.regionAggregationLevel(),
+                new EnsembleSummaryReport.Settings(path, reportWrapperItem.replications(),
+                        reportWrapperItem.includeReplicationRows(), metrics));
     });
 
     private final ReportLoader reportLoader;
@@ -65,6 +80,20 @@ public enum CustomReport implements LoadableReport {
         this.reportLoader = reportLoader;
     }
 
+    /*
+     * Returns the initial data for a report that can aggregate regions to several scopes
+     */
+    private static Object[] getMultipleScopeReportData(ReportWrapperItem reportWrapperItem) {
+        List<Object> initialData = new ArrayList<>();
+        initialData.add(reportWrapperItem.period());
+        if (reportWrapperItem.regionAggregationLevels().isEmpty()) {
+            initialData.add(reportWrapperItem.regionAggregationLevel());
+        } else {
+            initialData.addAll(reportWrapperItem.regionAggregationLevels());
+        }
+        return initialData.toArray();
+    }
+
     @Override
     public void load(ExperimentExecutor experimentExecutor, Path path, ReportWrapperItem reportWrapperItem, List<Plugin> pluginList) {
         this.reportLoader.load(experimentExecutor, path, reportWrapperItem, pluginList);
@@ -0,0 +1,707 @@
+package gcm.core.epi.reports;
+
+import gcm.core.epi.identifiers.Compartment;
+import gcm.core.epi.identifiers.GlobalProperty;
+import gcm.core.epi.identifiers.PersonProperty;
+import gcm.core.epi.identifiers.Resource;
+import gcm.core.epi.trigger.FipsScope;
+import gcm.core.epi.util.statistics.ReplicationConvergenceTracker;
+import gcm.core.epi.util.statistics.SummaryStatistics;
+import gcm.output.reports.AbstractReport;
+import gcm.output.reports.PersonInfo;
+import gcm.output.reports.ReportHeader;
+import gcm.output.reports.ReportItem;
+import gcm.output.reports.ReportPeriod;
+import gcm.output.reports.StateChange;
+import gcm.scenario.*;
+import gcm.simulation.ObservableEnvironment;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A report that summarizes incidence and compartment population metrics over the replications of each scenario
+ * instead of reporting every replication. Values for each (period, region, metric) are accumulated in memory as
+ * replications run, and the summary rows for a scenario are released when its last replication closes (and are
+ * attributed to that replication). Per-replication rows may optionally be included, marked by a Replications
+ * value of 1.
+ * <p>
+ * Fields
+ * <p>
+ * Region -- the region identifier via the region aggregation level
+ * <p>
+ * Metric -- the metric being summarized
+ * <p>
+ * Replications -- the number of replications summarized: all replications for incidence metrics (where a
+ * period without events counts as zero) and the replications that reached the period for population metrics.
+ * <p>
+ * Under adaptive replication, a scenario summarizes exactly the replications that its
+ * ReplicationConvergenceTracker includes, and is released once all of them are summarized. The periods recorded
+ * by a replication are held until the tracker decides whether it is included, which bounds the extra memory by the
+ * replications in progress. Per-replication rows are likewise only written for included replications, once this is
+ * decided.
+ * <p>
+ * Mean, StandardDeviation -- the sample mean and standard deviation over replications
+ * <p>
+ * Min, Q05, Q25, Median, Q75, Q95, Max -- quantiles over replications, estimated to within 1% relative accuracy
+ * <p>
+ * A scenario in progress holds a summary for every (period, region, metric) cell, each taking a few hundred bytes
+ * plus a quantile bucket for each distinct value, so memory grows with the number of periods, regions and metrics
+ * times the number of scenarios running at once. For this reason TRACT aggregation is rejected when the report is
+ * loaded. Scenarios that do not reach their replication count, such as when replications fail or are skipped when
+ * resuming from a progress log, are written by writeRemainingSummaries once the experiment ends, summarizing the
+ * replications that closed.
+ */
+public final class EnsembleSummaryReport extends AbstractReport {
+
+    /*
+     * Summaries shared by all replications of a scenario, keyed by report and scenario
+     */
+    private static final Map<String, ScenarioSummary> scenarioSummaries = new ConcurrentHashMap<>();
+
+    private final Map<String, Integer> fipsIndexMap = new LinkedHashMap<>();
+    private ReportPeriod reportPeriod = ReportPeriod.DAILY;
+    private FipsScope fipsScope = FipsScope.TRACT;
+    private Settings settings;
+    private Metric[] metrics;
+    /*
+     * The index of each metric in metrics, or -1 if it is not reported
+     */
+    private final int[] metricIndices = new int[Metric.values().length];
+    private boolean hasPopulationMetrics;
+    private ScenarioSummary scenarioSummary;
+    private ReplicationConvergenceTracker replicationConvergenceTracker;
+    // Whether this replication is known to be excluded under adaptive replication, in which case it is not recorded
+    private boolean excluded;
+    /*
+     * The periods recorded by this replication under adaptive replication, held until its inclusion is decided
+     */
+    private List<RecordedPeriod> heldPeriods;
+    private ReportHeader reportHeader;
+
+    /*
+     * Incidence counts for the current period and population counts, indexed by fipsIndex * metrics.length + metricIndex
+     */
+    private int[] incidenceCounts;
+    private int[] populationCounts;
+    private long currentPeriod;
+
+    private ReportHeader getReportHeader() {
+        if (reportHeader == null) {
+            ReportHeader.ReportHeaderBuilder reportHeaderBuilder = new ReportHeader.ReportHeaderBuilder();
+            for (String field : getReportFields(reportPeriod)) {
+                reportHeaderBuilder.add(field);
+            }
+            reportHeader = reportHeaderBuilder.build();
+        }
+        return reportHeader;
+    }
+
+    private static List<String> getReportFields(ReportPeriod reportPeriod) {
+        List<String> fields = new ArrayList<>();
+        switch (reportPeriod) {
+            case HOURLY:
+                fields.add("Day");
+                fields.add("Hour");
+                break;
+            case DAILY:
+                fields.add("Day");
+                break;
+            default:
+                break;
+        }
+        fields.add("Region");
+        fields.add("Metric");
+        fields.addAll(Arrays.asList(SummaryStatistics.getReportedFields()));
+        return fields;
+    }
+
+    private long getPeriod(double time) {
+        switch (reportPeriod) {
+            case HOURLY:
+                return (long) Math.floor(time * 24);
+            case DAILY:
+                return (long) Math.floor(time);
+            default:
+                return 0;
+        }
+    }
+
+    private int getCellIndex(RegionId regionId, Metric metric) {
+        return fipsIndexMap.get(fipsScope.getFipsCode(regionId).code()) * metrics.length + metricIndices[metric.ordinal()];
+    }
+
+    private void incrementIncidence(ObservableEnvironment observableEnvironment, PersonId personId, Metric metric) {
+        if (metricIndices[metric.ordinal()] >= 0) {
+            advancePeriod(observableEnvironment);
+            incidenceCounts[getCellIndex(observableEnvironment.getPersonRegion(personId), metric)]++;
+        }
+    }
+
+    private void changePopulation(RegionId regionId, CompartmentId compartmentId, int change) {
+        Metric metric = Metric.getPopulationMetric(compartmentId);
+        if (metric != null && metricIndices[metric.ordinal()] >= 0) {
+            populationCounts[getCellIndex(regionId, metric)] += change;
+        }
+    }
+
+    /*
+     * Records the values of all periods before the current time
+     */
+    private void advancePeriod(ObservableEnvironment observableEnvironment) {
+        long period = getPeriod(observableEnvironment.getTime());
+        if (period > currentPeriod) {
+            recordPeriod(observableEnvironment, currentPeriod, true);
+            Arrays.fill(incidenceCounts, 0);
+            // Populations are unchanged through any periods without events
+            if (hasPopulationMetrics) {
+                for (long skippedPeriod = currentPeriod + 1; skippedPeriod < period; skippedPeriod++) {
+                    recordPeriod(observableEnvironment, skippedPeriod, false);
+                }
+            }
+            currentPeriod = period;
+        }
+    }
+
+    private void recordPeriod(ObservableEnvironment observableEnvironment, long period, boolean includeIncidence) {
+        int cellCount = fipsIndexMap.size() * metrics.length;
+        int[] cells = new int[cellCount];
+        int[] values = new int[cellCount];
+        int recordedCount = 0;
+        for (int cell = 0; cell < cellCount; cell++) {
+            Metric metric = metrics[cell % metrics.length];
+            if (metric.isPopulation) {
+                cells[recordedCount] = cell;
+                values[recordedCount] = populationCounts[cell];
+                recordedCount++;
+            } else if (includeIncidence && incidenceCounts[cell] > 0) {
+                // Periods without incidence are filled in as zeros when the scenario is summarized
+                cells[recordedCount] = cell;
+                values[recordedCount] = incidenceCounts[cell];
+                recordedCount++;
+            }
+        }
+        RecordedPeriod recordedPeriod = new RecordedPeriod(period, Arrays.copyOf(cells, recordedCount),
+                Arrays.copyOf(values, recordedCount));
+        if (heldPeriods != null) {
+            // Replication rows are written with the held periods if the replication is included
+            heldPeriods.add(recordedPeriod);
+        } else {
+            synchronized (scenarioSummary) {
+                scenarioSummary.add(recordedPeriod);
+            }
+            releaseReplicationRows(observableEnvironment, observableEnvironment.getReplicationId(), scenarioSummary,
+                    recordedPeriod);
+        }
+    }
+
+    private void releaseReplicationRows(ObservableEnvironment observableEnvironment, ReplicationId replicationId,
+                                        ScenarioSummary scenarioSummary, RecordedPeriod recordedPeriod) {
+        if (settings.includeReplicationRows) {
+            for (int i = 0; i < recordedPeriod.cells.length; i++) {
+                if (recordedPeriod.values[i] != 0) {
+                    SummaryStatistics summaryStatistics = new SummaryStatistics();
+                    summaryStatistics.add(recordedPeriod.values[i]);
+                    releaseRow(observableEnvironment, replicationId, scenarioSummary, recordedPeriod.period,
+                            recordedPeriod.cells[i], summaryStatistics);
+                }
+            }
+        }
+    }
+
+    private void releaseRow(ObservableEnvironment observableEnvironment, ReplicationId replicationId,
+                            ScenarioSummary scenarioSummary, long period, int cell,
+                            SummaryStatistics summaryStatistics) {
+        ReportItem.ReportItemBuilder reportItemBuilder = new ReportItem.ReportItemBuilder();
+        reportItemBuilder.setReportHeader(getReportHeader());
+        reportItemBuilder.setReportType(getClass());
+        reportItemBuilder.setScenarioId(observableEnvironment.getScenarioId());
+        reportItemBuilder.setReplicationId(replicationId);
+        for (Object value : scenarioSummary.getRowValues(period, cell, summaryStatistics)) {
+            reportItemBuilder.addValue(value);
+        }
+        observableEnvironment.releaseOutputItem(reportItemBuilder.build());
+    }
+
+    @Override
+    public void handlePersonPropertyValueAssignment(ObservableEnvironment observableEnvironment, PersonId personId, PersonPropertyId personPropertyId, Object oldPersonPropertyValue) {
+        if (personPropertyId == PersonProperty.IS_SYMPTOMATIC) {
+            boolean isSymptomatic = observableEnvironment.getPersonPropertyValue(personId, PersonProperty.IS_SYMPTOMATIC);
+            if (isSymptomatic & !(boolean) oldPersonPropertyValue) {
+                incrementIncidence(observableEnvironment, personId, Metric.NEW_CASES);
+            }
+        } else if (personPropertyId == PersonProperty.DID_NOT_RECEIVE_HOSPITAL_BED) {
+            incrementIncidence(observableEnvironment, personId, Metric.NEW_HOSPITALIZATIONS_WITHOUT_BEDS);
+        } else if (personPropertyId == PersonProperty.IS_DEAD) {
+            incrementIncidence(observableEnvironment, personId, Metric.NEW_DEATHS);
+        }
+    }
+
+    @Override
+    public void handleCompartmentAssignment(ObservableEnvironment observableEnvironment, PersonId personId, CompartmentId sourceCompartmentId) {
+        CompartmentId targetCompartmentId = observableEnvironment.getPersonCompartment(personId);
+        if (sourceCompartmentId == Compartment.SUSCEPTIBLE && targetCompartmentId == Compartment.INFECTED) {
+            incrementIncidence(observableEnvironment, personId, Metric.NEW_INFECTIONS);
+        }
+        if (hasPopulationMetrics) {
+            advancePeriod(observableEnvironment);
+            RegionId regionId = observableEnvironment.getPersonRegion(personId);
+            changePopulation(regionId, sourceCompartmentId, -1);
+            changePopulation(regionId, targetCompartmentId, 1);
+        }
+    }
+
+    @Override
+    public void handleRegionResourceTransferToPerson(ObservableEnvironment observableEnvironment, PersonId personId, ResourceId resourceId, long amount) {
+        if (resourceId == Resource.HOSPITAL_BED) {
+            incrementIncidence(observableEnvironment, personId, Metric.NEW_HOSPITALIZATIONS_WITH_BEDS);
+        }
+    }
+
+    @Override
+    public void handleRegionAssignment(ObservableEnvironment observableEnvironment, PersonId personId, RegionId sourceRegionId) {
+        if (hasPopulationMetrics) {
+            advancePeriod(observableEnvironment);
+            CompartmentId compartmentId = observableEnvironment.getPersonCompartment(personId);
+            changePopulation(sourceRegionId, compartmentId, -1);
+            changePopulation(observableEnvironment.getPersonRegion(personId), compartmentId, 1);
+        }
+    }
+
+    @Override
+    public void handlePersonAddition(ObservableEnvironment observableEnvironment, PersonId personId) {
+        if (hasPopulationMetrics) {
+            advancePeriod(observableEnvironment);
+            changePopulation(observableEnvironment.getPersonRegion(personId),
+                    observableEnvironment.getPersonCompartment(personId), 1);
+        }
+    }
+
+    @Override
+    public void handlePersonRemoval(ObservableEnvironment observableEnvironment, PersonInfo personInfo) {
+        if (hasPopulationMetrics) {
+            advancePeriod(observableEnvironment);
+            changePopulation(personInfo.getRegionId(), personInfo.getCompartmentId(), -1);
+        }
+    }
+
+    @Override
+    public Set<StateChange> getListenedStateChanges() {
+        final Set<StateChange> result = new LinkedHashSet<>();
+        result.add(StateChange.PERSON_PROPERTY_VALUE_ASSIGNMENT);
+        result.add(StateChange.COMPARTMENT_ASSIGNMENT);
+        result.add(StateChange.REGION_RESOURCE_TRANSFER_TO_PERSON);
+        result.add(StateChange.PERSON_ADDITION);
+        result.add(StateChange.PERSON_REMOVAL);
+        result.add(StateChange.REGION_ASSIGNMENT);
+        return result;
+    }
+
+    @Override
+    public void init(ObservableEnvironment observableEnvironment, Set<Object> initialData) {
+        super.init(observableEnvironment, initialData);
+
+        for (Object initialDatum : initialData) {
+            if (initialDatum instanceof ReportPeriod) {
+                reportPeriod = (ReportPeriod) initialDatum;
+            } else if (initialDatum instanceof FipsScope) {
+                fipsScope = (FipsScope) initialDatum;
+            } else if (initialDatum instanceof Settings) {
+                settings = (Settings) initialDatum;
+            }
+        }
+        if (settings == null) {
+            throw new RuntimeException("EnsembleSummaryReport requires settings");
+        }
+
+        replicationConvergenceTracker = observableEnvironment.getGlobalPropertyValue(
+                GlobalProperty.REPLICATION_CONVERGENCE_TRACKER);
+        ScenarioId scenarioId = observableEnvironment.getScenarioId();
+        if (replicationConvergenceTracker.isExcluded(scenarioId, observableEnvironment.getReplicationId().getValue())) {
+            // The replication will be skipped, and its scenario may already have been released
+            excluded = true;
+            return;
+        }
+        if (replicationConvergenceTracker.isEnabled()) {
+            heldPeriods = new ArrayList<>();
+        }
+
+        metrics = settings.metrics.toArray(new Metric[0]);
+        Arrays.fill(metricIndices, -1);
+        for (int i = 0; i < metrics.length; i++) {
+            metricIndices[metrics[i].ordinal()] = i;
+            hasPopulationMetrics |= metrics[i].isPopulation;
+        }
+
+        for (RegionId regionId : observableEnvironment.getRegionIds()) {
+            fipsIndexMap.putIfAbsent(fipsScope.getFipsCode(regionId).code(), fipsIndexMap.size());
+        }
+        incidenceCounts = new int[fipsIndexMap.size() * metrics.length];
+        populationCounts = new int[fipsIndexMap.size() * metrics.length];
+
+        scenarioSummary = scenarioSummaries.computeIfAbsent(settings.reportPath + "|" + scenarioId, key -> {
+            ScenarioSummary newScenarioSummary = new ScenarioSummary(key, settings.reportPath, scenarioId,
+                    reportPeriod, metrics, new ArrayList<>(fipsIndexMap.keySet()));
+            if (replicationConvergenceTracker.isEnabled()) {
+                replicationConvergenceTracker.addListener(scenarioId, new SummaryListener(newScenarioSummary));
+            }
+            return newScenarioSummary;
+        });
+
+        currentPeriod = getPeriod(observableEnvironment.getTime());
+        if (hasPopulationMetrics) {
+            for (PersonId personId : observableEnvironment.getPeople()) {
+                changePopulation(observableEnvironment.getPersonRegion(personId),
+                        observableEnvironment.getPersonCompartment(personId), 1);
+            }
+        }
+    }
+
+    @Override
+    public void close(ObservableEnvironment observableEnvironment) {
+        if (excluded) {
+            return;
+        }
+        closeReplication(observableEnvironment);
+
+        if (heldPeriods != null) {
+            // The tracker tells the summary listener whether to summarize the held periods
+            int replication = observableEnvironment.getReplicationId().getValue();
+            synchronized (scenarioSummary) {
+                scenarioSummary.heldReplications.put(replication,
+                        new HeldReplication(observableEnvironment.getReplicationId(), heldPeriods));
+            }
+            replicationConvergenceTracker.awaitInclusion(observableEnvironment, observableEnvironment.getScenarioId(),
+                    replication);
+            return;
+        }
+
+        boolean scenarioComplete;
+        synchronized (scenarioSummary) {
+            scenarioSummary.summarizedReplications++;
+            scenarioSummary.lastReplication = Math.max(scenarioSummary.lastReplication,
+                    observableEnvironment.getReplicationId().getValue());
+            scenarioComplete = scenarioSummary.summarizedReplications == settings.replications;
+        }
+        if (scenarioComplete) {
+            releaseScenarioSummary(observableEnvironment, scenarioSummary);
+        }
+    }
+
+    private void closeReplication(ObservableEnvironment observableEnvironment) {
+        advancePeriod(observableEnvironment);
+        recordPeriod(observableEnvironment, currentPeriod, true);
+
+        // A simulation stopped on extinction would have had no further events, so populations carry forward
+        double extinctionTime = observableEnvironment.getGlobalPropertyValue(GlobalProperty.EXTINCTION_TIME);
+        double maxSimulationLength = observableEnvironment.getGlobalPropertyValue(GlobalProperty.MAX_SIMULATION_LENGTH);
+        if (hasPopulationMetrics && extinctionTime < Double.POSITIVE_INFINITY &&
+                maxSimulationLength < Double.POSITIVE_INFINITY) {
+            long finalPeriod = getPeriod(maxSimulationLength);
+            for (long period = currentPeriod + 1; period <= finalPeriod; period++) {
+                recordPeriod(observableEnvironment, period, false);
+            }
+        }
+    }
+
+    private void releaseScenarioSummary(ObservableEnvironment observableEnvironment, ScenarioSummary scenarioSummary) {
+        scenarioSummaries.remove(scenarioSummary.summaryKey);
+        scenarioSummary.addMissingIncidence();
+        for (Map.Entry<Long, SummaryStatistics[]> entry : scenarioSummary.periodCellSummaries.entrySet()) {
+            SummaryStatistics[] cellSummaries = entry.getValue();
+            for (int cell = 0; cell < cellSummaries.length; cell++) {
+                if (cellSummaries[cell] != null) {
+                    releaseRow(observableEnvironment, observableEnvironment.getReplicationId(), scenarioSummary,
+                            entry.getKey(), cell, cellSummaries[cell]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends the summaries of scenarios that never reached their replication count to their report files, and
+     * must be called once the experiment has finished. Rows are attributed to the last replication summarized, and
+     * any experiment columns of the report file are left empty as the values are not known here.
+     */
+    public static void writeRemainingSummaries() throws IOException {
+        Map<Path, List<ScenarioSummary>> remainingSummaries = new TreeMap<>();
+        for (ScenarioSummary scenarioSummary : scenarioSummaries.values()) {
+            if (scenarioSummary.summarizedReplications > 0) {
+                remainingSummaries.computeIfAbsent(scenarioSummary.reportPath, key -> new ArrayList<>())
+                        .add(scenarioSummary);
+            }
+        }
+        scenarioSummaries.clear();
+
+        for (Map.Entry<Path, List<ScenarioSummary>> entry : remainingSummaries.entrySet()) {
+            Path reportPath = entry.getKey();
+            List<ScenarioSummary> summaries = entry.getValue();
+            summaries.sort(Comparator.comparingInt(scenarioSummary -> scenarioSummary.scenarioId.getValue()));
+            List<String> reportFields = getReportFields(summaries.get(0).reportPeriod);
+
+            String header = null;
+            if (Files.exists(reportPath)) {
+                try (BufferedReader reader = Files.newBufferedReader(reportPath, StandardCharsets.UTF_8)) {
+                    header = reader.readLine();
+                }
+            }
+            try (BufferedWriter writer = Files.newBufferedWriter(reportPath, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                int experimentColumnCount = 0;
+                if (header == null || header.isEmpty()) {
+                    writer.write("Scenario\tReplication\t" + String.join("\t", reportFields));
+                    writer.newLine();
+                } else {
+                    experimentColumnCount = header.split("\t", -1).length - 2 - reportFields.size();
+                }
+                for (ScenarioSummary scenarioSummary : summaries) {
+                    scenarioSummary.addMissingIncidence();
+                    for (Map.Entry<Long, SummaryStatistics[]> periodEntry : scenarioSummary.periodCellSummaries.entrySet()) {
+                        SummaryStatistics[] cellSummaries = periodEntry.getValue();
+                        for (int cell = 0; cell < cellSummaries.length; cell++) {
+                            if (cellSummaries[cell] == null) {
+                                continue;
+                            }
+                            StringBuilder line = new StringBuilder();
+                            line.append(scenarioSummary.scenarioId.getValue()).append('\t')
+                                    .append(scenarioSummary.lastReplication);
+                            for (int i = 0; i < experimentColumnCount; i++) {
+                                line.append('\t');
+                            }
+                            for (Object value : scenarioSummary.getRowValues(periodEntry.getKey(), cell, cellSummaries[cell])) {
+                                line.append('\t').append(value);
+                            }
+                            writer.write(line.toString());
+                            writer.newLine();
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+     * The metrics that can be summarized
+     */
+    public enum Metric {
+        NEW_INFECTIONS("NewInfections", false),
+        NEW_CASES("NewCases", false),
+        NEW_HOSPITALIZATIONS_WITH_BEDS("NewHospitalizationsWithBeds", false),
+        NEW_HOSPITALIZATIONS_WITHOUT_BEDS("NewHospitalizationsWithoutBeds", false),
+        NEW_DEATHS("NewDeaths", false),
+        SUSCEPTIBLE("Susceptible", true),
+        INFECTED("Infected", true),
+        RECOVERED("Recovered", true);
+
+        private final String label;
+        private final boolean isPopulation;
+
+        Metric(String label, boolean isPopulation) {
+            this.label = label;
+            this.isPopulation = isPopulation;
+        }
+
+        private static Metric getPopulationMetric(CompartmentId compartmentId) {
+            if (compartmentId == Compartment.SUSCEPTIBLE) {
+                return SUSCEPTIBLE;
+            } else if (compartmentId == Compartment.INFECTED) {
+                return INFECTED;
+            } else if (compartmentId == Compartment.RECOVERED) {
+                return RECOVERED;
+            }
+            return null;
+        }
+    }
+
+    /*
+     * Report settings passed as initial data
+     */
+    public static final class Settings {
+        private final Path reportPath;
+        private final int replications;
+        private final boolean includeReplicationRows;
+        private final Set<Metric> metrics;
+
+        /**
+         * @param reportPath             The file the report is written to, which also tells apart several summary
+         *                               reports running together
+         * @param replications           The number of replications of each scenario
+         * @param includeReplicationRows Whether to also report the rows of each replication
+         * @param metrics                The metrics to summarize
+         */
+        public Settings(Path reportPath, int replications, boolean includeReplicationRows, Set<Metric> metrics) {
+            if (replications < 1) {
+                throw new IllegalArgumentException("EnsembleSummaryReport requires a positive replication count");
+            }
+            this.reportPath = reportPath;
+            this.replications = replications;
+            this.includeReplicationRows = includeReplicationRows;
+            this.metrics = EnumSet.copyOf(metrics);
+        }
+    }
+
+    /*
+     * Summarizes the held periods of included replications and releases the scenario once it has converged and
+     * all of its included replications are summarized
+     */
+    private final class SummaryListener implements ReplicationConvergenceTracker.ReplicationListener {
+        private final ScenarioSummary scenarioSummary;
+
+        private SummaryListener(ScenarioSummary scenarioSummary) {
+            this.scenarioSummary = scenarioSummary;
+        }
+
+        @Override
+        public void inclusionDecided(ObservableEnvironment observableEnvironment, int replication, boolean included) {
+            HeldReplication heldReplication;
+            boolean releasable;
+            synchronized (scenarioSummary) {
+                heldReplication = scenarioSummary.heldReplications.remove(replication);
+                if (included && heldReplication != null) {
+                    heldReplication.recordedPeriods.forEach(scenarioSummary::add);
+                    scenarioSummary.summarizedReplications++;
+                    scenarioSummary.lastReplication = Math.max(scenarioSummary.lastReplication, replication);
+                }
+                releasable = scenarioSummary.checkReleasable();
+            }
+            if (included && heldReplication != null) {
+                for (RecordedPeriod recordedPeriod : heldReplication.recordedPeriods) {
+                    releaseReplicationRows(observableEnvironment, heldReplication.replicationId, scenarioSummary,
+                            recordedPeriod);
+                }
+            }
+            if (releasable) {
+                releaseScenarioSummary(observableEnvironment, scenarioSummary);
+            }
+        }
+
+        @Override
+        public void converged(ObservableEnvironment observableEnvironment, int includedReplications) {
+            boolean releasable;
+            synchronized (scenarioSummary) {
+                scenarioSummary.includedReplications = includedReplications;
+                releasable = scenarioSummary.checkReleasable();
+            }
+            if (releasable) {
+                releaseScenarioSummary(observableEnvironment, scenarioSummary);
+            }
+        }
+    }
+
+    private static final class RecordedPeriod {
+        private final long period;
+        private final int[] cells;
+        private final int[] values;
+
+        private RecordedPeriod(long period, int[] cells, int[] values) {
+            this.period = period;
+            this.cells = cells;
+            this.values = values;
+        }
+    }
+
+    private static final class HeldReplication {
+        private final ReplicationId replicationId;
+        private final List<RecordedPeriod> recordedPeriods;
+
+        private HeldReplication(ReplicationId replicationId, List<RecordedPeriod> recordedPeriods) {
+            this.replicationId = replicationId;
+            this.recordedPeriods = recordedPeriods;
+        }
+    }
+
+    private static final class ScenarioSummary {
+        private final String summaryKey;
+        private final Path reportPath;
+        private final ScenarioId scenarioId;
+        private final ReportPeriod reportPeriod;
+        private final Metric[] metrics;
+        private final List<String> fipsStrings;
+        private final Map<Long, SummaryStatistics[]> periodCellSummaries = new TreeMap<>();
+        private final Map<Integer, HeldReplication> heldReplications = new HashMap<>();
+        private int summarizedReplications;
+        // The highest numbered replication summarized
+        private int lastReplication;
+        // Under adaptive replication, the number of replications included once the scenario has converged
+        private int includedReplications;
+        private boolean released;
+
+        private ScenarioSummary(String summaryKey, Path reportPath, ScenarioId scenarioId, ReportPeriod reportPeriod,
+                                Metric[] metrics, List<String> fipsStrings) {
+            this.summaryKey = summaryKey;
+            this.reportPath = reportPath;
+            this.scenarioId = scenarioId;
+            this.reportPeriod = reportPeriod;
+            this.metrics = metrics;
+            this.fipsStrings = fipsStrings;
+        }
+
+        private void add(RecordedPeriod recordedPeriod) {
+            for (int i = 0; i < recordedPeriod.cells.length; i++) {
+                getCellSummary(recordedPeriod.period, recordedPeriod.cells[i]).add(recordedPeriod.values[i]);
+            }
+        }
+
+        /*
+         * Returns whether an adaptive scenario is ready to release, marking it released if so
+         */
+        private boolean checkReleasable() {
+            if (!released && includedReplications > 0 && summarizedReplications == includedReplications) {
+                released = true;
+                return true;
+            }
+            return false;
+        }
+
+        private SummaryStatistics getCellSummary(long period, int cell) {
+            SummaryStatistics[] cellSummaries = periodCellSummaries.computeIfAbsent(period,
+                    key -> new SummaryStatistics[fipsStrings.size() * metrics.length]);
+            SummaryStatistics cellSummary = cellSummaries[cell];
+            if (cellSummary == null) {
+                cellSummary = new SummaryStatistics();
+                cellSummaries[cell] = cellSummary;
+            }
+            return cellSummary;
+        }
+
+        /*
+         * Accounts for the summarized replications that had no incidence in each period
+         */
+        private void addMissingIncidence() {
+            for (SummaryStatistics[] cellSummaries : periodCellSummaries.values()) {
+                for (int cell = 0; cell < cellSummaries.length; cell++) {
+                    if (cellSummaries[cell] != null && !metrics[cell % metrics.length].isPopulation) {
+                        cellSummaries[cell].add(0, summarizedReplications - cellSummaries[cell].getCount());
+                    }
+                }
+            }
+        }
+
+        private List<Object> getRowValues(long period, int cell, SummaryStatistics summaryStatistics) {
+            List<Object> values = new ArrayList<>();
+            switch (reportPeriod) {
+                case HOURLY:
+                    values.add(period / 24);
+                    values.add(period % 24);
+                    break;
+                case DAILY:
+                    values.add(period);
+                    break;
+                default:
+                    break;
+            }
+            values.add(fipsStrings.get(cell / metrics.length));
+            values.add(metrics[cell % metrics.length].label);
+            values.addAll(Arrays.asList(summaryStatistics.getReportedValues()));
+            return values;
+        }
+    }
+
+}
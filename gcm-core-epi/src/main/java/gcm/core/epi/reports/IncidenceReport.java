@@ -20,7 +20,7 @@ public class IncidenceReport extends RegionAggregationPeriodicReport {
         if (reportHeader == null) {
             ReportHeader.ReportHeaderBuilder reportHeaderBuilder = new ReportHeader.ReportHeaderBuilder();
             addTimeFieldHeaders(reportHeaderBuilder);
-            reportHeaderBuilder.add("Region");
+            addRegionFieldHeaders(reportHeaderBuilder);
             reportHeaderBuilder.add("NewInfections");
             reportHeaderBuilder.add("NewCases");
             reportHeaderBuilder.add("NewHospitalizationsWithBeds");
@@ -77,37 +77,58 @@ public class IncidenceReport extends RegionAggregationPeriodicReport {
     protected void flush(ObservableEnvironment observableEnvironment) {
 
         final ReportItem.ReportItemBuilder reportItemBuilder = new ReportItem.ReportItemBuilder();
+        final CounterType[] counterTypes = CounterType.values();
+
+        // Roll up the counts to each scope, counts having been kept at the finest scope
+        for (int scopeIndex = 0; scopeIndex < getFipsScopes().size(); scopeIndex++) {
+            Map<String, int[]> scopeCounts = new LinkedHashMap<>();
+            for (String regionId : regionCounterMap.keySet()) {
+                Map<CounterType, Counter> counterMap = regionCounterMap.get(regionId);
+                int[] counts = scopeCounts.computeIfAbsent(getFipsString(scopeIndex, regionId),
+                        key -> new int[counterTypes.length]);
+                for (CounterType counterType : counterTypes) {
+                    counts[counterType.ordinal()] += counterMap.get(counterType).count;
+                }
+            }
 
-        for (String regionId : regionCounterMap.keySet()) {
-            Map<CounterType, Counter> counterMap = regionCounterMap.get(regionId);
-            int infections = counterMap.get(CounterType.INFECTIONS).count;
-            int cases = counterMap.get(CounterType.CASES).count;
-            int hospitalizationsWithBed = counterMap.get(CounterType.HOSPITALIZATIONS_WITH_BED).count;
-            int hospitalizationsWithoutBed = counterMap.get(CounterType.HOSPITALIZATIONS_WITHOUT_BED).count;
-            int deaths = counterMap.get(CounterType.DEATHS).count;
-            if (infections > 0 | cases > 0 | hospitalizationsWithBed > 0 | hospitalizationsWithoutBed > 0 | deaths > 0) {
-                reportItemBuilder.setReportHeader(getReportHeader());
-                reportItemBuilder.setReportType(getClass());
-                reportItemBuilder.setScenarioId(observableEnvironment.getScenarioId());
-                reportItemBuilder.setReplicationId(observableEnvironment.getReplicationId());
-
-                buildTimeFields(reportItemBuilder);
-                reportItemBuilder.addValue(regionId);
-                reportItemBuilder.addValue(infections);
-                reportItemBuilder.addValue(cases);
-                reportItemBuilder.addValue(hospitalizationsWithBed);
-                reportItemBuilder.addValue(hospitalizationsWithoutBed);
-                reportItemBuilder.addValue(deaths);
-
-                observableEnvironment.releaseOutputItem(reportItemBuilder.build());
-
-                // Reset counters
-                for (CounterType counterType : CounterType.values()) {
-                    counterMap.get(counterType).count = 0;
+            for (Map.Entry<String, int[]> entry : scopeCounts.entrySet()) {
+                int[] counts = entry.getValue();
+                int infections = counts[CounterType.INFECTIONS.ordinal()];
+                int cases = counts[CounterType.CASES.ordinal()];
+                int hospitalizationsWithBed = counts[CounterType.HOSPITALIZATIONS_WITH_BED.ordinal()];
+                int hospitalizationsWithoutBed = counts[CounterType.HOSPITALIZATIONS_WITHOUT_BED.ordinal()];
+                int deaths = counts[CounterType.DEATHS.ordinal()];
+                if (infections > 0 | cases > 0 | hospitalizationsWithBed > 0 | hospitalizationsWithoutBed > 0 | deaths > 0) {
+                    reportItemBuilder.setReportHeader(getReportHeader());
+                    reportItemBuilder.setReportType(getClass());
+                    reportItemBuilder.setScenarioId(observableEnvironment.getScenarioId());
+                    reportItemBuilder.setReplicationId(observableEnvironment.getReplicationId());
+
+                    buildPeriodFields(reportItemBuilder);
+                    buildRegionFields(reportItemBuilder, scopeIndex, entry.getKey());
+                    reportItemBuilder.addValue(infections);
+                    reportItemBuilder.addValue(cases);
+                    reportItemBuilder.addValue(hospitalizationsWithBed);
+                    reportItemBuilder.addValue(hospitalizationsWithoutBed);
+                    reportItemBuilder.addValue(deaths);
+
+                    observableEnvironment.releaseOutputItem(reportItemBuilder.build());
                 }
             }
         }
 
+        // Reset counters
+        for (Map<CounterType, Counter> counterMap : regionCounterMap.values()) {
+            for (CounterType counterType : counterTypes) {
+                counterMap.get(counterType).count = 0;
+            }
+        }
+
+    }
+
+    @Override
+    protected boolean supportsMultipleFipsScopes() {
+        return true;
     }
 
     @Override
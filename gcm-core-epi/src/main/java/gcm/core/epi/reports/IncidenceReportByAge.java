@@ -101,7 +101,7 @@ public class IncidenceReportByAge extends RegionAggregationPeriodicReport {
                         reportItemBuilder.setReportType(getClass());
                         reportItemBuilder.setScenarioId(observableEnvironment.getScenarioId());
                         reportItemBuilder.setReplicationId(observableEnvironment.getReplicationId());
-                        buildTimeFields(reportItemBuilder);
+                        buildPeriodFields(reportItemBuilder);
 
                         reportItemBuilder.addValue(regionId);
                         reportItemBuilder.addValue(ageGroup.toString());
@@ -110,7 +110,7 @@ public final class PersonRegionResourceReport extends RegionAggregationPeriodicR
                         reportItemBuilder.setScenarioId(observableEnvironment.getScenarioId());
                         reportItemBuilder.setReplicationId(observableEnvironment.getReplicationId());
 
-                        buildTimeFields(reportItemBuilder);
+                        buildPeriodFields(reportItemBuilder);
                         reportItemBuilder.addValue(regionId);
                         reportItemBuilder.addValue(compartmentId.toString());
                         reportItemBuilder.addValue(resourceId.toString());
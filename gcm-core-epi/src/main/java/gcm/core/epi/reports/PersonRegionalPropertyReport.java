@@ -98,7 +98,7 @@ public final class PersonRegionalPropertyReport extends RegionAggregationPeriodi
                             reportItemBuilder.setScenarioId(observableEnvironment.getScenarioId());
                             reportItemBuilder.setReplicationId(observableEnvironment.getReplicationId());
 
-                            buildTimeFields(reportItemBuilder);
+                            buildPeriodFields(reportItemBuilder);
                             reportItemBuilder.addValue(regionId);
                             reportItemBuilder.addValue(compartmentId.toString());
                             reportItemBuilder.addValue(personPropertyId.toString());
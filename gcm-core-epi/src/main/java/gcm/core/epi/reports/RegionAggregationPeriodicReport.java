@@ -1,30 +1,153 @@
 package gcm.core.epi.reports;
 
+import gcm.core.epi.identifiers.GlobalProperty;
+import gcm.core.epi.trigger.FipsCode;
 import gcm.core.epi.trigger.FipsScope;
+import gcm.output.reports.ReportHeader;
+import gcm.output.reports.ReportItem;
+import gcm.output.reports.ReportPeriod;
 import gcm.output.reports.commonreports.PeriodicReport;
 import gcm.scenario.RegionId;
 import gcm.simulation.ObservableEnvironment;
 
-import java.util.Set;
+import java.util.*;
 
+/**
+ * A periodic report that aggregates regions to one or more FIPS scopes. Counting is done at the finest scope,
+ * identified by getFipsString, and reports that support several scopes roll these counts up to the coarser
+ * scopes when flushing. A Scope column is reported only when more than one scope is in use.
+ * <p>
+ * When the simulation is stopped on extinction, the remaining periods up to the maximum simulation length are
+ * flushed on close as if they had passed without events, so that every replication reports the same periods.
+ * Subclasses must build their time fields with buildPeriodFields for this to work.
+ */
 public abstract class RegionAggregationPeriodicReport extends PeriodicReport {
 
     private FipsScope fipsScope = FipsScope.TRACT;
+    private List<FipsScope> fipsScopes = Collections.singletonList(FipsScope.TRACT);
+    /*
+     * Finest scope FIPS strings mapped to the corresponding FIPS string for each scope in fipsScopes
+     */
+    private final Map<String, String[]> fipsStringsByScope = new HashMap<>();
+    private ReportPeriod reportPeriod = ReportPeriod.DAILY;
+    /*
+     * The later period being flushed after an extinction stop, or -1 when flushing the current period
+     */
+    private long fillPeriod = -1;
 
     protected String getFipsString(RegionId regionId) {
         return fipsScope.getFipsCode(regionId).code();
     }
 
+    /*
+     * The scopes being reported, from coarsest to finest
+     */
+    protected List<FipsScope> getFipsScopes() {
+        return fipsScopes;
+    }
+
+    /*
+     * Returns the FIPS string for the scope at the given index of getFipsScopes that contains the given finest
+     * scope FIPS string
+     */
+    protected String getFipsString(int scopeIndex, String fipsString) {
+        return fipsStringsByScope.get(fipsString)[scopeIndex];
+    }
+
+    /*
+     * Reports override this to accept more than one scope, in which case they are responsible for rolling up
+     * their counts and using the region field methods below
+     */
+    protected boolean supportsMultipleFipsScopes() {
+        return false;
+    }
+
+    protected void addRegionFieldHeaders(ReportHeader.ReportHeaderBuilder reportHeaderBuilder) {
+        if (fipsScopes.size() > 1) {
+            reportHeaderBuilder.add("Scope");
+        }
+        reportHeaderBuilder.add("Region");
+    }
+
+    protected void buildRegionFields(ReportItem.ReportItemBuilder reportItemBuilder, int scopeIndex, String fipsString) {
+        if (fipsScopes.size() > 1) {
+            reportItemBuilder.addValue(fipsScopes.get(scopeIndex));
+        }
+        reportItemBuilder.addValue(fipsString);
+    }
+
+    /*
+     * Adds the time fields for the period being flushed
+     */
+    protected void buildPeriodFields(ReportItem.ReportItemBuilder reportItemBuilder) {
+        if (fillPeriod < 0) {
+            buildTimeFields(reportItemBuilder);
+            return;
+        }
+        switch (reportPeriod) {
+            case HOURLY:
+                reportItemBuilder.addValue((int) (fillPeriod / 24));
+                reportItemBuilder.addValue((int) (fillPeriod % 24));
+                break;
+            case DAILY:
+                reportItemBuilder.addValue((int) fillPeriod);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private long getPeriod(double time) {
+        return reportPeriod == ReportPeriod.HOURLY ? (long) Math.floor(time * 24) : (long) Math.floor(time);
+    }
+
+    @Override
+    public void close(ObservableEnvironment observableEnvironment) {
+        super.close(observableEnvironment);
+
+        // A simulation stopped on extinction would have had no further events, so states carry forward
+        double extinctionTime = observableEnvironment.getGlobalPropertyValue(GlobalProperty.EXTINCTION_TIME);
+        double maxSimulationLength = observableEnvironment.getGlobalPropertyValue(GlobalProperty.MAX_SIMULATION_LENGTH);
+        if (reportPeriod != ReportPeriod.END_OF_SIMULATION && extinctionTime < Double.POSITIVE_INFINITY &&
+                maxSimulationLength < Double.POSITIVE_INFINITY) {
+            long finalPeriod = getPeriod(maxSimulationLength);
+            for (fillPeriod = getPeriod(extinctionTime) + 1; fillPeriod <= finalPeriod; fillPeriod++) {
+                flush(observableEnvironment);
+            }
+            fillPeriod = -1;
+        }
+    }
+
     @Override
     public void init(ObservableEnvironment observableEnvironment, Set<Object> initialData) {
         super.init(observableEnvironment, initialData);
 
+        SortedSet<FipsScope> initialScopes = new TreeSet<>();
         for (Object initialDatum : initialData) {
             if (initialDatum instanceof FipsScope) {
-                this.fipsScope = (FipsScope) initialDatum;
-                break;
+                initialScopes.add((FipsScope) initialDatum);
+            } else if (initialDatum instanceof ReportPeriod) {
+                reportPeriod = (ReportPeriod) initialDatum;
             }
         }
+        if (initialScopes.size() > 1 && !supportsMultipleFipsScopes()) {
+            throw new IllegalArgumentException(getClass().getSimpleName() + " does not support multiple region aggregation levels");
+        }
+        if (!initialScopes.isEmpty()) {
+            this.fipsScopes = Collections.unmodifiableList(new ArrayList<>(initialScopes));
+            this.fipsScope = initialScopes.last();
+        }
+
+        for (RegionId regionId : observableEnvironment.getRegionIds()) {
+            FipsCode fipsCode = fipsScope.getFipsCode(regionId);
+            fipsStringsByScope.computeIfAbsent(fipsCode.code(), code -> {
+                String[] fipsStrings = new String[fipsScopes.size()];
+                for (int scopeIndex = 0; scopeIndex < fipsStrings.length; scopeIndex++) {
+                    fipsStrings[scopeIndex] = fipsScopes.get(scopeIndex).getFipsCode(fipsCode).code();
+                }
+                return fipsStrings;
+            });
+        }
     }
 
 }
@@ -0,0 +1,124 @@
+package gcm.core.epi.reports;
+
+import gcm.core.epi.identifiers.Compartment;
+import gcm.core.epi.identifiers.GlobalProperty;
+import gcm.core.epi.identifiers.Resource;
+import gcm.core.epi.util.statistics.ReplicationConvergenceTracker;
+import gcm.output.reports.AbstractReport;
+import gcm.output.reports.ReportHeader;
+import gcm.output.reports.ReportItem;
+import gcm.output.reports.StateChange;
+import gcm.scenario.CompartmentId;
+import gcm.scenario.PersonId;
+import gcm.scenario.ResourceId;
+import gcm.simulation.ObservableEnvironment;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * A report used with adaptive replication that computes the outputs tracked for convergence at the end of each
+ * replication, adds them to the experiment's ReplicationConvergenceTracker and reports them. Replications skipped
+ * because their scenario had already converged are not reported. Replications that started before their scenario
+ * converged but come after the replications used for convergence are reported, but are not used by the tracker.
+ * <p>
+ * Fields
+ * <p>
+ * FinalAttackRate -- infections over the course of the replication per person
+ * <p>
+ * PeakHospitalizations -- the largest number of people occupying hospital beds at once
+ */
+public class ReplicationConvergenceReport extends AbstractReport {
+
+    private ReportHeader reportHeader;
+    private long population;
+    private long infections;
+    private long hospitalized;
+    private long peakHospitalized;
+
+    private ReportHeader getReportHeader() {
+        if (reportHeader == null) {
+            ReportHeader.ReportHeaderBuilder reportHeaderBuilder = new ReportHeader.ReportHeaderBuilder();
+            for (ReplicationConvergenceTracker.Metric metric : ReplicationConvergenceTracker.Metric.values()) {
+                reportHeaderBuilder.add(metric.getLabel());
+            }
+            reportHeader = reportHeaderBuilder.build();
+        }
+        return reportHeader;
+    }
+
+    @Override
+    public void handlePersonAddition(ObservableEnvironment observableEnvironment, PersonId personId) {
+        population++;
+    }
+
+    @Override
+    public void handleCompartmentAssignment(ObservableEnvironment observableEnvironment, PersonId personId, CompartmentId sourceCompartmentId) {
+        if (sourceCompartmentId == Compartment.SUSCEPTIBLE &&
+                observableEnvironment.getPersonCompartment(personId) == Compartment.INFECTED) {
+            infections++;
+        }
+    }
+
+    @Override
+    public void handleRegionResourceTransferToPerson(ObservableEnvironment observableEnvironment, PersonId personId, ResourceId resourceId, long amount) {
+        if (resourceId == Resource.HOSPITAL_BED) {
+            hospitalized += amount;
+            peakHospitalized = Math.max(peakHospitalized, hospitalized);
+        }
+    }
+
+    @Override
+    public void handlePersonResourceTransferToRegion(ObservableEnvironment observableEnvironment, PersonId personId, ResourceId resourceId, long amount) {
+        if (resourceId == Resource.HOSPITAL_BED) {
+            hospitalized -= amount;
+        }
+    }
+
+    @Override
+    public void handlePersonResourceRemoval(ObservableEnvironment observableEnvironment, PersonId personId, ResourceId resourceId, long amount) {
+        if (resourceId == Resource.HOSPITAL_BED) {
+            hospitalized -= amount;
+        }
+    }
+
+    @Override
+    public Set<StateChange> getListenedStateChanges() {
+        final Set<StateChange> result = new LinkedHashSet<>();
+        result.add(StateChange.PERSON_ADDITION);
+        result.add(StateChange.COMPARTMENT_ASSIGNMENT);
+        result.add(StateChange.REGION_RESOURCE_TRANSFER_TO_PERSON);
+        result.add(StateChange.PERSON_RESOURCE_TRANSFER_TO_REGION);
+        result.add(StateChange.PERSON_RESOURCE_REMOVAL);
+        return result;
+    }
+
+    @Override
+    public void close(ObservableEnvironment observableEnvironment) {
+        boolean replicationSkipped = observableEnvironment.getGlobalPropertyValue(GlobalProperty.REPLICATION_SKIPPED);
+        if (replicationSkipped) {
+            return;
+        }
+
+        double[] metricValues = new double[ReplicationConvergenceTracker.Metric.values().length];
+        metricValues[ReplicationConvergenceTracker.Metric.FINAL_ATTACK_RATE.ordinal()] =
+                population > 0 ? (double) infections / population : 0.0;
+        metricValues[ReplicationConvergenceTracker.Metric.PEAK_HOSPITALIZATIONS.ordinal()] = peakHospitalized;
+
+        ReplicationConvergenceTracker replicationConvergenceTracker = observableEnvironment.getGlobalPropertyValue(
+                GlobalProperty.REPLICATION_CONVERGENCE_TRACKER);
+        replicationConvergenceTracker.addReplication(observableEnvironment, observableEnvironment.getScenarioId(),
+                observableEnvironment.getReplicationId().getValue(), metricValues);
+
+        ReportItem.ReportItemBuilder reportItemBuilder = new ReportItem.ReportItemBuilder();
+        reportItemBuilder.setReportHeader(getReportHeader());
+        reportItemBuilder.setReportType(getClass());
+        reportItemBuilder.setScenarioId(observableEnvironment.getScenarioId());
+        reportItemBuilder.setReplicationId(observableEnvironment.getReplicationId());
+        for (double metricValue : metricValues) {
+            reportItemBuilder.addValue(metricValue);
+        }
+        observableEnvironment.releaseOutputItem(reportItemBuilder.build());
+    }
+
+}
@@ -2,7 +2,7 @@ package gcm.core.epi.trigger;
 
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import gcm.components.Component;
-import gcm.core.epi.components.trigger.CumulativeTriggerComponent;
+import gcm.core.epi.components.trigger.TriggerMetricsComponent;
 import gcm.core.epi.trigger.ImmutableCumulativeTrigger;
 import org.immutables.value.Value;
 
@@ -10,17 +10,10 @@ import org.immutables.value.Value;
 @JsonDeserialize(as = ImmutableCumulativeTrigger.class)
 public abstract class CumulativeTrigger extends AbstractFipsCodeValues implements Trigger {
 
-    public abstract Metric metric();
+    public abstract TriggerMetric metric();
 
     public Class<? extends Component> triggerComponent() {
-        return CumulativeTriggerComponent.class;
-    }
-
-    public enum Metric {
-        INFECTIONS,
-        CASES,
-        HOSPITALIZATIONS,
-        DEATHS
+        return TriggerMetricsComponent.class;
     }
 
 }
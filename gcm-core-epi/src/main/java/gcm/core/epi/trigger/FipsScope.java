@@ -29,6 +29,27 @@ public enum FipsScope {
         }
     }
 
+    /*
+     * Returns the FIPS code of this scope that contains the given FIPS code of the same or a finer scope
+     */
+    public FipsCode getFipsCode(FipsCode fipsCode) {
+        if (fipsCode.scope().compareTo(this) < 0) {
+            throw new IllegalArgumentException("Cannot find the " + this + " FIPS code containing " + fipsCode.code());
+        }
+        switch (this) {
+            case NATION:
+                return FipsCode.of("");
+            case STATE:
+                return FipsCode.of(fipsCode.code().substring(0, 2));
+            case COUNTY:
+                return FipsCode.of(fipsCode.code().substring(0, 5));
+            case TRACT:
+                return fipsCode;
+            default:
+                throw new RuntimeException("Unknown Fips Scope");
+        }
+    }
+
     public Set<FipsCode> getFipsCodesForRegions(Environment environment) {
         return environment.getRegionIds().stream()
                 .map(this::getFipsCode)
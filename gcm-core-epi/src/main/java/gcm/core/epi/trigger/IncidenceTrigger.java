@@ -2,7 +2,7 @@ package gcm.core.epi.trigger;
 
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import gcm.components.Component;
-import gcm.core.epi.components.trigger.IncidenceTriggerComponent;
+import gcm.core.epi.components.trigger.TriggerMetricsComponent;
 import gcm.core.epi.trigger.ImmutableIncidenceTrigger;
 import org.immutables.value.Value;
 
@@ -15,7 +15,7 @@ public abstract class IncidenceTrigger extends AbstractFipsCodeValues implements
         return FipsScope.NATION;
     }
 
-    public abstract Metric metric();
+    public abstract TriggerMetric metric();
 
     public abstract double interval();
 
@@ -32,14 +32,7 @@ public abstract class IncidenceTrigger extends AbstractFipsCodeValues implements
     }
 
     public Class<? extends Component> triggerComponent() {
-        return IncidenceTriggerComponent.class;
-    }
-
-    public enum Metric {
-        INFECTIONS,
-        CASES,
-        HOSPITALIZATIONS,
-        DEATHS
+        return TriggerMetricsComponent.class;
     }
 
     public enum Comparison {
@@ -0,0 +1,188 @@
+package gcm.core.epi.trigger;
+
+import gcm.scenario.PersonId;
+import gcm.scenario.RegionId;
+import gcm.scenario.RegionPropertyId;
+import gcm.simulation.Environment;
+
+import java.util.*;
+
+/**
+ * Records for each pair of trigger start and end region properties whether the trigger is in effect in each region,
+ * as a bitset indexed by region. Pairs are identified by TriggerPair handles that plugins resolve once, and regions
+ * by a dense index that is cached for each person, so that checking a trigger for a person reads an array element
+ * and a single bit. The bitset of a pair is set up from the region properties the first time it is checked and is
+ * then kept up to date by the callbacks added through TriggerUtils.addBooleanCallback. A new instance is created for
+ * each simulation by the TriggerManager, which also reports people changing region.
+ */
+public class RegionTriggerStates {
+
+    // Handles are shared by all simulations, so are registered once for the whole process
+    private static final Map<List<RegionPropertyId>, TriggerPair> triggerPairs = new HashMap<>();
+
+    private final boolean maintained;
+    private final Map<RegionId, Integer> regionIndices = new HashMap<>();
+    private final List<RegionId> regionIds = new ArrayList<>();
+    private final Map<RegionPropertyId, List<TriggerPair>> pairsByProperty = new HashMap<>();
+    // Indexed by TriggerPair index, with null for pairs not yet checked in this simulation
+    private BitSet[] inEffect = new BitSet[0];
+    // Region index plus one for each person, with zero when not yet known
+    private int[] personRegionIndices = new int[0];
+
+    /*
+     * States that are not maintained, for use before the TriggerManager has been initialized, which read the region
+     * properties on every check
+     */
+    public RegionTriggerStates() {
+        this.maintained = false;
+    }
+
+    public RegionTriggerStates(Environment environment) {
+        this.maintained = true;
+        for (RegionId regionId : environment.getRegionIds()) {
+            regionIndices.put(regionId, regionIds.size());
+            regionIds.add(regionId);
+        }
+    }
+
+    /**
+     * Returns the handle for the given pair of trigger start and end region properties, which should be resolved
+     * once and kept rather than looked up for each check
+     */
+    public static TriggerPair getTriggerPair(RegionPropertyId triggerStartProperty,
+                                             RegionPropertyId triggerEndProperty) {
+        synchronized (triggerPairs) {
+            return triggerPairs.computeIfAbsent(Arrays.asList(triggerStartProperty, triggerEndProperty),
+                    key -> new TriggerPair(triggerPairs.size(), triggerStartProperty, triggerEndProperty));
+        }
+    }
+
+    static boolean checkRegionProperties(Environment environment, RegionId regionId,
+                                         RegionPropertyId triggerStartProperty,
+                                         RegionPropertyId triggerEndProperty) {
+        boolean triggerHasStarted = environment.getRegionPropertyValue(regionId, triggerStartProperty);
+        double triggerStartTime = environment.getRegionPropertyTime(regionId, triggerStartProperty);
+        boolean triggerHasEnded = environment.getRegionPropertyValue(regionId,
+                triggerEndProperty);
+        double triggerEndTime = environment.getRegionPropertyTime(regionId,
+                triggerEndProperty);
+        return triggerHasStarted && !(triggerHasEnded && triggerEndTime >= triggerStartTime);
+    }
+
+    /*
+     * Returns whether the trigger is in effect in the region of the given person
+     */
+    public boolean isInEffect(Environment environment, TriggerPair triggerPair, PersonId personId) {
+        if (!maintained) {
+            return checkRegionProperties(environment, environment.getPersonRegion(personId),
+                    triggerPair.triggerStartProperty, triggerPair.triggerEndProperty);
+        }
+        return isInEffect(environment, triggerPair, getRegionIndex(environment, personId));
+    }
+
+    /*
+     * Returns whether the trigger is in effect in the region with the given index, for maintained states only
+     */
+    public boolean isInEffect(Environment environment, TriggerPair triggerPair, int regionIndex) {
+        BitSet pairInEffect = triggerPair.index < inEffect.length ? inEffect[triggerPair.index] : null;
+        if (pairInEffect == null) {
+            pairInEffect = addTriggerPair(environment, triggerPair);
+        }
+        return pairInEffect.get(regionIndex);
+    }
+
+    /*
+     * Returns the dense index of the region, which other per-simulation state may use to index regions in the same
+     * way
+     */
+    public int getRegionIndex(RegionId regionId) {
+        Integer regionIndex = regionIndices.get(regionId);
+        if (regionIndex == null) {
+            throw new RuntimeException("Region trigger states have not been initialized for region: " + regionId);
+        }
+        return regionIndex;
+    }
+
+    /*
+     * Returns the dense index of the region of the given person, which is cached until the person changes region
+     */
+    public int getRegionIndex(Environment environment, PersonId personId) {
+        int personIndex = personId.getValue();
+        int regionIndex = personIndex < personRegionIndices.length ? personRegionIndices[personIndex] - 1 : -1;
+        return regionIndex >= 0 ? regionIndex : addPersonRegionIndex(environment, personId);
+    }
+
+    private int addPersonRegionIndex(Environment environment, PersonId personId) {
+        int personIndex = personId.getValue();
+        if (personIndex >= personRegionIndices.length) {
+            personRegionIndices = Arrays.copyOf(personRegionIndices,
+                    Math.max(personIndex + 1, 2 * personRegionIndices.length));
+        }
+        int regionIndex = getRegionIndex(environment.getPersonRegion(personId));
+        personRegionIndices[personIndex] = regionIndex + 1;
+        return regionIndex;
+    }
+
+    private BitSet addTriggerPair(Environment environment, TriggerPair triggerPair) {
+        if (triggerPair.index >= inEffect.length) {
+            inEffect = Arrays.copyOf(inEffect, triggerPair.index + 1);
+        }
+        BitSet pairInEffect = new BitSet(regionIds.size());
+        inEffect[triggerPair.index] = pairInEffect;
+        for (int regionIndex = 0; regionIndex < regionIds.size(); regionIndex++) {
+            triggerPair.update(environment, pairInEffect, regionIds.get(regionIndex), regionIndex);
+        }
+        pairsByProperty.computeIfAbsent(triggerPair.triggerStartProperty, key -> new ArrayList<>()).add(triggerPair);
+        if (!triggerPair.triggerEndProperty.equals(triggerPair.triggerStartProperty)) {
+            pairsByProperty.computeIfAbsent(triggerPair.triggerEndProperty, key -> new ArrayList<>()).add(triggerPair);
+        }
+        return pairInEffect;
+    }
+
+    /*
+     * Updates the pairs using the given region property after it has been set for the region
+     */
+    public void handleRegionPropertySet(Environment environment, RegionId regionId, RegionPropertyId regionPropertyId) {
+        if (!maintained) {
+            return;
+        }
+        List<TriggerPair> triggerPairs = pairsByProperty.get(regionPropertyId);
+        if (triggerPairs != null) {
+            int regionIndex = regionIndices.get(regionId);
+            for (TriggerPair triggerPair : triggerPairs) {
+                triggerPair.update(environment, inEffect[triggerPair.index], regionId, regionIndex);
+            }
+        }
+    }
+
+    /*
+     * Forgets the cached region of a person who has changed region
+     */
+    public void handlePersonRegionChange(PersonId personId) {
+        int personIndex = personId.getValue();
+        if (personIndex < personRegionIndices.length) {
+            personRegionIndices[personIndex] = 0;
+        }
+    }
+
+    /**
+     * A pair of trigger start and end region properties, with an index that is dense over all pairs in use
+     */
+    public static final class TriggerPair {
+        private final int index;
+        private final RegionPropertyId triggerStartProperty;
+        private final RegionPropertyId triggerEndProperty;
+
+        private TriggerPair(int index, RegionPropertyId triggerStartProperty, RegionPropertyId triggerEndProperty) {
+            this.index = index;
+            this.triggerStartProperty = triggerStartProperty;
+            this.triggerEndProperty = triggerEndProperty;
+        }
+
+        private void update(Environment environment, BitSet pairInEffect, RegionId regionId, int regionIndex) {
+            pairInEffect.set(regionIndex, checkRegionProperties(environment, regionId,
+                    triggerStartProperty, triggerEndProperty));
+        }
+    }
+
+}
@@ -0,0 +1,46 @@
+package gcm.core.epi.trigger;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import gcm.components.Component;
+import gcm.core.epi.components.trigger.TriggerMetricsComponent;
+import gcm.core.epi.trigger.ImmutableRollingIncidenceTrigger;
+import org.immutables.value.Value;
+
+/**
+ * An incidence trigger that compares the count over a trailing window of whole days, evaluated at the end of each
+ * day, with its threshold. Thresholds of type FRACTION are per person, so a rate per 100k is given as the rate
+ * divided by 100,000.
+ */
+@Value.Immutable
+@JsonDeserialize(as = ImmutableRollingIncidenceTrigger.class)
+public abstract class RollingIncidenceTrigger extends AbstractFipsCodeValues implements Trigger {
+
+    @Value.Default
+    public FipsScope scope() {
+        return FipsScope.NATION;
+    }
+
+    public abstract TriggerMetric metric();
+
+    /*
+     * The number of days in the trailing window
+     */
+    public abstract int window();
+
+    public abstract IncidenceTrigger.Comparison comparison();
+
+    @Value.Default
+    public double start() {
+        return 0.0;
+    }
+
+    @Value.Default
+    public double end() {
+        return Double.POSITIVE_INFINITY;
+    }
+
+    public Class<? extends Component> triggerComponent() {
+        return TriggerMetricsComponent.class;
+    }
+
+}
@@ -1,17 +1,107 @@
 package gcm.core.epi.trigger;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 
+/**
+ * The triggers of an experiment compiled into an immutable graph that is shared by all replications. Triggers are
+ * numbered in the order they were added, and for each trigger the container holds the triggers that start it, the
+ * callback those triggers use to start it, and every trigger that must run for it to fire. Cycles among starting
+ * triggers are rejected when the container is built.
+ */
 public class TriggerContainer {
 
-    private static final Map<TriggerId<? extends Trigger>, Object> triggerData = new HashMap<>();
-    private static final Map<String, TriggerId<?>> triggerIdMap = new HashMap<>();
+    private final List<TriggerId<? extends Trigger>> triggerIds;
+    private final Map<String, Integer> triggerIndices;
+    private final Map<TriggerId<? extends Trigger>, Trigger> triggerData;
+    private final int[][] startingTriggerIndices;
+    private final int[][] requiredTriggerIndices;
+    private final TriggerCallback[] startCallbacks;
+
+    private TriggerContainer(List<TriggerId<? extends Trigger>> triggerIds) {
+        this.triggerIds = Collections.unmodifiableList(new ArrayList<>(triggerIds));
+        Map<String, Integer> triggerIndices = new HashMap<>();
+        Map<TriggerId<? extends Trigger>, Trigger> triggerData = new HashMap<>();
+        for (TriggerId<? extends Trigger> triggerId : triggerIds) {
+            if (triggerIndices.put(triggerId.id(), triggerIndices.size()) != null) {
+                throw new IllegalArgumentException("Trigger defined more than once with the name: '" +
+                        triggerId.id() + "'");
+            }
+            triggerData.put(triggerId, triggerId.trigger());
+        }
+        this.triggerIndices = Collections.unmodifiableMap(triggerIndices);
+        this.triggerData = Collections.unmodifiableMap(triggerData);
+
+        int triggerCount = triggerIds.size();
+        startingTriggerIndices = new int[triggerCount][];
+        startCallbacks = new TriggerCallback[triggerCount];
+        for (int index = 0; index < triggerCount; index++) {
+            Trigger trigger = triggerIds.get(index).trigger();
+            List<String> startingTriggers = trigger.startingTriggers();
+            startingTriggerIndices[index] = new int[startingTriggers.size()];
+            for (int i = 0; i < startingTriggers.size(); i++) {
+                Integer startingIndex = triggerIndices.get(startingTriggers.get(i));
+                if (startingIndex == null) {
+                    throw new IllegalArgumentException("Trigger '" + triggerIds.get(index).id() +
+                            "' is started by a trigger that is not defined: '" + startingTriggers.get(i) + "'");
+                }
+                startingTriggerIndices[index][i] = startingIndex;
+            }
+            if (startingTriggers.size() > 0) {
+                if (!trigger.triggeringRegionProperty().isPresent()) {
+                    throw new IllegalArgumentException("Trigger '" + triggerIds.get(index).id() +
+                            "' has starting triggers but no triggering region property");
+                }
+                startCallbacks[index] = (environment, regionId) -> environment.setRegionPropertyValue(regionId,
+                        trigger.triggeringRegionProperty().get(), true);
+            }
+        }
+
+        requiredTriggerIndices = new int[triggerCount][];
+        int[] visitState = new int[triggerCount];
+        Deque<Integer> path = new ArrayDeque<>();
+        for (int index = 0; index < triggerCount; index++) {
+            computeRequiredTriggers(index, visitState, path);
+        }
+    }
 
     public static Builder builder() {
         return new Builder();
     }
 
+    /*
+     * Depth-first search through the starting triggers that records, for each trigger, the triggers it requires in
+     * an order where each trigger follows those that start it
+     */
+    private void computeRequiredTriggers(int index, int[] visitState, Deque<Integer> path) {
+        if (visitState[index] == 2) {
+            return;
+        }
+        path.addLast(index);
+        if (visitState[index] == 1) {
+            StringJoiner cycle = new StringJoiner(" -> ");
+            boolean inCycle = false;
+            for (int pathIndex : path) {
+                inCycle |= pathIndex == index;
+                if (inCycle) {
+                    cycle.add(triggerIds.get(pathIndex).id());
+                }
+            }
+            throw new IllegalArgumentException("Triggers cannot start themselves, found cycle: " + cycle);
+        }
+        visitState[index] = 1;
+        Set<Integer> requiredTriggers = new LinkedHashSet<>();
+        for (int startingIndex : startingTriggerIndices[index]) {
+            computeRequiredTriggers(startingIndex, visitState, path);
+            for (int requiredIndex : requiredTriggerIndices[startingIndex]) {
+                requiredTriggers.add(requiredIndex);
+            }
+        }
+        requiredTriggers.add(index);
+        requiredTriggerIndices[index] = requiredTriggers.stream().mapToInt(Integer::intValue).toArray();
+        visitState[index] = 2;
+        path.removeLast();
+    }
+
     @SuppressWarnings("unchecked")
     public <T extends Trigger> T get(TriggerId<T> triggerId) {
         return (T) triggerData.get(triggerId);
@@ -19,12 +109,49 @@ public class TriggerContainer {
 
     @SuppressWarnings("unchecked")
     public <T extends Trigger> TriggerId<T> getId(String id) {
-        return (TriggerId<T>) triggerIdMap.get(id);
+        Integer index = triggerIndices.get(id);
+        return index == null ? null : (TriggerId<T>) triggerIds.get(index);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Trigger> TriggerId<T> getId(int index) {
+        return (TriggerId<T>) triggerIds.get(index);
+    }
+
+    /*
+     * Returns the index of the trigger with the given name, or -1 if there is no such trigger
+     */
+    public int getIndex(String id) {
+        return triggerIndices.getOrDefault(id, -1);
+    }
+
+    public int size() {
+        return triggerIds.size();
+    }
+
+    public int[] getStartingTriggerIndices(int index) {
+        return startingTriggerIndices[index].clone();
+    }
+
+    /*
+     * Returns the given trigger and every trigger that starts it, directly or indirectly, with each trigger
+     * following those that start it
+     */
+    public int[] getRequiredTriggerIndices(int index) {
+        return requiredTriggerIndices[index].clone();
+    }
+
+    /*
+     * Returns the callback that a starting trigger uses to start the given trigger, or null if it has no
+     * starting triggers
+     */
+    public TriggerCallback getStartCallback(int index) {
+        return startCallbacks[index];
     }
 
     public static class Builder {
 
-        private TriggerContainer triggerContainer = new TriggerContainer();
+        private List<TriggerId<? extends Trigger>> triggerIds = new ArrayList<>();
 
         private Builder() {
 
@@ -32,15 +159,17 @@ public class TriggerContainer {
 
         public TriggerContainer build() {
             try {
-                return triggerContainer;
+                return new TriggerContainer(triggerIds);
             } finally {
-                triggerContainer = new TriggerContainer();
+                triggerIds = new ArrayList<>();
             }
         }
 
         public <T extends Trigger> Builder addTrigger(TriggerId<T> triggerId, T trigger) {
-            triggerData.put(triggerId, trigger);
-            triggerIdMap.put(triggerId.id(), triggerId);
+            if (!triggerId.trigger().equals(trigger)) {
+                throw new IllegalArgumentException("Trigger does not match its id: '" + triggerId.id() + "'");
+            }
+            triggerIds.add(triggerId);
             return this;
         }
 
@@ -0,0 +1,11 @@
+package gcm.core.epi.trigger;
+
+/**
+ * The events counted by incidence and cumulative triggers
+ */
+public enum TriggerMetric {
+    INFECTIONS,
+    CASES,
+    HOSPITALIZATIONS,
+    DEATHS
+}
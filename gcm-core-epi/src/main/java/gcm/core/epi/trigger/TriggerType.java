@@ -20,6 +20,10 @@ public enum TriggerType {
         // TODO consider paradigm of loading
     }, IncidenceTrigger.class),
 
+    ROLLING_INCIDENCE((builder, id, yamlData) -> {
+        // TODO consider paradigm of loading
+    }, RollingIncidenceTrigger.class),
+
     COMPOUND((builder, id, yamlData) -> {
         // TODO consider paradigm of loading
     }, CompoundTrigger.class);
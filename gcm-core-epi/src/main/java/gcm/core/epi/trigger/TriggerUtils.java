@@ -1,6 +1,7 @@
 package gcm.core.epi.trigger;
 
-import gcm.scenario.RegionId;
+import gcm.core.epi.identifiers.GlobalProperty;
+import gcm.scenario.PersonId;
 import gcm.scenario.RegionPropertyId;
 import gcm.simulation.Environment;
 
@@ -10,17 +11,15 @@ import java.util.Set;
 
 public class TriggerUtils {
 
+    /*
+     * Returns whether the trigger is in effect in the region of the given person, for a handle obtained once from
+     * RegionTriggerStates.getTriggerPair
+     */
     public static boolean checkIfTriggerIsInEffect(Environment environment,
-                                                   RegionId regionId,
-                                                   RegionPropertyId triggerStartProperty,
-                                                   RegionPropertyId triggerEndProperty) {
-        boolean triggerHasStarted = environment.getRegionPropertyValue(regionId, triggerStartProperty);
-        double triggerStartTime = environment.getRegionPropertyTime(regionId, triggerStartProperty);
-        boolean triggerHasEnded = environment.getRegionPropertyValue(regionId,
-                triggerEndProperty);
-        double triggerEndTime = environment.getRegionPropertyTime(regionId,
-                triggerEndProperty);
-        return triggerHasStarted && !(triggerHasEnded && triggerEndTime >= triggerStartTime);
+                                                   PersonId personId,
+                                                   RegionTriggerStates.TriggerPair triggerPair) {
+        RegionTriggerStates regionTriggerStates = environment.getGlobalPropertyValue(GlobalProperty.REGION_TRIGGER_STATES);
+        return regionTriggerStates.isInEffect(environment, triggerPair, personId);
     }
 
     public static void mergeCallbacks(Map<String, Set<TriggerCallback>> into, Map<String, Set<TriggerCallback>> from) {
@@ -38,8 +37,11 @@ public class TriggerUtils {
     }
 
     public static void addBooleanCallback(Map<String, Set<TriggerCallback>> into, String triggerId, RegionPropertyId regionPropertyId) {
-        into.computeIfAbsent(triggerId, x -> new HashSet<>()).add((env, regionId) ->
-                env.setRegionPropertyValue(regionId, regionPropertyId, true));
+        into.computeIfAbsent(triggerId, x -> new HashSet<>()).add((env, regionId) -> {
+            env.setRegionPropertyValue(regionId, regionPropertyId, true);
+            RegionTriggerStates regionTriggerStates = env.getGlobalPropertyValue(GlobalProperty.REGION_TRIGGER_STATES);
+            regionTriggerStates.handleRegionPropertySet(env, regionId, regionPropertyId);
+        });
     }
 
 }
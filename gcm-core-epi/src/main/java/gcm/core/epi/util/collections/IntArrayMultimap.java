@@ -0,0 +1,51 @@
+package gcm.core.epi.util.collections;
+
+import java.util.Arrays;
+
+/**
+ * A compact multimap from non-negative int keys to int values, stored as one growable int array per key. Values
+ * are kept in the order they were added and keys without values hold no array.
+ */
+public class IntArrayMultimap {
+
+    private static final int[] EMPTY = new int[0];
+    private static final int INITIAL_VALUE_CAPACITY = 4;
+
+    private int[][] values = new int[0][];
+    private int[] valueCounts = new int[0];
+
+    public void put(int key, int value) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Multimap keys must be non-negative: " + key);
+        }
+        if (key >= values.length) {
+            int capacity = Math.max(key + 1, values.length * 2);
+            values = Arrays.copyOf(values, capacity);
+            valueCounts = Arrays.copyOf(valueCounts, capacity);
+        }
+        int[] keyValues = values[key];
+        int count = valueCounts[key];
+        if (keyValues == null) {
+            keyValues = new int[INITIAL_VALUE_CAPACITY];
+            values[key] = keyValues;
+        } else if (count == keyValues.length) {
+            keyValues = Arrays.copyOf(keyValues, count * 2);
+            values[key] = keyValues;
+        }
+        keyValues[count] = value;
+        valueCounts[key] = count + 1;
+    }
+
+    public int size(int key) {
+        return key >= 0 && key < valueCounts.length ? valueCounts[key] : 0;
+    }
+
+    /*
+     * Returns a copy of the values for the key, in the order they were added
+     */
+    public int[] get(int key) {
+        int count = size(key);
+        return count == 0 ? EMPTY : Arrays.copyOf(values[key], count);
+    }
+
+}
@@ -0,0 +1,162 @@
+package gcm.core.epi.util.collections;
+
+import org.apache.commons.math3.random.RandomGenerator;
+
+import java.util.Arrays;
+
+/**
+ * A set of person ids partitioned by region index that supports constant time addition and removal and sampling
+ * without replacement, either from a single region or from all regions. Each region keeps a dense array of its
+ * members, and a Fenwick tree over the region sizes locates uniformly chosen members across regions in logarithmic
+ * time in the number of regions.
+ */
+public class RegionalPersonRoster {
+
+    private static final int INITIAL_REGION_CAPACITY = 4;
+
+    private final int[][] members;
+    private final int[] sizes;
+    // Fenwick tree over the number of members available for sampling in each region
+    private final int[] availableTree;
+    private int[] personRegions = new int[0];
+    private int[] personPositions = new int[0];
+    private int size;
+
+    public RegionalPersonRoster(int regionCount) {
+        members = new int[regionCount][];
+        sizes = new int[regionCount];
+        availableTree = new int[regionCount + 1];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int size(int regionIndex) {
+        return sizes[regionIndex];
+    }
+
+    public boolean contains(int personId) {
+        return personId >= 0 && personId < personPositions.length && personPositions[personId] > 0;
+    }
+
+    public void add(int personId, int regionIndex) {
+        if (contains(personId)) {
+            throw new IllegalArgumentException("Person is already in the roster: " + personId);
+        }
+        if (personId >= personPositions.length) {
+            int capacity = Math.max(personId + 1, personPositions.length * 2);
+            personPositions = Arrays.copyOf(personPositions, capacity);
+            personRegions = Arrays.copyOf(personRegions, capacity);
+        }
+        int[] regionMembers = members[regionIndex];
+        int regionSize = sizes[regionIndex];
+        if (regionMembers == null) {
+            regionMembers = new int[INITIAL_REGION_CAPACITY];
+            members[regionIndex] = regionMembers;
+        } else if (regionSize == regionMembers.length) {
+            regionMembers = Arrays.copyOf(regionMembers, regionSize * 2);
+            members[regionIndex] = regionMembers;
+        }
+        regionMembers[regionSize] = personId;
+        // Positions are stored offset by one so that zero marks people not in the roster
+        personPositions[personId] = regionSize + 1;
+        personRegions[personId] = regionIndex;
+        sizes[regionIndex] = regionSize + 1;
+        size++;
+        updateAvailable(regionIndex, 1);
+    }
+
+    public void remove(int personId) {
+        if (!contains(personId)) {
+            throw new IllegalArgumentException("Person is not in the roster: " + personId);
+        }
+        int regionIndex = personRegions[personId];
+        int lastPosition = sizes[regionIndex] - 1;
+        moveMember(regionIndex, lastPosition, personPositions[personId] - 1);
+        personPositions[personId] = 0;
+        sizes[regionIndex] = lastPosition;
+        size--;
+        updateAvailable(regionIndex, -1);
+    }
+
+    /*
+     * Returns the region index that the person was added with
+     */
+    public int getRegionIndex(int personId) {
+        if (!contains(personId)) {
+            throw new IllegalArgumentException("Person is not in the roster: " + personId);
+        }
+        return personRegions[personId];
+    }
+
+    /*
+     * Samples up to the given number of distinct members uniformly from all regions
+     */
+    public int[] sample(int count, RandomGenerator randomGenerator) {
+        int sampleSize = Math.min(count, size);
+        int[] sample = new int[sampleSize];
+        int[] regionSampleCounts = new int[sizes.length];
+        for (int i = 0; i < sampleSize; i++) {
+            // Find the region and offset of a uniformly chosen member that has not yet been sampled
+            int offset = randomGenerator.nextInt(size - i);
+            int regionIndex = 0;
+            for (int step = Integer.highestOneBit(sizes.length); step > 0; step >>= 1) {
+                int next = regionIndex + step;
+                if (next <= sizes.length && availableTree[next] <= offset) {
+                    regionIndex = next;
+                    offset -= availableTree[next];
+                }
+            }
+            sample[i] = takeMember(regionIndex, offset, regionSampleCounts[regionIndex]);
+            regionSampleCounts[regionIndex]++;
+            updateAvailable(regionIndex, -1);
+        }
+        // Sampled members remain in the roster
+        for (int regionIndex = 0; regionIndex < sizes.length; regionIndex++) {
+            if (regionSampleCounts[regionIndex] > 0) {
+                updateAvailable(regionIndex, regionSampleCounts[regionIndex]);
+            }
+        }
+        return sample;
+    }
+
+    /*
+     * Samples up to the given number of distinct members uniformly from a single region
+     */
+    public int[] sample(int regionIndex, int count, RandomGenerator randomGenerator) {
+        int regionSize = sizes[regionIndex];
+        int sampleSize = Math.min(count, regionSize);
+        int[] sample = new int[sampleSize];
+        for (int i = 0; i < sampleSize; i++) {
+            sample[i] = takeMember(regionIndex, randomGenerator.nextInt(regionSize - i), i);
+        }
+        return sample;
+    }
+
+    /*
+     * Moves the member at the given offset among those not yet sampled to the end of the unsampled members of the
+     * region, which shrinks by one, and returns it
+     */
+    private int takeMember(int regionIndex, int offset, int sampledCount) {
+        int lastAvailablePosition = sizes[regionIndex] - 1 - sampledCount;
+        int personId = members[regionIndex][offset];
+        moveMember(regionIndex, lastAvailablePosition, offset);
+        members[regionIndex][lastAvailablePosition] = personId;
+        personPositions[personId] = lastAvailablePosition + 1;
+        return personId;
+    }
+
+    private void moveMember(int regionIndex, int fromPosition, int toPosition) {
+        int personId = members[regionIndex][fromPosition];
+        members[regionIndex][toPosition] = personId;
+        personPositions[personId] = toPosition + 1;
+    }
+
+    private void updateAvailable(int regionIndex, int delta) {
+        for (int i = regionIndex + 1; i < availableTree.length; i += i & -i) {
+            availableTree[i] += delta;
+        }
+    }
+
+}
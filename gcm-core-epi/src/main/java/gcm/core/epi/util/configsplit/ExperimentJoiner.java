@@ -3,28 +3,60 @@ package gcm.core.epi.util.configsplit;
 import gcm.util.TimeElapser;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * A main method utility for joining experiment output directories into a single
  * directory containing concatenated output files with scenario renumbering.
+ * Plain report files are concatenated with channel transfers, copying only the
+ * header of the first child file, while gzip-compressed reports are
+ * concatenated into a single compressed file. Different report files are
+ * joined concurrently.
+ * <p>
+ * Optionally, reports with time or region columns are also summarized over
+ * replications in the same pass, writing a _summary.tsv file for each such
+ * report next to, or instead of, the joined file. Summaries are grouped by all
+ * non-value columns and are written out as each output directory is
+ * completed, relying on the split experiments having disjoint scenarios.
  *
  * @author Shawn Hatch
  */
 public class ExperimentJoiner {
 
+    private static final String TSV_EXTENSION = ".tsv";
+    private static final String GZIP_TSV_EXTENSION = ".tsv.gz";
+    private static final String SUMMARY_SUFFIX = "_summary.tsv";
+    private static final int BUFFER_SIZE = 1 << 16;
+
     private final Path parentDirectory;
 
     private final Path targetDirectory;
 
+    private final int threadCount;
+
+    private final JoinMode joinMode;
+
+    private final int replicationCount;
+
     private final List<Path> childDirectories = new ArrayList<>();
 
-    private ExperimentJoiner(Path parentDirectory, Path targetDirectory) {
+    private ExperimentJoiner(Path parentDirectory, Path targetDirectory, int threadCount, JoinMode joinMode,
+                             int replicationCount) {
         this.parentDirectory = parentDirectory;
         this.targetDirectory = targetDirectory;
+        this.threadCount = threadCount;
+        this.joinMode = joinMode;
+        this.replicationCount = replicationCount;
     }
 
     public static void main(String[] args) throws IOException {
@@ -34,7 +66,20 @@ public class ExperimentJoiner {
         //The directory where the joined output files should be written
         Path targetDirectory = Paths.get(args[1]);
 
-        new ExperimentJoiner(parentDirectory, targetDirectory).execute();
+        //The optional number of report files to join concurrently
+        int threadCount = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        //The optional join mode: JOIN (default), JOIN_AND_SUMMARIZE, or SUMMARIZE
+        JoinMode joinMode = args.length > 3 ? JoinMode.valueOf(args[3]) : JoinMode.JOIN;
+
+        //The number of replications of each scenario in the experiment, required when summarizing as replications
+        //without events may have no rows at all
+        int replicationCount = args.length > 4 ? Integer.parseInt(args[4]) : 0;
+        if (joinMode != JoinMode.JOIN && replicationCount < 1) {
+            throw new IllegalArgumentException("Summarizing requires the replication count of the experiment as the fifth argument");
+        }
+
+        new ExperimentJoiner(parentDirectory, targetDirectory, threadCount, joinMode, replicationCount).execute();
     }
 
     private void clearTargetDirectory() {
@@ -53,55 +98,204 @@ public class ExperimentJoiner {
                 childDirectories.add(file.toPath());
             }
         }
+        // Join in a stable order
+        Collections.sort(childDirectories);
+    }
+
+    /*
+     * Returns the report files to join, mapped to the corresponding file in each child directory in order
+     */
+    private Map<String, List<File>> determineReportFiles() {
+        Map<String, List<File>> reportFiles = new TreeMap<>();
+        for (Path path : childDirectories) {
+            for (File file : path.toFile().listFiles()) {
+                String fileName = file.getName();
+                if (fileName.endsWith(TSV_EXTENSION) || fileName.endsWith(GZIP_TSV_EXTENSION)) {
+                    reportFiles.computeIfAbsent(fileName, key -> new ArrayList<>()).add(file);
+                }
+            }
+        }
+        return reportFiles;
     }
 
-    private void transferLines(File file, boolean includeHeader) throws IOException {
-        try (FileInputStream fis = new FileInputStream(file)) {
-            BufferedReader br = new BufferedReader(new InputStreamReader(fis));
+    /*
+     * Returns the position just past the first line of the channel
+     */
+    private static long getHeaderLength(FileChannel fileChannel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long position = 0;
+        while (true) {
+            buffer.clear();
+            int bytesRead = fileChannel.read(buffer, position);
+            if (bytesRead < 0) {
+                return position;
+            }
+            for (int i = 0; i < bytesRead; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += bytesRead;
+        }
+    }
 
-            try (FileOutputStream fos = new FileOutputStream(targetDirectory.resolve(file.getName()).toFile(), true)) {
-                BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(fos));
+    private void joinFiles(String fileName, List<File> files) throws IOException {
+        try (FileChannel targetChannel = FileChannel.open(targetDirectory.resolve(fileName),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            boolean includeHeader = true;
+            for (File file : files) {
+                try (FileChannel sourceChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                    long position = includeHeader ? 0 : getHeaderLength(sourceChannel);
+                    long size = sourceChannel.size();
+                    while (position < size) {
+                        position += sourceChannel.transferTo(position, size - position, targetChannel);
+                    }
+                }
+                includeHeader = false;
+            }
+        }
+    }
 
-                if (includeHeader) {
-                    String line = br.readLine();
-                    bw.write(line);
-                    bw.newLine();
-                } else {
-                    br.readLine();
+    private void joinCompressedFiles(String fileName, List<File> files) throws IOException {
+        try (OutputStream outputStream = new GZIPOutputStream(new FileOutputStream(
+                targetDirectory.resolve(fileName).toFile()), BUFFER_SIZE)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            boolean includeHeader = true;
+            for (File file : files) {
+                try (InputStream inputStream = new GZIPInputStream(new FileInputStream(file), BUFFER_SIZE)) {
+                    if (!includeHeader) {
+                        // Skip through the end of the header line
+                        int value;
+                        do {
+                            value = inputStream.read();
+                        } while (value >= 0 && value != '\n');
+                    }
+                    int bytesRead;
+                    while ((bytesRead = inputStream.read(buffer)) >= 0) {
+                        outputStream.write(buffer, 0, bytesRead);
+                    }
                 }
+                includeHeader = false;
+            }
+        }
+    }
+
+    private static BufferedReader getReader(File file, boolean compressed) throws IOException {
+        InputStream inputStream = new FileInputStream(file);
+        if (compressed) {
+            inputStream = new GZIPInputStream(inputStream, BUFFER_SIZE);
+        }
+        return new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    private static BufferedWriter getWriter(Path path, boolean compressed) throws IOException {
+        OutputStream outputStream = new FileOutputStream(path.toFile());
+        if (compressed) {
+            outputStream = new GZIPOutputStream(outputStream, BUFFER_SIZE);
+        }
+        return new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    private static String readHeader(File file, boolean compressed) throws IOException {
+        try (BufferedReader reader = getReader(file, compressed)) {
+            String header = reader.readLine();
+            return header == null ? "" : header;
+        }
+    }
 
-                while (true) {
-                    String line = br.readLine();
-                    if (line == null) {
-                        break;
+    /*
+     * Joins the files, if required by the join mode, while summarizing their rows in the same pass
+     */
+    private void joinAndSummarizeFiles(String fileName, List<File> files, boolean compressed,
+                                       ReportSummarizer reportSummarizer) throws IOException {
+        String extension = compressed ? GZIP_TSV_EXTENSION : TSV_EXTENSION;
+        Path summaryPath = targetDirectory.resolve(fileName.substring(0, fileName.length() - extension.length()) + SUMMARY_SUFFIX);
+        try (BufferedWriter joinedWriter = joinMode == JoinMode.JOIN_AND_SUMMARIZE ?
+                getWriter(targetDirectory.resolve(fileName), compressed) : null;
+             BufferedWriter summaryWriter = getWriter(summaryPath, false)) {
+            boolean includeHeader = true;
+            for (File file : files) {
+                try (BufferedReader reader = getReader(file, compressed)) {
+                    String header = reader.readLine();
+                    if (includeHeader && joinedWriter != null && header != null) {
+                        joinedWriter.write(header);
+                        joinedWriter.newLine();
+                    }
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (joinedWriter != null) {
+                            joinedWriter.write(line);
+                            joinedWriter.newLine();
+                        }
+                        reportSummarizer.addLine(line);
                     }
-                    bw.write(line);
-                    bw.newLine();
                 }
-                bw.flush();
+                // Each directory holds complete scenarios
+                reportSummarizer.writeSummaries(summaryWriter);
+                includeHeader = false;
             }
         }
     }
 
+    private void joinReport(String fileName, List<File> files) throws IOException {
+        boolean compressed = fileName.endsWith(GZIP_TSV_EXTENSION);
+        if (joinMode != JoinMode.JOIN) {
+            Optional<ReportSummarizer> reportSummarizer = ReportSummarizer.forHeader(readHeader(files.get(0), compressed),
+                    replicationCount);
+            if (reportSummarizer.isPresent()) {
+                joinAndSummarizeFiles(fileName, files, compressed, reportSummarizer.get());
+                return;
+            }
+        }
+        // Reports that cannot be summarized are always joined
+        if (compressed) {
+            joinCompressedFiles(fileName, files);
+        } else {
+            joinFiles(fileName, files);
+        }
+    }
+
     private void execute() throws IOException {
         clearTargetDirectory();
         determineChildDirectories();
+        Map<String, List<File>> reportFiles = determineReportFiles();
 
         // transfer the contents
-        int progressCount = 0;
-
-        boolean includeHeader = true;
+        AtomicInteger progressCount = new AtomicInteger();
         TimeElapser timeElapser = new TimeElapser();
-        for (Path path : childDirectories) {
-            for (File file : path.toFile().listFiles()) {
-                if (file.getName().endsWith(".tsv")) {
-                    transferLines(file, includeHeader);
-                }
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.max(1, Math.min(threadCount, reportFiles.size())));
+        List<Future<?>> futures = new ArrayList<>();
+        for (Map.Entry<String, List<File>> entry : reportFiles.entrySet()) {
+            futures.add(executorService.submit(() -> {
+                joinReport(entry.getKey(), entry.getValue());
+                System.out.println("Progress: joined " + entry.getKey() + " from " + entry.getValue().size() +
+                        " directories (" + progressCount.incrementAndGet() + " of " + reportFiles.size() + " reports) after " +
+                        timeElapser.getElapsedSeconds() + " seconds");
+                return null;
+            }));
+        }
+        executorService.shutdown();
+        try {
+            for (Future<?> future : futures) {
+                future.get();
             }
-            progressCount++;
-            double projectedTimeRemaining = (timeElapser.getElapsedSeconds() / progressCount) * (childDirectories.size() - progressCount);
-            includeHeader = false;
-            System.out.println("Progress: " + progressCount + " of " + childDirectories.size() + " with " + projectedTimeRemaining + " seconds remaining");
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IOException("Failed to join experiment output", e);
         }
     }
+
+    private enum JoinMode {
+        /*
+         * Join the report files only
+         */
+        JOIN,
+        /*
+         * Join the report files and write summaries of those that can be summarized
+         */
+        JOIN_AND_SUMMARIZE,
+        /*
+         * Write summaries in place of joined report files where possible
+         */
+        SUMMARIZE
+    }
 }
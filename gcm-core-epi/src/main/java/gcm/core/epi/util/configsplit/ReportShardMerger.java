@@ -0,0 +1,216 @@
+package gcm.core.epi.util.configsplit;
+
+import gcm.util.TimeElapser;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * A utility for merging the per-thread report shards written when an
+ * experiment is run with sharded report output. Each shard holds the output of
+ * a contiguous block of replications for every scenario, with replications
+ * numbered from one within the shard. The merged file restores global
+ * replication numbering and orders rows by (scenario, replication).
+ * <p>
+ * Can be run on demand as a main method with arguments: output directory,
+ * total replication count, shard count, and the report file names to merge.
+ */
+public class ReportShardMerger {
+
+    private static final String SCENARIO_COLUMN = "Scenario";
+    private static final String REPLICATION_COLUMN = "Replication";
+
+    private final Path directory;
+    private final int shardCount;
+    private final int[] replicationOffsets;
+
+    public ReportShardMerger(Path directory, int replications, int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be positive");
+        }
+        this.directory = directory;
+        this.shardCount = shardCount;
+        this.replicationOffsets = new int[shardCount];
+        for (int shard = 1; shard < shardCount; shard++) {
+            replicationOffsets[shard] = replicationOffsets[shard - 1] + getShardReplicationCount(replications, shardCount, shard - 1);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        // The directory containing the report shards
+        Path directory = Paths.get(args[0]);
+
+        // The total number of replications in the experiment
+        int replications = Integer.parseInt(args[1]);
+
+        // The number of shards that were written for each report
+        int shardCount = Integer.parseInt(args[2]);
+
+        ReportShardMerger reportShardMerger = new ReportShardMerger(directory, replications, shardCount);
+        TimeElapser timeElapser = new TimeElapser();
+        for (int i = 3; i < args.length; i++) {
+            reportShardMerger.merge(args[i]);
+        }
+        System.out.println("Merged " + (args.length - 3) + " reports in " + timeElapser.getElapsedSeconds() + " seconds");
+    }
+
+    /*
+     * Returns the number of replications handled by the given shard when the replications are split as evenly
+     * as possible with the remainder going to the lowest numbered shards
+     */
+    public static int getShardReplicationCount(int replications, int shardCount, int shard) {
+        return replications / shardCount + (shard < replications % shardCount ? 1 : 0);
+    }
+
+    /*
+     * Returns the file name of the given shard, formed by inserting the shard label before the file extension
+     * (e.g. incidence_report.tsv -> incidence_report.t03.tsv)
+     */
+    public static String getShardFileName(String fileName, int shard) {
+        String shardLabel = String.format(".t%02d", shard);
+        int extensionIndex = fileName.lastIndexOf('.');
+        if (extensionIndex < 0) {
+            return fileName + shardLabel;
+        }
+        return fileName.substring(0, extensionIndex) + shardLabel + fileName.substring(extensionIndex);
+    }
+
+    /**
+     * Merges the shards of the given report file into a single file of that name, deleting the shards afterwards.
+     * Each shard must list its rows in scenario order, as is the case for a single-threaded run, so that a
+     * streaming k-way merge suffices. A shard out of scenario order is an error, and its shards are left in place.
+     */
+    public void merge(String fileName) throws IOException {
+        List<ShardCursor> shardCursors = new ArrayList<>();
+        String header = null;
+        try {
+            for (int shard = 0; shard < shardCount; shard++) {
+                Path shardPath = directory.resolve(getShardFileName(fileName, shard));
+                if (!Files.exists(shardPath)) {
+                    continue;
+                }
+                BufferedReader reader = Files.newBufferedReader(shardPath, StandardCharsets.UTF_8);
+                ShardCursor shardCursor = new ShardCursor(shardPath, shard, reader, replicationOffsets[shard]);
+                shardCursors.add(shardCursor);
+                String shardHeader = reader.readLine();
+                if (shardHeader == null) {
+                    continue;
+                }
+                if (header == null) {
+                    header = shardHeader;
+                } else if (!header.equals(shardHeader)) {
+                    throw new RuntimeException("Report shards for " + fileName + " have inconsistent headers");
+                }
+                List<String> columns = Arrays.asList(shardHeader.split("\t", -1));
+                shardCursor.scenarioColumn = columns.indexOf(SCENARIO_COLUMN);
+                shardCursor.replicationColumn = columns.indexOf(REPLICATION_COLUMN);
+            }
+            if (header == null) {
+                return;
+            }
+
+            PriorityQueue<ShardCursor> queue = new PriorityQueue<>(Math.max(1, shardCursors.size()),
+                    Comparator.comparingLong((ShardCursor cursor) -> cursor.scenario)
+                            .thenComparingInt(cursor -> cursor.shard));
+            for (ShardCursor shardCursor : shardCursors) {
+                if (shardCursor.advance()) {
+                    queue.add(shardCursor);
+                }
+            }
+
+            try (BufferedWriter writer = Files.newBufferedWriter(directory.resolve(fileName), StandardCharsets.UTF_8)) {
+                writer.write(header);
+                writer.newLine();
+                while (!queue.isEmpty()) {
+                    ShardCursor shardCursor = queue.poll();
+                    // Drain rows from this shard while it remains on the same scenario
+                    long scenario = shardCursor.scenario;
+                    do {
+                        shardCursor.write(writer);
+                    } while (shardCursor.advance() && shardCursor.scenario == scenario);
+                    if (shardCursor.line != null) {
+                        queue.add(shardCursor);
+                    }
+                }
+            }
+        } finally {
+            for (ShardCursor shardCursor : shardCursors) {
+                shardCursor.reader.close();
+            }
+        }
+
+        for (int shard = 0; shard < shardCount; shard++) {
+            Files.deleteIfExists(directory.resolve(getShardFileName(fileName, shard)));
+        }
+    }
+
+    private static class ShardCursor {
+        private final Path path;
+        private final int shard;
+        private final BufferedReader reader;
+        private final int replicationOffset;
+        private int scenarioColumn = -1;
+        private int replicationColumn = -1;
+        private String line;
+        private long scenario;
+
+        private ShardCursor(Path path, int shard, BufferedReader reader, int replicationOffset) {
+            this.path = path;
+            this.shard = shard;
+            this.reader = reader;
+            this.replicationOffset = replicationOffset;
+        }
+
+        private static int getFieldStart(String line, int column) {
+            int start = 0;
+            for (int i = 0; i < column; i++) {
+                start = line.indexOf('\t', start) + 1;
+                if (start == 0) {
+                    throw new RuntimeException("Report line has too few columns: " + line);
+                }
+            }
+            return start;
+        }
+
+        private static int getFieldEnd(String line, int start) {
+            int end = line.indexOf('\t', start);
+            return end < 0 ? line.length() : end;
+        }
+
+        private boolean advance() throws IOException {
+            line = reader.readLine();
+            if (line == null) {
+                return false;
+            }
+            if (scenarioColumn >= 0) {
+                int start = getFieldStart(line, scenarioColumn);
+                long previousScenario = scenario;
+                scenario = Long.parseLong(line.substring(start, getFieldEnd(line, start)));
+                if (scenario < previousScenario) {
+                    throw new RuntimeException("Report shard " + path + " is not in scenario order: scenario " +
+                            scenario + " follows scenario " + previousScenario);
+                }
+            }
+            return true;
+        }
+
+        private void write(Writer writer) throws IOException {
+            if (replicationColumn < 0 || replicationOffset == 0) {
+                writer.write(line);
+            } else {
+                int start = getFieldStart(line, replicationColumn);
+                int end = getFieldEnd(line, start);
+                int replication = Integer.parseInt(line.substring(start, end)) + replicationOffset;
+                writer.write(line, 0, start);
+                writer.write(Integer.toString(replication));
+                writer.write(line, end, line.length() - end);
+            }
+            writer.write(System.lineSeparator());
+        }
+    }
+
+}
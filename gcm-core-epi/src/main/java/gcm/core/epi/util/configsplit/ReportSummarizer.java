@@ -0,0 +1,187 @@
+package gcm.core.epi.util.configsplit;
+
+import gcm.core.epi.util.statistics.SummaryStatistics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Streaming summaries over replications of the rows of a report. Rows are grouped by every column other than
+ * the replication and the value columns, where the value columns are the numeric columns that follow the time
+ * and region columns of the report. As the reports omit rows with zero values, a group missing from a
+ * replication of its scenario counts as a zero, while a blank value in a row that is present counts as missing and
+ * is left out of the summary. The number of replications of each scenario is given rather than inferred from the
+ * rows, as a replication without events may have no rows at all. Memory is proportional to the number of groups
+ * held, which are written out and released whenever the caller knows that their scenarios are complete.
+ */
+class ReportSummarizer {
+
+    private static final String SCENARIO_COLUMN = "Scenario";
+    private static final String REPLICATION_COLUMN = "Replication";
+    private static final List<String> TIME_AND_REGION_COLUMNS = Arrays.asList("Day", "Hour", "Region");
+
+    private final String[] columnNames;
+    private final int scenarioColumn;
+    private final int replicationColumn;
+    private final int firstReportColumn;
+    private final int replicationCount;
+    private int[] keyColumns;
+    private int[] valueColumns;
+    private boolean headerWritten;
+
+    private final Map<String, GroupSummary> groupSummaries = new LinkedHashMap<>();
+    private final Map<String, Set<String>> scenarioReplications = new HashMap<>();
+
+    private ReportSummarizer(String[] columnNames, int scenarioColumn, int replicationColumn, int firstReportColumn,
+                             int replicationCount) {
+        this.columnNames = columnNames;
+        this.scenarioColumn = scenarioColumn;
+        this.replicationColumn = replicationColumn;
+        this.firstReportColumn = firstReportColumn;
+        this.replicationCount = replicationCount;
+    }
+
+    /*
+     * Returns a summarizer for a report with the given header from an experiment with the given number of
+     * replications of each scenario, or empty if the report has no scenario, replication, time or region columns
+     * to summarize by
+     */
+    static Optional<ReportSummarizer> forHeader(String header, int replicationCount) {
+        if (replicationCount < 1) {
+            throw new IllegalArgumentException("Summarizing requires a positive replication count");
+        }
+        String[] columnNames = header.split("\t", -1);
+        List<String> columnList = Arrays.asList(columnNames);
+        int scenarioColumn = columnList.indexOf(SCENARIO_COLUMN);
+        int replicationColumn = columnList.indexOf(REPLICATION_COLUMN);
+        int lastTimeOrRegionColumn = -1;
+        for (String column : TIME_AND_REGION_COLUMNS) {
+            lastTimeOrRegionColumn = Math.max(lastTimeOrRegionColumn, columnList.indexOf(column));
+        }
+        if (scenarioColumn < 0 || replicationColumn < 0 || lastTimeOrRegionColumn < 0) {
+            return Optional.empty();
+        }
+        return Optional.of(new ReportSummarizer(columnNames, scenarioColumn, replicationColumn, lastTimeOrRegionColumn + 1,
+                replicationCount));
+    }
+
+    private static boolean isNumeric(String value) {
+        try {
+            Double.parseDouble(value);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /*
+     * Classifies the columns using the first data row
+     */
+    private void determineColumns(String[] fields) {
+        List<Integer> keyColumnList = new ArrayList<>();
+        List<Integer> valueColumnList = new ArrayList<>();
+        for (int column = 0; column < columnNames.length; column++) {
+            if (column == replicationColumn) {
+                continue;
+            }
+            if (column >= firstReportColumn && isNumeric(fields[column])) {
+                valueColumnList.add(column);
+            } else {
+                keyColumnList.add(column);
+            }
+        }
+        keyColumns = keyColumnList.stream().mapToInt(Integer::intValue).toArray();
+        valueColumns = valueColumnList.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private String getSummaryHeader() {
+        StringJoiner stringJoiner = new StringJoiner("\t");
+        for (int keyColumn : keyColumns) {
+            stringJoiner.add(columnNames[keyColumn]);
+        }
+        stringJoiner.add("Metric");
+        for (String field : SummaryStatistics.getReportedFields()) {
+            stringJoiner.add(field);
+        }
+        return stringJoiner.toString();
+    }
+
+    void addLine(String line) {
+        String[] fields = line.split("\t", -1);
+        if (fields.length != columnNames.length) {
+            throw new RuntimeException("Report line does not match header: " + line);
+        }
+        if (keyColumns == null) {
+            determineColumns(fields);
+        }
+        String scenario = fields[scenarioColumn];
+        Set<String> replications = scenarioReplications.computeIfAbsent(scenario, key -> new HashSet<>());
+        if (replications.add(fields[replicationColumn]) && replications.size() > replicationCount) {
+            throw new RuntimeException("Scenario " + scenario + " has more than " + replicationCount + " replications");
+        }
+
+        StringJoiner groupKeyJoiner = new StringJoiner("\t");
+        for (int keyColumn : keyColumns) {
+            groupKeyJoiner.add(fields[keyColumn]);
+        }
+        GroupSummary groupSummary = groupSummaries.computeIfAbsent(groupKeyJoiner.toString(),
+                key -> new GroupSummary(valueColumns.length));
+        for (int i = 0; i < valueColumns.length; i++) {
+            String value = fields[valueColumns[i]];
+            if (value.isEmpty()) {
+                groupSummary.missingCounts[i]++;
+            } else {
+                groupSummary.summaries[i].add(Double.parseDouble(value));
+            }
+        }
+    }
+
+    /*
+     * Writes the summaries of all groups held and releases them, preceded by the summary header on first use
+     */
+    void writeSummaries(BufferedWriter writer) throws IOException {
+        if (keyColumns == null) {
+            return;
+        }
+        if (!headerWritten) {
+            writer.write(getSummaryHeader());
+            writer.newLine();
+            headerWritten = true;
+        }
+        for (Map.Entry<String, GroupSummary> entry : groupSummaries.entrySet()) {
+            GroupSummary groupSummary = entry.getValue();
+            for (int i = 0; i < valueColumns.length; i++) {
+                SummaryStatistics summaryStatistics = groupSummary.summaries[i];
+                // Replications without a row for the group had a value of zero
+                summaryStatistics.add(0,
+                        replicationCount - summaryStatistics.getCount() - groupSummary.missingCounts[i]);
+                writer.write(entry.getKey());
+                writer.write('\t');
+                writer.write(columnNames[valueColumns[i]]);
+                for (Object value : summaryStatistics.getReportedValues()) {
+                    writer.write('\t');
+                    writer.write(String.valueOf(value));
+                }
+                writer.newLine();
+            }
+        }
+        groupSummaries.clear();
+        scenarioReplications.clear();
+    }
+
+    private static class GroupSummary {
+        private final SummaryStatistics[] summaries;
+        // The number of rows with a blank value, which are neither summarized nor counted as zero
+        private final int[] missingCounts;
+
+        private GroupSummary(int valueCount) {
+            this.summaries = new SummaryStatistics[valueCount];
+            this.missingCounts = new int[valueCount];
+            for (int i = 0; i < valueCount; i++) {
+                summaries[i] = new SummaryStatistics();
+            }
+        }
+    }
+
+}
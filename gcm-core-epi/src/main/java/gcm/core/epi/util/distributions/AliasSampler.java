@@ -0,0 +1,85 @@
+package gcm.core.epi.util.distributions;
+
+import org.apache.commons.math3.random.RandomGenerator;
+
+import java.util.*;
+
+/**
+ * An immutable discrete distribution over a fixed set of items that is sampled in constant time, using a single
+ * uniform draw, by Vose's alias method
+ */
+public class AliasSampler<T> {
+
+    private final List<T> items;
+    private final double[] probabilities;
+    private final int[] aliases;
+
+    public AliasSampler(Map<T, Double> weights) {
+        items = Collections.unmodifiableList(new ArrayList<>(weights.keySet()));
+        int itemCount = items.size();
+        probabilities = new double[itemCount];
+        aliases = new int[itemCount];
+
+        double totalWeight = 0;
+        for (T item : items) {
+            double weight = weights.get(item);
+            if (weight < 0 || Double.isNaN(weight) || Double.isInfinite(weight)) {
+                throw new IllegalArgumentException("Sampling weight must be finite and non-negative: " + weight);
+            }
+            totalWeight += weight;
+        }
+        if (totalWeight <= 0) {
+            throw new IllegalArgumentException("Sampling weights must have a positive sum");
+        }
+
+        // Scale weights so that they average to one and pair each under-full item with an over-full alias
+        double[] scaledWeights = new double[itemCount];
+        Deque<Integer> small = new ArrayDeque<>();
+        Deque<Integer> large = new ArrayDeque<>();
+        for (int i = 0; i < itemCount; i++) {
+            scaledWeights[i] = weights.get(items.get(i)) * itemCount / totalWeight;
+            if (scaledWeights[i] < 1) {
+                small.push(i);
+            } else {
+                large.push(i);
+            }
+        }
+        while (!small.isEmpty() && !large.isEmpty()) {
+            int smallIndex = small.pop();
+            int largeIndex = large.pop();
+            probabilities[smallIndex] = scaledWeights[smallIndex];
+            aliases[smallIndex] = largeIndex;
+            scaledWeights[largeIndex] = (scaledWeights[largeIndex] + scaledWeights[smallIndex]) - 1;
+            if (scaledWeights[largeIndex] < 1) {
+                small.push(largeIndex);
+            } else {
+                large.push(largeIndex);
+            }
+        }
+        // Anything remaining is full up to rounding error
+        while (!large.isEmpty()) {
+            int index = large.pop();
+            probabilities[index] = 1;
+            aliases[index] = index;
+        }
+        while (!small.isEmpty()) {
+            int index = small.pop();
+            probabilities[index] = 1;
+            aliases[index] = index;
+        }
+    }
+
+    /*
+     * The items that may be sampled, in the iteration order of the weights given at construction
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    public T sample(RandomGenerator randomGenerator) {
+        double scaledDraw = randomGenerator.nextDouble() * items.size();
+        int index = Math.min((int) scaledDraw, items.size() - 1);
+        return scaledDraw - index < probabilities[index] ? items.get(index) : items.get(aliases[index]);
+    }
+
+}
@@ -0,0 +1,225 @@
+package gcm.core.epi.util.distributions;
+
+import org.apache.commons.math3.random.RandomGenerator;
+
+/**
+ * Samples binomial random variables with a fixed number of trials and success probability. Small means are sampled
+ * by sequential inversion and larger ones by the BTPE algorithm of Kachitvichyanukul and Schmeiser (1988), with the
+ * setup for either cached at construction. The static method repeats the setup, which is only arithmetic, for
+ * parameters that vary between draws.
+ */
+public class BinomialSampler {
+
+    // Mean at or above which BTPE is used, for success probabilities of at most one half
+    private static final double BTPE_THRESHOLD = 30;
+
+    private final int n;
+    private final boolean flip;
+    private final double r;
+    private final double q;
+    private final boolean useBtpe;
+    // Inversion setup
+    private final double qn;
+    private final double bound;
+    // BTPE setup
+    private final double nrq;
+    private final int m;
+    private final double p1;
+    private final double xm;
+    private final double xl;
+    private final double xr;
+    private final double c;
+    private final double laml;
+    private final double lamr;
+    private final double p2;
+    private final double p3;
+    private final double p4;
+
+    public BinomialSampler(int n, double p) {
+        validate(n, p);
+        this.n = n;
+        this.flip = p > 0.5;
+        this.r = Math.min(p, 1 - p);
+        this.q = 1 - r;
+        this.useBtpe = n * r >= BTPE_THRESHOLD;
+        this.qn = Math.exp(n * Math.log(q));
+        this.bound = Math.min(n, n * r + 10 * Math.sqrt(n * r * q + 1));
+        this.nrq = n * r * q;
+        double fm = n * r + r;
+        this.m = (int) Math.floor(fm);
+        this.p1 = Math.floor(2.195 * Math.sqrt(nrq) - 4.6 * q) + 0.5;
+        this.xm = m + 0.5;
+        this.xl = xm - p1;
+        this.xr = xm + p1;
+        this.c = 0.134 + 20.5 / (15.3 + m);
+        double a = (fm - xl) / (fm - xl * r);
+        this.laml = a * (1 + a / 2);
+        a = (xr - fm) / (xr * q);
+        this.lamr = a * (1 + a / 2);
+        this.p2 = p1 * (1 + 2 * c);
+        this.p3 = p2 + c / laml;
+        this.p4 = p3 + c / lamr;
+    }
+
+    public static int sample(RandomGenerator randomGenerator, int n, double p) {
+        validate(n, p);
+        if (n == 0 || p == 0) {
+            return 0;
+        }
+        if (p == 1) {
+            return n;
+        }
+        double r = Math.min(p, 1 - p);
+        double q = 1 - r;
+        int value;
+        if (n * r >= BTPE_THRESHOLD) {
+            double nrq = n * r * q;
+            double fm = n * r + r;
+            int m = (int) Math.floor(fm);
+            double p1 = Math.floor(2.195 * Math.sqrt(nrq) - 4.6 * q) + 0.5;
+            double xm = m + 0.5;
+            double xl = xm - p1;
+            double xr = xm + p1;
+            double c = 0.134 + 20.5 / (15.3 + m);
+            double a = (fm - xl) / (fm - xl * r);
+            double laml = a * (1 + a / 2);
+            a = (xr - fm) / (xr * q);
+            double lamr = a * (1 + a / 2);
+            double p2 = p1 * (1 + 2 * c);
+            double p3 = p2 + c / laml;
+            double p4 = p3 + c / lamr;
+            value = sampleBtpe(randomGenerator, n, r, q, nrq, m, p1, xm, xl, xr, c, laml, lamr, p2, p3, p4);
+        } else {
+            value = sampleInversion(randomGenerator, n, r, q, Math.exp(n * Math.log(q)),
+                    Math.min(n, n * r + 10 * Math.sqrt(n * r * q + 1)));
+        }
+        return p > 0.5 ? n - value : value;
+    }
+
+    private static void validate(int n, double p) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Binomial number of trials must be non-negative: " + n);
+        }
+        if (!(p >= 0 && p <= 1)) {
+            throw new IllegalArgumentException("Binomial probability must be between 0 and 1: " + p);
+        }
+    }
+
+    private static int sampleInversion(RandomGenerator randomGenerator, int n, double r, double q, double qn,
+                                       double bound) {
+        int x = 0;
+        double px = qn;
+        double u = randomGenerator.nextDouble();
+        while (u > px) {
+            x++;
+            if (x > bound) {
+                // Restart rather than accumulate rounding error in the far tail
+                x = 0;
+                px = qn;
+                u = randomGenerator.nextDouble();
+            } else {
+                u -= px;
+                px = ((n - x + 1) * r * px) / (x * q);
+            }
+        }
+        return x;
+    }
+
+    private static int sampleBtpe(RandomGenerator randomGenerator, int n, double r, double q, double nrq, int m,
+                                  double p1, double xm, double xl, double xr, double c, double laml, double lamr,
+                                  double p2, double p3, double p4) {
+        while (true) {
+            // Choose a region of the majorizing function
+            double u = randomGenerator.nextDouble() * p4;
+            double v = randomGenerator.nextDouble();
+            int y;
+            if (u <= p1) {
+                // Triangular region, accept immediately
+                return (int) Math.floor(xm - p1 * v + u);
+            } else if (u <= p2) {
+                // Parallelograms
+                double x = xl + (u - p1) / c;
+                v = v * c + 1 - Math.abs(m - x + 0.5) / p1;
+                if (v > 1) {
+                    continue;
+                }
+                y = (int) Math.floor(x);
+            } else if (u <= p3) {
+                // Left exponential tail
+                double x = Math.floor(xl + Math.log(v) / laml);
+                if (x < 0) {
+                    continue;
+                }
+                y = (int) x;
+                v = v * (u - p2) * laml;
+            } else {
+                // Right exponential tail
+                double x = Math.floor(xr - Math.log(v) / lamr);
+                if (x > n) {
+                    continue;
+                }
+                y = (int) x;
+                v = v * (u - p3) * lamr;
+            }
+
+            int k = Math.abs(y - m);
+            if (k <= 20 || k >= nrq / 2 - 1) {
+                // Evaluate the probability ratio recursively
+                double s = r / q;
+                double a = s * (n + 1);
+                double f = 1;
+                if (m < y) {
+                    for (int i = m + 1; i <= y; i++) {
+                        f *= a / i - s;
+                    }
+                } else if (m > y) {
+                    for (int i = y + 1; i <= m; i++) {
+                        f /= a / i - s;
+                    }
+                }
+                if (v <= f) {
+                    return y;
+                }
+            } else {
+                // Squeeze using upper and lower bounds on the log of the probability ratio
+                double rho = (k / nrq) * ((k * (k / 3.0 + 0.625) + 0.1666666666666667) / nrq + 0.5);
+                double t = -k * (double) k / (2 * nrq);
+                double logV = Math.log(v);
+                if (logV < t - rho) {
+                    return y;
+                }
+                if (logV > t + rho) {
+                    continue;
+                }
+                // Final comparison using Stirling's formula
+                double x1 = y + 1;
+                double f1 = m + 1;
+                double z = n + 1 - m;
+                double w = n - y + 1;
+                if (logV <= xm * Math.log(f1 / x1)
+                        + (n - m + 0.5) * Math.log(z / w)
+                        + (y - m) * Math.log(w * r / (x1 * q))
+                        + stirlingCorrection(f1) + stirlingCorrection(z)
+                        + stirlingCorrection(x1) + stirlingCorrection(w)) {
+                    return y;
+                }
+            }
+        }
+    }
+
+    private static double stirlingCorrection(double x) {
+        double x2 = x * x;
+        return (13860.0 - (462.0 - (132.0 - (99.0 - 140.0 / x2) / x2) / x2) / x2) / x / 166320.0;
+    }
+
+    public int sample(RandomGenerator randomGenerator) {
+        if (n == 0 || r == 0) {
+            return flip ? n : 0;
+        }
+        int value = useBtpe ?
+                sampleBtpe(randomGenerator, n, r, q, nrq, m, p1, xm, xl, xr, c, laml, lamr, p2, p3, p4) :
+                sampleInversion(randomGenerator, n, r, q, qn, bound);
+        return flip ? n - value : value;
+    }
+
+}
@@ -0,0 +1,64 @@
+package gcm.core.epi.util.distributions;
+
+import org.apache.commons.math3.random.AbstractRandomGenerator;
+
+/**
+ * A random generator whose values are a pure function of a seed, a stream, a counter, and the number of values drawn
+ * since the counter was set. Values for a given counter are therefore the same regardless of which thread draws them
+ * or in which order counters are visited. Mixing uses the SplitMix64 finalizer.
+ */
+public class CounterBasedRandomGenerator extends AbstractRandomGenerator {
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long streamKey;
+    private long counterKey;
+    private long draw;
+
+    public CounterBasedRandomGenerator(long seed, long stream) {
+        streamKey = getStreamSeed(seed, stream);
+        setCounter(0);
+    }
+
+    /*
+     * Derives the seed of a stream from a base seed, so that streams of nearby seeds do not coincide as they would
+     * with seed + stream
+     */
+    public static long getStreamSeed(long seed, long stream) {
+        return mix64(seed ^ mix64(stream));
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /*
+     * Restarts the sequence of values for the given counter, such as a person or group index, discarding the
+     * cached Gaussian deviate so that nextGaussian does not carry over from the previous counter
+     */
+    public void setCounter(long counter) {
+        counterKey = mix64(streamKey + counter * GOLDEN_GAMMA);
+        draw = 0;
+        clear();
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        streamKey = mix64(seed);
+        setCounter(0);
+    }
+
+    @Override
+    public long nextLong() {
+        draw++;
+        return mix64(counterKey + draw * GOLDEN_GAMMA);
+    }
+
+    @Override
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+}
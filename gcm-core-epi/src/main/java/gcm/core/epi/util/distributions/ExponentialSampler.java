@@ -0,0 +1,29 @@
+package gcm.core.epi.util.distributions;
+
+import org.apache.commons.math3.random.RandomGenerator;
+
+/**
+ * Samples exponential random variables with a fixed mean by inversion, using a single uniform draw and no
+ * per-draw objects
+ */
+public class ExponentialSampler {
+
+    private final double mean;
+
+    public ExponentialSampler(double mean) {
+        if (!(mean > 0)) {
+            throw new IllegalArgumentException("Exponential mean must be positive: " + mean);
+        }
+        this.mean = mean;
+    }
+
+    public static double sample(RandomGenerator randomGenerator, double mean) {
+        // nextDouble is in [0, 1) so the logarithm is finite
+        return -mean * Math.log1p(-randomGenerator.nextDouble());
+    }
+
+    public double sample(RandomGenerator randomGenerator) {
+        return sample(randomGenerator, mean);
+    }
+
+}
@@ -0,0 +1,80 @@
+package gcm.core.epi.util.distributions;
+
+import org.apache.commons.math3.random.RandomGenerator;
+
+/**
+ * Samples gamma random variables with a fixed shape and scale by the Marsaglia-Tsang squeeze method, boosting
+ * shapes below one by a power of a uniform draw. The setup is a handful of arithmetic operations, so the static
+ * method may be used when parameters vary between draws.
+ */
+public class GammaSampler {
+
+    private final double shape;
+    private final double scale;
+    private final double d;
+    private final double c;
+
+    public GammaSampler(double shape, double scale) {
+        if (!(shape > 0) || !(scale > 0)) {
+            throw new IllegalArgumentException("Gamma shape and scale must be positive: " + shape + ", " + scale);
+        }
+        this.shape = shape;
+        this.scale = scale;
+        this.d = getD(shape);
+        this.c = getC(d);
+    }
+
+    public static double sample(RandomGenerator randomGenerator, double shape, double scale) {
+        if (!(shape > 0) || !(scale > 0)) {
+            throw new IllegalArgumentException("Gamma shape and scale must be positive: " + shape + ", " + scale);
+        }
+        double d = getD(shape);
+        return sample(randomGenerator, shape, scale, d, getC(d));
+    }
+
+    public static double sampleFromMeanAndCOV(RandomGenerator randomGenerator, double mean, double cov) {
+        return sample(randomGenerator, GammaHelper.getShapeFromCOV(cov), GammaHelper.getScaleFromMeanAndCOV(mean, cov));
+    }
+
+    public static double sampleFromMeanAndSD(RandomGenerator randomGenerator, double mean, double sd) {
+        return sample(randomGenerator, GammaHelper.getShapeFromMeanAndSD(mean, sd),
+                GammaHelper.getScaleFromMeanAndSD(mean, sd));
+    }
+
+    private static double getD(double shape) {
+        return (shape < 1 ? shape + 1 : shape) - 1.0 / 3.0;
+    }
+
+    private static double getC(double d) {
+        return 1.0 / Math.sqrt(9 * d);
+    }
+
+    private static double sample(RandomGenerator randomGenerator, double shape, double scale, double d, double c) {
+        double value;
+        while (true) {
+            double x = randomGenerator.nextGaussian();
+            double v = 1 + c * x;
+            if (v <= 0) {
+                continue;
+            }
+            v = v * v * v;
+            double u = randomGenerator.nextDouble();
+            double xSquared = x * x;
+            if (u < 1 - 0.0331 * xSquared * xSquared ||
+                    Math.log(u) < 0.5 * xSquared + d * (1 - v + Math.log(v))) {
+                value = d * v;
+                break;
+            }
+        }
+        if (shape < 1) {
+            // Gamma(shape) is Gamma(shape + 1) times U^(1 / shape)
+            value *= Math.pow(1 - randomGenerator.nextDouble(), 1 / shape);
+        }
+        return value * scale;
+    }
+
+    public double sample(RandomGenerator randomGenerator) {
+        return sample(randomGenerator, shape, scale, d, c);
+    }
+
+}
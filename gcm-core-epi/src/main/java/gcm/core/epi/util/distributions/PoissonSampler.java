@@ -0,0 +1,67 @@
+package gcm.core.epi.util.distributions;
+
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.special.Gamma;
+
+/**
+ * Samples Poisson random variables without allocation, by sequential inversion for small means and by the PTRS
+ * transformed rejection method of Hörmann (1993) otherwise.
+ */
+public class PoissonSampler {
+
+    // Mean at or above which PTRS is used
+    private static final double PTRS_THRESHOLD = 10;
+
+    private PoissonSampler() {
+
+    }
+
+    public static int sample(RandomGenerator randomGenerator, double mean) {
+        if (!(mean >= 0) || Double.isInfinite(mean)) {
+            throw new IllegalArgumentException("Poisson mean must be finite and non-negative: " + mean);
+        }
+        if (mean == 0) {
+            return 0;
+        }
+        return mean < PTRS_THRESHOLD ? sampleInversion(randomGenerator, mean) : samplePtrs(randomGenerator, mean);
+    }
+
+    private static int sampleInversion(RandomGenerator randomGenerator, double mean) {
+        int k = 0;
+        double probability = Math.exp(-mean);
+        double cumulativeProbability = probability;
+        double u = randomGenerator.nextDouble();
+        // The cap guards against rounding leaving the cumulative probability just short of the draw
+        while (u > cumulativeProbability && k < 1000) {
+            k++;
+            probability *= mean / k;
+            cumulativeProbability += probability;
+        }
+        return k;
+    }
+
+    private static int samplePtrs(RandomGenerator randomGenerator, double mean) {
+        double logMean = Math.log(mean);
+        double b = 0.931 + 2.53 * Math.sqrt(mean);
+        double a = -0.059 + 0.02483 * b;
+        double logInverseAlpha = Math.log(1.1239 + 1.1328 / (b - 3.4));
+        double vr = 0.9277 - 3.6224 / (b - 2);
+        while (true) {
+            double u = randomGenerator.nextDouble() - 0.5;
+            double v = randomGenerator.nextDouble();
+            double us = 0.5 - Math.abs(u);
+            double k = Math.floor((2 * a / us + b) * u + mean + 0.43);
+            if (us >= 0.07 && v <= vr) {
+                return (int) k;
+            }
+            if (k < 0 || (us < 0.013 && v > us)) {
+                continue;
+            }
+            if (Math.log(v) + logInverseAlpha - Math.log(a / (us * us) + b) <=
+                    -mean + k * logMean - Gamma.logGamma(k + 1)) {
+                return (int) k;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,41 @@
+package gcm.core.epi.util.loading;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import gcm.core.epi.util.loading.ImmutableAdaptiveReplicationSpecification;
+import gcm.core.epi.util.statistics.ReplicationConvergenceTracker;
+import org.immutables.value.Value;
+
+import java.util.Set;
+
+/**
+ * Specifies how many replications of each scenario to run when the replication count adapts to the convergence
+ * of key outputs. Replications of a scenario continue until the confidence interval half-width of every metric
+ * is within relativeTolerance of its mean, bounded by minReplications and maxReplications.
+ */
+@Value.Immutable
+@JsonDeserialize(as = ImmutableAdaptiveReplicationSpecification.class)
+public abstract class AdaptiveReplicationSpecification {
+
+    @Value.Default
+    public int minReplications() {
+        return 10;
+    }
+
+    public abstract int maxReplications();
+
+    @Value.Default
+    public double relativeTolerance() {
+        return 0.05;
+    }
+
+    @Value.Default
+    public double confidenceLevel() {
+        return 0.95;
+    }
+
+    /**
+     * The metrics that must converge, with all metrics used when empty
+     */
+    public abstract Set<ReplicationConvergenceTracker.Metric> metrics();
+
+}
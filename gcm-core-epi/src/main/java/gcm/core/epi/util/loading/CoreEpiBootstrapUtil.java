@@ -31,6 +31,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class CoreEpiBootstrapUtil {
@@ -453,10 +454,21 @@ public class CoreEpiBootstrapUtil {
                                    final List<ReportWrapperItem> reportWrapperItems,
                                    List<Plugin> pluginList,
                                    Path outputPath) {
+        loadReports(experimentExecutor, reportWrapperItems, pluginList, outputPath, Function.identity());
+    }
+
+    /*
+        Load reports, mapping each report file name before resolving it against the output path
+     */
+    public static void loadReports(final ExperimentExecutor experimentExecutor,
+                                   final List<ReportWrapperItem> reportWrapperItems,
+                                   List<Plugin> pluginList,
+                                   Path outputPath,
+                                   Function<String, String> fileNameMapper) {
 
         reportWrapperItems.forEach(item -> {
             LoadableReport loadableReport = getLoadableReportFromString(item.report());
-            loadableReport.load(experimentExecutor, outputPath.resolve(item.file()), item, pluginList
+            loadableReport.load(experimentExecutor, outputPath.resolve(fileNameMapper.apply(item.file())), item, pluginList
             );
         });
     }
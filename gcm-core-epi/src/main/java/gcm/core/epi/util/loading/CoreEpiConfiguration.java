@@ -67,8 +67,25 @@ public abstract class CoreEpiConfiguration {
 
     public abstract int replications();
 
+    /**
+     * When present, the replications of each scenario stop once key outputs converge, with the maximum number of
+     * replications taken from this specification in place of replications()
+     */
+    public abstract Optional<AdaptiveReplicationSpecification> adaptiveReplications();
+
     public abstract int threads();
 
+    /**
+     * When set with more than one thread, each thread runs its own block of replications and writes its own
+     * shard of every report, with the shards merged into the usual report files once the experiment completes.
+     * Shard k is seeded by mixing randomSeed() with k as a SplitMix64 step, so results are reproducible for a given
+     * seed and thread count but differ from those of an unsharded run.
+     */
+    @Value.Default
+    public boolean shardReportsByThread() {
+        return false;
+    }
+
     public abstract long randomSeed();
 
     @Value.Default
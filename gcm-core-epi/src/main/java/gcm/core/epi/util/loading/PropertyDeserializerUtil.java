@@ -10,6 +10,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 public class PropertyDeserializerUtil {
 
@@ -63,6 +64,10 @@ public class PropertyDeserializerUtil {
                 CombinationBehaviorPlugin.CombinationBehaviorGlobalProperty.INFECTION_RATE_REDUCTION.toString(),
                 new PropertyDeserializer(new TypeReference<Map<AgeGroup, Double>>() {
                 }));
+        propertyDeserializers.put(
+                CombinationBehaviorPlugin.CombinationBehaviorGlobalProperty.ENABLED_BEHAVIOR_STAGES.toString(),
+                new PropertyDeserializer(new TypeReference<Set<CombinationBehaviorPlugin.CombinationBehaviorStage>>() {
+                }));
         // Location Infection Reduction
         propertyDeserializers.put(
                 LocationInfectionReductionPlugin.LocationInfectionReductionGlobalAndRegionProperty.LOCATION_INFECTION_REDUCTION.toString(),
@@ -25,6 +25,13 @@ public abstract class ReportWrapperItem {
         return FipsScope.TRACT;
     }
 
+    /**
+     * Several region aggregation levels reported together by a single report, which then includes a Scope
+     * column. Only used for INCIDENCE_REPORT and COMPARTMENT_REGIONAL_POPULATION_REPORT, and regionAggregationLevel
+     * is used when empty.
+     */
+    public abstract Set<FipsScope> regionAggregationLevels();
+
     @Value.Default
     public String file() {
         return report().toLowerCase() + ".tsv";
@@ -56,4 +63,21 @@ public abstract class ReportWrapperItem {
     public boolean showTransmissionAttempts() {
         return false;
     }
+
+    /**
+     * Only used for ENSEMBLE_SUMMARY_REPORT, where it is filled in from the experiment replication count
+     */
+    @Value.Default
+    public int replications() {
+        return 0;
+    }
+
+    /**
+     * Only used for ENSEMBLE_SUMMARY_REPORT
+     */
+    @SuppressWarnings("SameReturnValue")
+    @Value.Default
+    public boolean includeReplicationRows() {
+        return false;
+    }
 }
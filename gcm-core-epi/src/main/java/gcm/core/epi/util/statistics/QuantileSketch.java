@@ -0,0 +1,202 @@
+package gcm.core.epi.util.statistics;
+
+import java.util.Arrays;
+
+/**
+ * A mergeable quantile sketch with relative error guarantees (DDSketch). Values are counted in logarithmically
+ * sized buckets so that any quantile is returned to within the relative accuracy of the true value. Memory is
+ * bounded by the maximum bucket count, with the smallest-magnitude buckets collapsed together if it is reached.
+ * Sketches with the same relative accuracy can be merged exactly.
+ */
+public class QuantileSketch {
+
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+    private static final int MAX_BUCKET_COUNT = 2048;
+    private static final double MIN_INDEXABLE_VALUE = 1e-9;
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+    private final BucketStore positiveStore = new BucketStore();
+    private final BucketStore negativeStore = new BucketStore();
+    private long zeroCount;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    public QuantileSketch(double relativeAccuracy) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("Relative accuracy must be in (0, 1)");
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    private int getIndex(double value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    private double getValue(int index) {
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+
+    public void add(double value) {
+        add(value, 1);
+    }
+
+    /*
+     * Adds the given value the given number of times
+     */
+    public void add(double value, long weight) {
+        if (weight <= 0) {
+            return;
+        }
+        if (value > MIN_INDEXABLE_VALUE) {
+            positiveStore.add(getIndex(value), weight);
+        } else if (value < -MIN_INDEXABLE_VALUE) {
+            negativeStore.add(getIndex(-value), weight);
+        } else {
+            zeroCount += weight;
+        }
+        count += weight;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    public void merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Cannot merge quantile sketches with different relative accuracy");
+        }
+        if (other.count == 0) {
+            return;
+        }
+        positiveStore.merge(other.positiveStore);
+        negativeStore.merge(other.negativeStore);
+        zeroCount += other.zeroCount;
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /*
+     * Returns the estimated value at the given quantile in [0, 1], or NaN if the sketch is empty
+     */
+    public double getQuantile(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("Quantile must be in [0, 1]");
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        double rank = quantile * (count - 1);
+        long cumulativeCount = 0;
+        double result = Double.NaN;
+        // Negative values in increasing order are the negative store buckets in decreasing index order
+        for (int i = negativeStore.counts.length - 1; i >= 0 && Double.isNaN(result); i--) {
+            cumulativeCount += negativeStore.counts[i];
+            if (cumulativeCount > rank) {
+                result = -getValue(i + negativeStore.offset);
+            }
+        }
+        if (Double.isNaN(result)) {
+            cumulativeCount += zeroCount;
+            if (cumulativeCount > rank) {
+                result = 0.0;
+            }
+        }
+        for (int i = 0; i < positiveStore.counts.length && Double.isNaN(result); i++) {
+            cumulativeCount += positiveStore.counts[i];
+            if (cumulativeCount > rank) {
+                result = getValue(i + positiveStore.offset);
+            }
+        }
+        if (Double.isNaN(result)) {
+            result = max;
+        }
+        return Math.max(min, Math.min(max, result));
+    }
+
+    public double getMin() {
+        return count > 0 ? min : Double.NaN;
+    }
+
+    public double getMax() {
+        return count > 0 ? max : Double.NaN;
+    }
+
+    /*
+     * Dense bucket counts covering a contiguous range of indices starting at offset
+     */
+    private static class BucketStore {
+        private long[] counts = new long[0];
+        private int offset;
+
+        private void add(int index, long weight) {
+            if (counts.length == 0) {
+                counts = new long[8];
+                offset = index;
+            }
+            index = ensureCapacity(index);
+            counts[index - offset] += weight;
+        }
+
+        /*
+         * Grows the store to contain the given index, collapsing the lowest buckets if the maximum size would be
+         * exceeded, and returns the index that should be used for the value
+         */
+        private int ensureCapacity(int index) {
+            if (index < offset) {
+                int newLength = counts.length + (offset - index);
+                if (newLength > MAX_BUCKET_COUNT) {
+                    // Collapse into the lowest retained bucket
+                    return offset;
+                }
+                long[] newCounts = new long[Math.min(MAX_BUCKET_COUNT, Math.max(newLength, counts.length * 2))];
+                int shift = newCounts.length - counts.length;
+                System.arraycopy(counts, 0, newCounts, shift, counts.length);
+                counts = newCounts;
+                offset -= shift;
+            } else if (index >= offset + counts.length) {
+                int newLength = index - offset + 1;
+                if (newLength > MAX_BUCKET_COUNT) {
+                    // Collapse the lowest buckets so that the new index fits
+                    int newOffset = index - MAX_BUCKET_COUNT + 1;
+                    long[] newCounts = new long[MAX_BUCKET_COUNT];
+                    long collapsedCount = 0;
+                    for (int i = 0; i < counts.length; i++) {
+                        int bucketIndex = i + offset;
+                        if (bucketIndex <= newOffset) {
+                            collapsedCount += counts[i];
+                        } else {
+                            newCounts[bucketIndex - newOffset] = counts[i];
+                        }
+                    }
+                    newCounts[0] += collapsedCount;
+                    counts = newCounts;
+                    offset = newOffset;
+                } else {
+                    counts = Arrays.copyOf(counts, Math.min(MAX_BUCKET_COUNT, Math.max(newLength, counts.length * 2)));
+                }
+            }
+            return index;
+        }
+
+        private void merge(BucketStore other) {
+            for (int i = 0; i < other.counts.length; i++) {
+                if (other.counts[i] > 0) {
+                    add(i + other.offset, other.counts[i]);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,252 @@
+package gcm.core.epi.util.statistics;
+
+import gcm.scenario.ScenarioId;
+import gcm.simulation.ObservableEnvironment;
+import org.apache.commons.math3.distribution.NormalDistribution;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Accumulates key outputs of each replication by scenario, shared by all simulation threads of an experiment, and
+ * decides when a scenario has run enough replications. A scenario converges once it has at least the minimum
+ * number of replications and the confidence interval half-width of every tracked metric is within a relative
+ * tolerance of its mean, or once it reaches the maximum number of replications. Convergence is final.
+ * <p>
+ * So that results do not depend on the order in which threads finish, outputs are added strictly in order of
+ * replication number (replications being numbered from 1 within each scenario), with outputs that arrive early
+ * held until the replications before them have been added. Replication k is included in the results of its
+ * scenario exactly when the scenario had not converged using replications 1 to k - 1. Replications that are known
+ * to be excluded when they start are skipped, and listeners are told which of the replications that did run are
+ * included once this is known.
+ */
+public class ReplicationConvergenceTracker {
+
+    private static final ReplicationConvergenceTracker DISABLED = new ReplicationConvergenceTracker();
+
+    private final boolean enabled;
+    private final int minReplications;
+    private final int maxReplications;
+    private final double relativeTolerance;
+    private final double criticalValue;
+    private final Metric[] metrics;
+    private final Map<ScenarioId, ScenarioConvergence> scenarioConvergences = new ConcurrentHashMap<>();
+
+    private ReplicationConvergenceTracker() {
+        enabled = false;
+        minReplications = 0;
+        maxReplications = 0;
+        relativeTolerance = 0;
+        criticalValue = 0;
+        metrics = new Metric[0];
+    }
+
+    /**
+     * @param minReplications   The number of replications of each scenario to run before checking convergence
+     * @param maxReplications   The number of replications of each scenario after which it is always converged
+     * @param relativeTolerance The largest confidence interval half-width relative to the mean that is converged
+     * @param confidenceLevel   The confidence level of the intervals
+     * @param metrics           The metrics that must converge, with all metrics used when empty
+     */
+    public ReplicationConvergenceTracker(int minReplications, int maxReplications, double relativeTolerance,
+                                         double confidenceLevel, Set<Metric> metrics) {
+        if (minReplications < 2 || maxReplications < minReplications) {
+            throw new IllegalArgumentException("Adaptive replications require 2 <= minReplications <= maxReplications");
+        }
+        if (!(relativeTolerance > 0)) {
+            throw new IllegalArgumentException("Adaptive replications require a positive relative tolerance");
+        }
+        if (!(confidenceLevel > 0 && confidenceLevel < 1)) {
+            throw new IllegalArgumentException("Adaptive replications require a confidence level in (0, 1)");
+        }
+        this.enabled = true;
+        this.minReplications = minReplications;
+        this.maxReplications = maxReplications;
+        this.relativeTolerance = relativeTolerance;
+        this.criticalValue = new NormalDistribution().inverseCumulativeProbability(0.5 + confidenceLevel / 2);
+        this.metrics = (metrics.isEmpty() ? EnumSet.allOf(Metric.class) : EnumSet.copyOf(metrics)).toArray(new Metric[0]);
+    }
+
+    /*
+     * A tracker for experiments with a fixed replication count, for which no scenario ever converges early
+     */
+    public static ReplicationConvergenceTracker disabled() {
+        return DISABLED;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    private ScenarioConvergence getScenarioConvergence(ScenarioId scenarioId) {
+        return scenarioConvergences.computeIfAbsent(scenarioId, key -> new ScenarioConvergence());
+    }
+
+    /**
+     * Returns whether the given replication is already known to be excluded, which is when its scenario converged
+     * using earlier replications
+     */
+    public boolean isExcluded(ScenarioId scenarioId, int replication) {
+        if (!enabled) {
+            return false;
+        }
+        ScenarioConvergence scenarioConvergence = getScenarioConvergence(scenarioId);
+        synchronized (scenarioConvergence) {
+            return scenarioConvergence.getInclusion(replication) == Boolean.FALSE;
+        }
+    }
+
+    /**
+     * Registers a listener for the inclusion decisions and convergence of the given scenario
+     */
+    public void addListener(ScenarioId scenarioId, ReplicationListener replicationListener) {
+        ScenarioConvergence scenarioConvergence = getScenarioConvergence(scenarioId);
+        synchronized (scenarioConvergence) {
+            scenarioConvergence.listeners.add(replicationListener);
+        }
+    }
+
+    /**
+     * Asks that the listeners of the scenario be told whether the given replication, which has run, is included,
+     * immediately if this is already known
+     */
+    public void awaitInclusion(ObservableEnvironment observableEnvironment, ScenarioId scenarioId, int replication) {
+        ScenarioConvergence scenarioConvergence = getScenarioConvergence(scenarioId);
+        List<Runnable> notifications = new ArrayList<>();
+        synchronized (scenarioConvergence) {
+            scenarioConvergence.awaitingReplications.add(replication);
+            scenarioConvergence.collectNotifications(observableEnvironment, notifications);
+        }
+        notifications.forEach(Runnable::run);
+    }
+
+    /**
+     * Adds the outputs of a completed replication, indexed by metric ordinal. Outputs are used in order of
+     * replication number, and outputs of excluded replications are ignored.
+     */
+    public void addReplication(ObservableEnvironment observableEnvironment, ScenarioId scenarioId, int replication,
+                               double[] metricValues) {
+        if (!enabled) {
+            return;
+        }
+        ScenarioConvergence scenarioConvergence = getScenarioConvergence(scenarioId);
+        List<Runnable> notifications = new ArrayList<>();
+        synchronized (scenarioConvergence) {
+            if (scenarioConvergence.convergedReplications > 0) {
+                return;
+            }
+            scenarioConvergence.heldOutputs.put(replication, metricValues.clone());
+            double[] nextMetricValues;
+            while (scenarioConvergence.convergedReplications == 0 &&
+                    (nextMetricValues = scenarioConvergence.heldOutputs.remove(scenarioConvergence.addedReplications + 1)) != null) {
+                for (Metric metric : metrics) {
+                    scenarioConvergence.statistics[metric.ordinal()].add(nextMetricValues[metric.ordinal()]);
+                }
+                scenarioConvergence.addedReplications++;
+                int addedReplications = scenarioConvergence.addedReplications;
+                if (addedReplications >= maxReplications ||
+                        (addedReplications >= minReplications && isWithinTolerance(scenarioConvergence))) {
+                    scenarioConvergence.convergedReplications = addedReplications;
+                    scenarioConvergence.heldOutputs.clear();
+                    for (ReplicationListener replicationListener : scenarioConvergence.listeners) {
+                        notifications.add(() -> replicationListener.converged(observableEnvironment, addedReplications));
+                    }
+                }
+            }
+            scenarioConvergence.collectNotifications(observableEnvironment, notifications);
+        }
+        notifications.forEach(Runnable::run);
+    }
+
+    private boolean isWithinTolerance(ScenarioConvergence scenarioConvergence) {
+        for (Metric metric : metrics) {
+            RunningStatistics statistics = scenarioConvergence.statistics[metric.ordinal()];
+            double halfWidth = criticalValue * statistics.getStandardDeviation() / Math.sqrt(statistics.getCount());
+            // A metric that is always zero has converged
+            if (halfWidth > relativeTolerance * Math.abs(statistics.getMean())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * The outputs of a replication that can be tracked
+     */
+    public enum Metric {
+        // Infections over the course of the simulation per person
+        FINAL_ATTACK_RATE("FinalAttackRate"),
+        // The largest number of people occupying hospital beds at once
+        PEAK_HOSPITALIZATIONS("PeakHospitalizations");
+
+        private final String label;
+
+        Metric(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /**
+     * Receives the decisions for a scenario. Calls are made without holding the tracker's locks, from the thread of
+     * the simulation whose environment is passed, which belongs to the same scenario but not necessarily to the
+     * replication concerned.
+     */
+    public interface ReplicationListener {
+
+        void inclusionDecided(ObservableEnvironment observableEnvironment, int replication, boolean included);
+
+        /*
+         * Called once the scenario has converged using the given number of replications
+         */
+        void converged(ObservableEnvironment observableEnvironment, int includedReplications);
+
+    }
+
+    private static final class ScenarioConvergence {
+        private final RunningStatistics[] statistics = new RunningStatistics[Metric.values().length];
+        private final SortedMap<Integer, double[]> heldOutputs = new TreeMap<>();
+        private final SortedSet<Integer> awaitingReplications = new TreeSet<>();
+        private final List<ReplicationListener> listeners = new ArrayList<>();
+        // The replications 1 to addedReplications have been added
+        private int addedReplications;
+        // The number of replications used when the scenario converged, or 0 while it has not
+        private int convergedReplications;
+
+        private ScenarioConvergence() {
+            for (int i = 0; i < statistics.length; i++) {
+                statistics[i] = new RunningStatistics();
+            }
+        }
+
+        /*
+         * Returns whether the replication is included, or null if this is not yet known
+         */
+        private Boolean getInclusion(int replication) {
+            if (convergedReplications > 0) {
+                return replication <= convergedReplications;
+            }
+            return replication <= addedReplications + 1 ? Boolean.TRUE : null;
+        }
+
+        private void collectNotifications(ObservableEnvironment observableEnvironment, List<Runnable> notifications) {
+            Iterator<Integer> iterator = awaitingReplications.iterator();
+            while (iterator.hasNext()) {
+                int replication = iterator.next();
+                Boolean included = getInclusion(replication);
+                if (included == null) {
+                    // Later replications are not known either
+                    break;
+                }
+                iterator.remove();
+                for (ReplicationListener replicationListener : listeners) {
+                    notifications.add(() -> replicationListener.inclusionDecided(observableEnvironment, replication, included));
+                }
+            }
+        }
+    }
+
+}
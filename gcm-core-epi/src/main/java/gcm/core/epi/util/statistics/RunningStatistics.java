@@ -0,0 +1,80 @@
+package gcm.core.epi.util.statistics;
+
+/**
+ * Streaming count, mean, variance, minimum and maximum using Welford's update. Two instances can be merged
+ * (Chan et al.) so that partial results computed separately combine exactly.
+ */
+public class RunningStatistics {
+
+    private long count;
+    private double mean;
+    private double m2;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public void add(double value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /*
+     * Adds the given value the given number of times
+     */
+    public void add(double value, long weight) {
+        if (weight <= 0) {
+            return;
+        }
+        long newCount = count + weight;
+        double delta = value - mean;
+        m2 += delta * delta * ((double) count * weight / newCount);
+        mean += delta * weight / newCount;
+        count = newCount;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    public void merge(RunningStatistics other) {
+        if (other.count == 0) {
+            return;
+        }
+        long newCount = count + other.count;
+        double delta = other.mean - mean;
+        m2 += other.m2 + delta * delta * ((double) count * other.count / newCount);
+        mean += delta * other.count / newCount;
+        count = newCount;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return count > 0 ? mean : Double.NaN;
+    }
+
+    /*
+     * Returns the sample variance
+     */
+    public double getVariance() {
+        return count > 1 ? m2 / (count - 1) : 0.0;
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    public double getMin() {
+        return count > 0 ? min : Double.NaN;
+    }
+
+    public double getMax() {
+        return count > 0 ? max : Double.NaN;
+    }
+
+}
@@ -0,0 +1,57 @@
+package gcm.core.epi.util.statistics;
+
+/**
+ * Running moments together with a quantile sketch for a single summarized quantity
+ */
+public class SummaryStatistics {
+
+    private static final double[] REPORTED_QUANTILES = new double[]{0.05, 0.25, 0.5, 0.75, 0.95};
+    private static final String[] REPORTED_FIELDS = new String[]{"Replications", "Mean", "StandardDeviation",
+            "Min", "Q05", "Q25", "Median", "Q75", "Q95", "Max"};
+
+    private final RunningStatistics runningStatistics = new RunningStatistics();
+    private final QuantileSketch quantileSketch = new QuantileSketch();
+
+    /*
+     * Returns the names of the fields given by getReportedValues
+     */
+    public static String[] getReportedFields() {
+        return REPORTED_FIELDS.clone();
+    }
+
+    public void add(double value) {
+        runningStatistics.add(value);
+        quantileSketch.add(value);
+    }
+
+    public void add(double value, long weight) {
+        runningStatistics.add(value, weight);
+        quantileSketch.add(value, weight);
+    }
+
+    public void merge(SummaryStatistics other) {
+        runningStatistics.merge(other.runningStatistics);
+        quantileSketch.merge(other.quantileSketch);
+    }
+
+    public long getCount() {
+        return runningStatistics.getCount();
+    }
+
+    /*
+     * Returns the count, mean, standard deviation, minimum, 5/25/50/75/95th percentiles and maximum
+     */
+    public Object[] getReportedValues() {
+        Object[] values = new Object[REPORTED_FIELDS.length];
+        values[0] = runningStatistics.getCount();
+        values[1] = runningStatistics.getMean();
+        values[2] = runningStatistics.getStandardDeviation();
+        values[3] = runningStatistics.getMin();
+        for (int i = 0; i < REPORTED_QUANTILES.length; i++) {
+            values[4 + i] = quantileSketch.getQuantile(REPORTED_QUANTILES[i]);
+        }
+        values[values.length - 1] = runningStatistics.getMax();
+        return values;
+    }
+
+}
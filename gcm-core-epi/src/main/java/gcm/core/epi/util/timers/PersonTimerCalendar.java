@@ -0,0 +1,86 @@
+package gcm.core.epi.util.timers;
+
+import gcm.scenario.PersonId;
+import gcm.simulation.Environment;
+import gcm.simulation.Plan;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A calendar of person timers owned by a single component. Timers that expire at the same time share a bucket of
+ * primitive timer type and person id arrays, and the calendar adds one plan per distinct expiry time rather than one
+ * per timer. Timers in a bucket expire in the order they were added. The owning component passes its plans to
+ * {@link #executePlan} when {@link #isTimerPlan} is true.
+ */
+public class PersonTimerCalendar {
+
+    private static final int INITIAL_BUCKET_CAPACITY = 16;
+
+    private final Map<Double, TimerBucket> bucketsByTime = new HashMap<>();
+    private final Deque<TimerBucket> pooledBuckets = new ArrayDeque<>();
+    private final TimerCallback timerCallback;
+
+    public PersonTimerCalendar(TimerCallback timerCallback) {
+        this.timerCallback = timerCallback;
+    }
+
+    public static boolean isTimerPlan(Plan plan) {
+        return plan.getClass().equals(TimerBucket.class);
+    }
+
+    /*
+     * Adds a timer of the given component-defined type for the person that expires at the given time
+     */
+    public void addTimer(Environment environment, int timerType, PersonId personId, double time) {
+        TimerBucket timerBucket = bucketsByTime.get(time);
+        if (timerBucket == null) {
+            timerBucket = pooledBuckets.isEmpty() ? new TimerBucket() : pooledBuckets.pop();
+            timerBucket.time = time;
+            bucketsByTime.put(time, timerBucket);
+            environment.addPlan(timerBucket, time);
+        }
+        timerBucket.add(timerType, personId.getValue());
+    }
+
+    public void executePlan(Environment environment, Plan plan) {
+        TimerBucket timerBucket = (TimerBucket) plan;
+        // Remove the bucket first so that timers added while expiring these go to a new plan
+        bucketsByTime.remove(timerBucket.time);
+        for (int i = 0; i < timerBucket.size; i++) {
+            timerCallback.expire(environment, timerBucket.timerTypes[i], new PersonId(timerBucket.personIds[i]));
+        }
+        timerBucket.size = 0;
+        pooledBuckets.push(timerBucket);
+    }
+
+    @FunctionalInterface
+    public interface TimerCallback {
+
+        void expire(Environment environment, int timerType, PersonId personId);
+
+    }
+
+    private static final class TimerBucket implements Plan {
+
+        private double time;
+        private int size;
+        private int[] timerTypes = new int[INITIAL_BUCKET_CAPACITY];
+        private int[] personIds = new int[INITIAL_BUCKET_CAPACITY];
+
+        private void add(int timerType, int personId) {
+            if (size == personIds.length) {
+                timerTypes = Arrays.copyOf(timerTypes, size * 2);
+                personIds = Arrays.copyOf(personIds, size * 2);
+            }
+            timerTypes[size] = timerType;
+            personIds[size] = personId;
+            size++;
+        }
+
+    }
+
+}
@@ -0,0 +1,115 @@
+package gcm.core.epi.reports;
+
+import gcm.core.epi.identifiers.GlobalProperty;
+import gcm.core.epi.identifiers.PersonProperty;
+import gcm.core.epi.identifiers.StringRegionId;
+import gcm.core.epi.util.statistics.ReplicationConvergenceTracker;
+import gcm.output.reports.ReportItem;
+import gcm.scenario.PersonId;
+import gcm.scenario.RegionId;
+import gcm.scenario.ReplicationId;
+import gcm.scenario.ScenarioId;
+import gcm.simulation.ObservableEnvironment;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Paths;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EnsembleSummaryReportTest {
+
+    private static final ScenarioId SCENARIO_ID = new ScenarioId(0);
+    private static final RegionId REGION_ID = StringRegionId.of("01001020100");
+
+    /*
+     * An environment for one replication that answers the queries of the report and collects its output
+     */
+    private static ObservableEnvironment getEnvironment(ReplicationConvergenceTracker replicationConvergenceTracker,
+                                                        int replication, List<ReportItem> reportItems) {
+        ReplicationId replicationId = new ReplicationId(replication);
+        return (ObservableEnvironment) Proxy.newProxyInstance(ObservableEnvironment.class.getClassLoader(),
+                new Class<?>[]{ObservableEnvironment.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getGlobalPropertyValue":
+                            if (args[0] == GlobalProperty.REPLICATION_CONVERGENCE_TRACKER) {
+                                return replicationConvergenceTracker;
+                            }
+                            if (args[0] == GlobalProperty.EXTINCTION_TIME ||
+                                    args[0] == GlobalProperty.MAX_SIMULATION_LENGTH) {
+                                return Double.POSITIVE_INFINITY;
+                            }
+                            throw new UnsupportedOperationException("Unexpected global property " + args[0]);
+                        case "getScenarioId":
+                            return SCENARIO_ID;
+                        case "getReplicationId":
+                            return replicationId;
+                        case "getRegionIds":
+                            return Collections.singleton(REGION_ID);
+                        case "getPersonRegion":
+                            return REGION_ID;
+                        case "getTime":
+                            return 0.0;
+                        case "releaseOutputItem":
+                            synchronized (reportItems) {
+                                reportItems.add((ReportItem) args[0]);
+                            }
+                            return null;
+                        default:
+                            if (method.getReturnType().isPrimitive() && method.getReturnType() != void.class) {
+                                throw new UnsupportedOperationException("Unexpected call " + method.getName());
+                            }
+                            return null;
+                    }
+                });
+    }
+
+    @Test
+    public void testExcludedReplicationWritesNoRows() {
+        // The scenario converges after two replications while a third is already running
+        ReplicationConvergenceTracker replicationConvergenceTracker = new ReplicationConvergenceTracker(2, 2,
+                0.1, 0.95, EnumSet.noneOf(ReplicationConvergenceTracker.Metric.class));
+        EnsembleSummaryReport.Settings settings = new EnsembleSummaryReport.Settings(
+                Paths.get("ensemble_summary_report_test_excluded.tsv"), 2, true,
+                EnumSet.of(EnsembleSummaryReport.Metric.NEW_DEATHS));
+        List<ReportItem> reportItems = new ArrayList<>();
+
+        Map<Integer, ObservableEnvironment> environments = new LinkedHashMap<>();
+        Map<Integer, EnsembleSummaryReport> reports = new LinkedHashMap<>();
+        for (int replication = 1; replication <= 3; replication++) {
+            ObservableEnvironment environment = getEnvironment(replicationConvergenceTracker, replication, reportItems);
+            EnsembleSummaryReport report = new EnsembleSummaryReport();
+            report.init(environment, new HashSet<>(Collections.singletonList(settings)));
+            // Every replication records one death
+            report.handlePersonPropertyValueAssignment(environment, new PersonId(0), PersonProperty.IS_DEAD, false);
+            environments.put(replication, environment);
+            reports.put(replication, report);
+        }
+
+        // The third replication finishes first, before its inclusion is known
+        reports.get(3).close(environments.get(3));
+        assertTrue(reportItems.isEmpty());
+
+        double[] metricValues = new double[ReplicationConvergenceTracker.Metric.values().length];
+        replicationConvergenceTracker.addReplication(environments.get(1), SCENARIO_ID, 1, metricValues);
+        replicationConvergenceTracker.addReplication(environments.get(2), SCENARIO_ID, 2, metricValues);
+        assertTrue(replicationConvergenceTracker.isExcluded(SCENARIO_ID, 3));
+        assertTrue(reportItems.isEmpty());
+
+        reports.get(1).close(environments.get(1));
+        reports.get(2).close(environments.get(2));
+
+        Map<Integer, Integer> itemCounts = new HashMap<>();
+        for (ReportItem reportItem : reportItems) {
+            itemCounts.merge(reportItem.getReplicationId().getValue(), 1, Integer::sum);
+        }
+        assertFalse(itemCounts.containsKey(3));
+        // A replication row for each included replication, and the summary row with the last
+        assertEquals(Integer.valueOf(1), itemCounts.get(1));
+        assertEquals(Integer.valueOf(2), itemCounts.get(2));
+    }
+
+}
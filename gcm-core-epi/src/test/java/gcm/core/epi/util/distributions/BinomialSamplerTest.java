@@ -0,0 +1,61 @@
+package gcm.core.epi.util.distributions;
+
+import org.apache.commons.math3.distribution.BinomialDistribution;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well19937c;
+import org.junit.Test;
+
+import static gcm.core.epi.util.distributions.DistributionTestSupport.*;
+import static org.junit.Assert.assertEquals;
+
+public class BinomialSamplerTest {
+
+    /*
+     * Trials and success probabilities on either side of the switch from inversion to BTPE at n * min(p, 1 - p) = 30,
+     * including success probabilities above one half
+     */
+    private static final int[] TRIALS = {20, 100, 100, 1000, 50, 500, 200};
+    private static final double[] PROBABILITIES = {0.3, 0.29, 0.31, 0.5, 0.8, 0.9, 0.84};
+
+    private static void assertMatches(int n, double p, int[] samples) {
+        String description = "Binomial(" + n + ", " + p + ")";
+        double variance = n * p * (1 - p);
+        assertMoments(description, toDoubles(samples), n * p, variance, (1 - 6 * p * (1 - p)) / variance);
+        assertFits(description, new BinomialDistribution(n, p), samples);
+    }
+
+    @Test
+    public void testInstanceMatchesBinomialDistribution() {
+        for (int i = 0; i < TRIALS.length; i++) {
+            RandomGenerator randomGenerator = new Well19937c(1234);
+            BinomialSampler binomialSampler = new BinomialSampler(TRIALS[i], PROBABILITIES[i]);
+            int[] samples = new int[SAMPLE_COUNT];
+            for (int j = 0; j < samples.length; j++) {
+                samples[j] = binomialSampler.sample(randomGenerator);
+            }
+            assertMatches(TRIALS[i], PROBABILITIES[i], samples);
+        }
+    }
+
+    @Test
+    public void testStaticMatchesBinomialDistribution() {
+        for (int i = 0; i < TRIALS.length; i++) {
+            RandomGenerator randomGenerator = new Well19937c(5678);
+            int[] samples = new int[SAMPLE_COUNT];
+            for (int j = 0; j < samples.length; j++) {
+                samples[j] = BinomialSampler.sample(randomGenerator, TRIALS[i], PROBABILITIES[i]);
+            }
+            assertMatches(TRIALS[i], PROBABILITIES[i], samples);
+        }
+    }
+
+    @Test
+    public void testDegenerateParameters() {
+        RandomGenerator randomGenerator = new Well19937c(91011);
+        assertEquals(0, BinomialSampler.sample(randomGenerator, 0, 0.5));
+        assertEquals(0, BinomialSampler.sample(randomGenerator, 10, 0));
+        assertEquals(10, BinomialSampler.sample(randomGenerator, 10, 1));
+        assertEquals(10, new BinomialSampler(10, 1).sample(randomGenerator));
+    }
+
+}
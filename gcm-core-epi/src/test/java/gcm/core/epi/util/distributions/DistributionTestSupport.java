@@ -0,0 +1,105 @@
+package gcm.core.epi.util.distributions;
+
+import org.apache.commons.math3.distribution.IntegerDistribution;
+import org.apache.commons.math3.distribution.RealDistribution;
+import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
+import org.apache.commons.math3.stat.inference.ChiSquareTest;
+import org.apache.commons.math3.stat.inference.KolmogorovSmirnovTest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that samples agree with a commons-math distribution, by the sample mean and variance to within five
+ * standard errors and by a Kolmogorov-Smirnov or chi-square goodness of fit test. Tests use fixed seeds, so the
+ * significance level only guards against a sampler that is wrong.
+ */
+final class DistributionTestSupport {
+
+    static final int SAMPLE_COUNT = 20000;
+    private static final double SIGNIFICANCE_LEVEL = 0.001;
+    private static final double MINIMUM_EXPECTED_COUNT = 5;
+
+    private DistributionTestSupport() {
+
+    }
+
+    /*
+     * Checks the sample mean and variance, using the excess kurtosis of the distribution for the standard error of
+     * the variance
+     */
+    static void assertMoments(String description, double[] samples, double mean, double variance,
+                              double excessKurtosis) {
+        SummaryStatistics summaryStatistics = new SummaryStatistics();
+        for (double sample : samples) {
+            summaryStatistics.addValue(sample);
+        }
+        int n = samples.length;
+        assertEquals(description + " mean", mean, summaryStatistics.getMean(), 5 * Math.sqrt(variance / n));
+        assertEquals(description + " variance", variance, summaryStatistics.getVariance(),
+                5 * variance * Math.sqrt(excessKurtosis / n + 2.0 / (n - 1)));
+    }
+
+    static void assertFits(String description, RealDistribution distribution, double[] samples) {
+        double pValue = new KolmogorovSmirnovTest().kolmogorovSmirnovTest(distribution, samples);
+        assertTrue(description + " Kolmogorov-Smirnov p-value " + pValue, pValue > SIGNIFICANCE_LEVEL);
+    }
+
+    /*
+     * Chi-square test over the values between the 0.0001 and 0.9999 quantiles, with the tails folded into the end
+     * bins and adjacent values merged until every bin has an expected count of at least five
+     */
+    static void assertFits(String description, IntegerDistribution distribution, int[] samples) {
+        int lower = distribution.inverseCumulativeProbability(1e-4);
+        int upper = Math.max(distribution.inverseCumulativeProbability(1 - 1e-4), lower + 1);
+
+        long[] valueCounts = new long[upper - lower + 1];
+        for (int sample : samples) {
+            valueCounts[Math.min(Math.max(sample, lower), upper) - lower]++;
+        }
+
+        List<Double> expected = new ArrayList<>();
+        List<Long> observed = new ArrayList<>();
+        double binExpected = 0;
+        long binObserved = 0;
+        for (int value = lower; value <= upper; value++) {
+            double probability;
+            if (value == lower) {
+                probability = distribution.cumulativeProbability(lower);
+            } else if (value == upper) {
+                probability = 1 - distribution.cumulativeProbability(upper - 1);
+            } else {
+                probability = distribution.probability(value);
+            }
+            binExpected += probability * samples.length;
+            binObserved += valueCounts[value - lower];
+            if (binExpected >= MINIMUM_EXPECTED_COUNT) {
+                expected.add(binExpected);
+                observed.add(binObserved);
+                binExpected = 0;
+                binObserved = 0;
+            }
+        }
+        // Fold any remainder into the last bin
+        int last = expected.size() - 1;
+        expected.set(last, expected.get(last) + binExpected);
+        observed.set(last, observed.get(last) + binObserved);
+        assertTrue(description + " has too few bins for a chi-square test", expected.size() > 1);
+
+        double pValue = new ChiSquareTest().chiSquareTest(expected.stream().mapToDouble(Double::doubleValue).toArray(),
+                observed.stream().mapToLong(Long::longValue).toArray());
+        assertTrue(description + " chi-square p-value " + pValue, pValue > SIGNIFICANCE_LEVEL);
+    }
+
+    static double[] toDoubles(int[] samples) {
+        double[] result = new double[samples.length];
+        for (int i = 0; i < samples.length; i++) {
+            result[i] = samples[i];
+        }
+        return result;
+    }
+
+}
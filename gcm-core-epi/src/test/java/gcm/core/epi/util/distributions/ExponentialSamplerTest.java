@@ -0,0 +1,45 @@
+package gcm.core.epi.util.distributions;
+
+import org.apache.commons.math3.distribution.ExponentialDistribution;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well19937c;
+import org.junit.Test;
+
+import static gcm.core.epi.util.distributions.DistributionTestSupport.*;
+
+public class ExponentialSamplerTest {
+
+    private static final double MEAN = 3;
+
+    private static void assertMatches(String description, double[] samples) {
+        assertMoments(description, samples, MEAN, MEAN * MEAN, 6);
+        assertFits(description, new ExponentialDistribution(MEAN), samples);
+    }
+
+    @Test
+    public void testInstanceMatchesExponentialDistribution() {
+        RandomGenerator randomGenerator = new Well19937c(1234);
+        ExponentialSampler exponentialSampler = new ExponentialSampler(MEAN);
+        double[] samples = new double[SAMPLE_COUNT];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = exponentialSampler.sample(randomGenerator);
+        }
+        assertMatches("Exponential instance", samples);
+    }
+
+    @Test
+    public void testStaticMatchesExponentialDistribution() {
+        RandomGenerator randomGenerator = new Well19937c(5678);
+        double[] samples = new double[SAMPLE_COUNT];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = ExponentialSampler.sample(randomGenerator, MEAN);
+        }
+        assertMatches("Exponential static", samples);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonPositiveMean() {
+        new ExponentialSampler(0);
+    }
+
+}
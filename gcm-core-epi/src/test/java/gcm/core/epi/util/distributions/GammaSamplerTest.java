@@ -0,0 +1,65 @@
+package gcm.core.epi.util.distributions;
+
+import org.apache.commons.math3.distribution.GammaDistribution;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well19937c;
+import org.junit.Test;
+
+import static gcm.core.epi.util.distributions.DistributionTestSupport.*;
+
+public class GammaSamplerTest {
+
+    private static final double SCALE = 2;
+
+    private static void assertMatches(double shape, double[] samples) {
+        String description = "Gamma(" + shape + ", " + SCALE + ")";
+        assertMoments(description, samples, shape * SCALE, shape * SCALE * SCALE, 6 / shape);
+        assertFits(description, new GammaDistribution(shape, SCALE), samples);
+    }
+
+    @Test
+    public void testInstanceMatchesGammaDistribution() {
+        // Shapes below one use the boosted sampler
+        for (double shape : new double[]{0.1, 0.5, 0.9, 1, 2.5, 10}) {
+            RandomGenerator randomGenerator = new Well19937c(1234);
+            GammaSampler gammaSampler = new GammaSampler(shape, SCALE);
+            double[] samples = new double[SAMPLE_COUNT];
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] = gammaSampler.sample(randomGenerator);
+            }
+            assertMatches(shape, samples);
+        }
+    }
+
+    @Test
+    public void testStaticMatchesGammaDistribution() {
+        for (double shape : new double[]{0.3, 1.7}) {
+            RandomGenerator randomGenerator = new Well19937c(5678);
+            double[] samples = new double[SAMPLE_COUNT];
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] = GammaSampler.sample(randomGenerator, shape, SCALE);
+            }
+            assertMatches(shape, samples);
+        }
+    }
+
+    @Test
+    public void testSampleFromMeanAndCOV() {
+        double mean = 5;
+        double cov = 1.5;
+        RandomGenerator randomGenerator = new Well19937c(91011);
+        double[] samples = new double[SAMPLE_COUNT];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = GammaSampler.sampleFromMeanAndCOV(randomGenerator, mean, cov);
+        }
+        double shape = 1 / (cov * cov);
+        assertMoments("Gamma with mean " + mean + " and COV " + cov, samples, mean, mean * mean * cov * cov,
+                6 / shape);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonPositiveShape() {
+        new GammaSampler(0, SCALE);
+    }
+
+}
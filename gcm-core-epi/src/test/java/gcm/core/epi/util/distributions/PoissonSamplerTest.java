@@ -0,0 +1,27 @@
+package gcm.core.epi.util.distributions;
+
+import org.apache.commons.math3.distribution.PoissonDistribution;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well19937c;
+import org.junit.Test;
+
+import static gcm.core.epi.util.distributions.DistributionTestSupport.*;
+
+public class PoissonSamplerTest {
+
+    @Test
+    public void testMatchesPoissonDistribution() {
+        // Means on either side of the switch from inversion to PTRS at 10
+        for (double mean : new double[]{0.5, 2, 9.5, 10.5, 100}) {
+            RandomGenerator randomGenerator = new Well19937c(1234);
+            int[] samples = new int[SAMPLE_COUNT];
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] = PoissonSampler.sample(randomGenerator, mean);
+            }
+            String description = "Poisson(" + mean + ")";
+            assertMoments(description, toDoubles(samples), mean, mean, 1 / mean);
+            assertFits(description, new PoissonDistribution(mean), samples);
+        }
+    }
+
+}